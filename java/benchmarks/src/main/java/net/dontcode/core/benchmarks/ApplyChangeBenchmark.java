@@ -0,0 +1,89 @@
+package net.dontcode.core.benchmarks;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Models.applyChange for each type of change on a generated model.
+ * Each benchmark leaves the model in the same shape as it found it, so that results are stable along iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplyChangeBenchmark {
+
+    @State(Scope.Thread)
+    public static class ChangeState {
+        Change updateName;
+        Change updateNameBack;
+        Change updateEntity;
+        Change addEntity;
+        Change deleteEntity;
+        Change resetEntity;
+        String containerPosition;
+        Deque<String> order;
+        boolean toggle;
+
+        @Setup(Level.Trial)
+        public void setup (ModelState state) {
+            containerPosition = state.containerPosition;
+            updateName = new Change(Change.ChangeType.UPDATE, state.middlePosition + "/name", "Renamed");
+            updateNameBack = new Change(Change.ChangeType.UPDATE, state.middlePosition + "/name", "Entity " + (state.size / 2));
+            updateEntity = new Change(Change.ChangeType.UPDATE, state.middlePosition, ModelGenerator.entity(state.size / 2));
+            addEntity = new Change(Change.ChangeType.ADD, containerPosition + "/added", ModelGenerator.entity(state.size));
+            deleteEntity = new Change(Change.ChangeType.DELETE, containerPosition + "/added", null);
+            resetEntity = new Change(Change.ChangeType.RESET, state.middlePosition, ModelGenerator.entity(state.size / 2));
+            order = new ArrayDeque<>(state.model.find(containerPosition).getMap().keySet());
+        }
+    }
+
+    @Benchmark
+    public MapOrString update (ModelState model, ChangeState changes) {
+        changes.toggle = !changes.toggle;
+        return Models.applyChange(model.model, changes.toggle ? changes.updateName : changes.updateNameBack);
+    }
+
+    @Benchmark
+    public MapOrString updateElement (ModelState model, ChangeState changes) {
+        return Models.applyChange(model.model, changes.updateEntity);
+    }
+
+    @Benchmark
+    public MapOrString addAndDelete (ModelState model, ChangeState changes) {
+        Models.applyChange(model.model, changes.addEntity);
+        return Models.applyChange(model.model, changes.deleteEntity);
+    }
+
+    @Benchmark
+    public MapOrString moveBefore (ModelState model, ChangeState changes) {
+        // Moves the last element in front of the first one, so the container rotates
+        String toMove = changes.order.pollLast();
+        String position = changes.containerPosition + '/' + toMove;
+        Change move = new Change(Change.ChangeType.MOVE, position, null, null, position, changes.order.peekFirst());
+        changes.order.addFirst(toMove);
+        return Models.applyChange(model.model, move);
+    }
+
+    @Benchmark
+    public MapOrString reset (ModelState model, ChangeState changes) {
+        return Models.applyChange(model.model, changes.resetEntity);
+    }
+}
@@ -0,0 +1,62 @@
+package net.dontcode.core.benchmarks;
+
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookup of elements in the model by their position
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindAtPositionBenchmark {
+
+    @State(Scope.Thread)
+    public static class PositionState {
+        String existing;
+        String missing;
+        String existingContainer;
+
+        @Setup(Level.Trial)
+        public void setup (ModelState state) {
+            existing = state.middlePosition + "/fields/k1/name";
+            missing = state.middlePosition + "/fields/unknown/name";
+            existingContainer = state.middlePosition + "/fields";
+        }
+    }
+
+    @Benchmark
+    public MapOrString findExisting (ModelState model, PositionState positions) {
+        return Models.findAtPosition(model.model, positions.existing, false);
+    }
+
+    @Benchmark
+    public MapOrString findMissing (ModelState model, PositionState positions) {
+        return Models.findAtPosition(model.model, positions.missing, false);
+    }
+
+    @Benchmark
+    public MapOrString findWithCreate (ModelState model, PositionState positions) {
+        return Models.findAtPosition(model.model, positions.existingContainer, true);
+    }
+
+    @Benchmark
+    public MapOrString find (ModelState model, PositionState positions) {
+        return model.model.find(positions.existing);
+    }
+}
@@ -0,0 +1,71 @@
+package net.dontcode.core.benchmarks;
+
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ordered insertion of elements in a container, as done by MOVE changes or changes with a beforeKey.
+ * The container is at the given depth in the model, stored in the given backend, and elements are inserted before its first, middle or at its end.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapInsertBenchmark {
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    @Param({"ModelMap", "LinkedHashMap"})
+    public String backend;
+
+    @Param({"first", "middle", "end"})
+    public String position;
+
+    MapOrString model;
+    String containerPosition;
+    String beforeKey;
+    String[] moved;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup () {
+        model = ModelState.createModel(size, depth, backend);
+        containerPosition = ModelGenerator.containerPosition(depth);
+        beforeKey = switch (position) {
+            case "first" -> ModelGenerator.keyOf(0);
+            case "middle" -> ModelGenerator.keyOf(size / 2);
+            case "end" -> null;
+            default -> throw new RuntimeException("Unknown position "+position);
+        };
+        // Two elements are moved in turn, so that each insert really changes the order
+        moved = new String[] {ModelGenerator.keyOf(size-1), ModelGenerator.keyOf(size-2)};
+    }
+
+    @Benchmark
+    public MapOrString insert () {
+        MapOrString container = Models.findAtPosition(model, containerPosition, false);
+        String key = moved[next];
+        next = 1-next;
+        container.mapInsert(key, container.mapGet(key), beforeKey);
+        return container;
+    }
+}
@@ -0,0 +1,84 @@
+package net.dontcode.core.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.Message;
+import net.dontcode.core.binary.BinaryCodec;
+import net.dontcode.core.json.DontCodeJsonModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes the Messages exchanged between the services, with reflective databind, with the DontCodeJsonModule
+ * and with the BinaryCodec.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageCodecBenchmark {
+    /**
+     * Number of entities in the application sent by the change
+     */
+    @Param({"1", "100"})
+    public int size;
+
+    final ObjectMapper reflective = new ObjectMapper();
+    Message message;
+    byte[] json;
+    byte[] binary;
+
+    @Setup
+    public void setup () throws IOException {
+        message = new Message(Message.MessageType.CHANGE, "session",
+                new Change(Change.ChangeType.UPDATE, "creation", ModelGenerator.generate(size, 0).get("creation"),
+                        new DontCodeModelPointer("creation", "creation", "", "", "creation", true)));
+        json = reflective.writeValueAsBytes(message);
+        binary = BinaryCodec.encode(message);
+    }
+
+    @Benchmark
+    public byte[] writeDatabind () throws IOException {
+        return reflective.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] writeModule () throws IOException {
+        return DontCodeJsonModule.messageWriter.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public Message readDatabind () throws IOException {
+        return reflective.readValue(json, Message.class);
+    }
+
+    @Benchmark
+    public Message readModule () throws IOException {
+        return DontCodeJsonModule.messageReader.readValue(json);
+    }
+
+    @Benchmark
+    public byte[] writeBinary () {
+        return BinaryCodec.encode(message);
+    }
+
+    @Benchmark
+    public Message readBinary () throws IOException {
+        return BinaryCodec.decodeMessage(binary);
+    }
+}
@@ -0,0 +1,63 @@
+package net.dontcode.core.benchmarks;
+
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.compact.CompactModel;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Measures the heap retained by generated models stored as ModelMaps or as a CompactModel.
+ * JMH only measures the allocations, so each kind of model is built a number of times and kept,
+ * and the used heap is compared after full garbage collections. Strings are shared with the generated model, so they are not counted.
+ *
+ * Run it with: java -Xmx2g -cp java/benchmarks/target/benchmarks.jar net.dontcode.core.benchmarks.ModelFootprint
+ */
+public class ModelFootprint {
+    protected static final int[] SIZES = {10, 100, 1000, 10000};
+    /**
+     * Enough copies of each model to be well above the noise of the heap usage
+     */
+    protected static final int ENTITIES = 200000;
+
+    public static void main (String[] args) {
+        System.out.printf("%8s %16s %16s %8s%n", "size", "ModelMap (B)", "Compact (B)", "ratio");
+        for (int size: SIZES) {
+            Map<String, Object> source = ModelGenerator.generate(size, 1);
+            int copies = ENTITIES / size;
+            long modelMaps = retained(source, copies, ModelMap::toModelValue);
+            long compact = retained(source, copies, content -> {
+                // Arrays are trimmed to the elements, as for a model kept for long
+                CompactModel ret = CompactModel.of(content);
+                ret.compact();
+                return ret;
+            });
+            System.out.printf("%8d %16d %16d %8.1f%n", size, modelMaps, compact, (double) modelMaps / compact);
+        }
+    }
+
+    /**
+     * @return the bytes retained by one model built from the source
+     */
+    protected static long retained (Map<String, Object> source, int copies, Function<Map<String, Object>, Object> builder) {
+        Object[] models = new Object[copies];
+        long before = usedHeap();
+        for (int i = 0; i < copies; i++) {
+            models[i] = builder.apply(source);
+        }
+        long after = usedHeap();
+        if (models[copies - 1] == null)
+            throw new IllegalStateException();
+        return (after - before) / copies;
+    }
+
+    protected static long usedHeap () {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
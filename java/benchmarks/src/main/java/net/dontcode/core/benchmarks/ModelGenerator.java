@@ -0,0 +1,67 @@
+package net.dontcode.core.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates synthetic application models for the benchmarks.
+ * The model is a chain of depth nested elements ending with a container of size entities, like:
+ * creation/level1/.../levelN/entities/{k0...kSize}
+ */
+public class ModelGenerator {
+
+    public static final String ENTITIES = "entities";
+
+    /**
+     * Position of the container holding the generated entities
+     * @param depth
+     * @return
+     */
+    public static String containerPosition (int depth) {
+        StringBuilder ret = new StringBuilder("creation");
+        for (int i = 1; i <= depth; i++) {
+            ret.append("/level").append(i);
+        }
+        return ret.append('/').append(ENTITIES).toString();
+    }
+
+    public static String keyOf (int index) {
+        return "k" + index;
+    }
+
+    public static Map<String, Object> generate (int size, int depth) {
+        Map<String, Object> root = new LinkedHashMap<>();
+        Map<String, Object> cur = new LinkedHashMap<>();
+        root.put("creation", cur);
+        cur.put("name", "Benchmark");
+        cur.put("type", "Application");
+        for (int i = 1; i <= depth; i++) {
+            Map<String, Object> next = new LinkedHashMap<>();
+            next.put("name", "Level " + i);
+            cur.put("level" + i, next);
+            cur = next;
+        }
+
+        Map<String, Object> entities = new LinkedHashMap<>();
+        cur.put(ENTITIES, entities);
+        for (int i = 0; i < size; i++) {
+            entities.put(keyOf(i), entity(i));
+        }
+        return root;
+    }
+
+    public static Map<String, Object> entity (int index) {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("name", "Entity " + index);
+        ret.put("from", "Source");
+        Map<String, Object> fields = new LinkedHashMap<>();
+        ret.put("fields", fields);
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> field = new LinkedHashMap<>();
+            field.put("name", "Field " + i);
+            field.put("type", "Text");
+            fields.put(keyOf(i), field);
+        }
+        return ret;
+    }
+}
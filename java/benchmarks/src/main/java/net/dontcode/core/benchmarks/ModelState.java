@@ -0,0 +1,52 @@
+package net.dontcode.core.benchmarks;
+
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+
+/**
+ * A generated model shared by the benchmarks, parameterized by the size of the entities container,
+ * by the nesting depth of this container and by the maps storing it.
+ */
+@State(Scope.Thread)
+public class ModelState {
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    @Param({"1", "4", "16"})
+    public int depth;
+
+    /**
+     * ModelMap for a model built from changes, LinkedHashMap for a model read by Jackson and used as is
+     */
+    @Param({"ModelMap", "LinkedHashMap"})
+    public String backend;
+
+    public MapOrString model;
+    public String containerPosition;
+    public String middleKey;
+    public String middlePosition;
+
+    @Setup(Level.Trial)
+    public void setup () {
+        model = createModel(size, depth, backend);
+        containerPosition = ModelGenerator.containerPosition(depth);
+        middleKey = ModelGenerator.keyOf(size / 2);
+        middlePosition = containerPosition + '/' + middleKey;
+    }
+
+    public static MapOrString createModel (int size, int depth, String backend) {
+        Map<String, Object> generated = ModelGenerator.generate(size, depth);
+        return switch (backend) {
+            case "ModelMap" -> MapOrString.fromObject(ModelMap.toModelValue(generated));
+            case "LinkedHashMap" -> new MapOrString(generated);
+            default -> throw new RuntimeException("Unknown backend "+backend);
+        };
+    }
+}
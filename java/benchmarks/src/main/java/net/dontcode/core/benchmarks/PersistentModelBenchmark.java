@@ -0,0 +1,76 @@
+package net.dontcode.core.benchmarks;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.persistent.PersistentModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the creation of a new version of a PersistentModel for each type of change.
+ * Each change is applied to the same version, which is never modified, so the result is the cost of one edit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistentModelBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class PersistentState {
+        @Param({"10", "100", "1000"})
+        public int size;
+
+        @Param({"1", "4", "16"})
+        public int depth;
+
+        PersistentModel model;
+        Change updateName;
+        Change addEntity;
+        Change deleteEntity;
+        Change moveEntity;
+
+        @Setup(Level.Trial)
+        public void setup () {
+            model = PersistentModel.of(ModelGenerator.generate(size, depth));
+            String containerPosition = ModelGenerator.containerPosition(depth);
+            String middlePosition = containerPosition + '/' + ModelGenerator.keyOf(size / 2);
+            updateName = new Change(Change.ChangeType.UPDATE, middlePosition + "/name", "Renamed");
+            addEntity = new Change(Change.ChangeType.ADD, containerPosition + "/added", ModelGenerator.entity(size));
+            deleteEntity = new Change(Change.ChangeType.DELETE, middlePosition, null);
+            moveEntity = new Change(Change.ChangeType.MOVE, middlePosition, null, null, middlePosition, ModelGenerator.keyOf(0));
+        }
+    }
+
+    @Benchmark
+    public PersistentModel update (PersistentState state) {
+        return state.model.applyChange(state.updateName);
+    }
+
+    @Benchmark
+    public PersistentModel add (PersistentState state) {
+        return state.model.applyChange(state.addEntity);
+    }
+
+    @Benchmark
+    public PersistentModel delete (PersistentState state) {
+        return state.model.applyChange(state.deleteEntity);
+    }
+
+    @Benchmark
+    public PersistentModel moveBefore (PersistentState state) {
+        return state.model.applyChange(state.moveEntity);
+    }
+}
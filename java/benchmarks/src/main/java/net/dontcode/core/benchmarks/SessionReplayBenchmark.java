@@ -0,0 +1,105 @@
+package net.dontcode.core.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import net.dontcode.core.json.ChangeStreamReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the recorded sessions used by the unit tests, as done when a project model is rebuilt from its stored changes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionReplayBenchmark {
+    @Param({"complex-session.json", "very-complex-session.json"})
+    public String session;
+
+    final ObjectMapper mapper = new ObjectMapper();
+    String content;
+    List<Change> changes;
+
+    @Setup(Level.Trial)
+    public void load () throws IOException {
+        try (InputStream in = SessionReplayBenchmark.class.getClassLoader().getResourceAsStream("sessions/" + session)) {
+            if (in == null)
+                throw new IOException("Cannot find session " + session);
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Changes values are merged into the model, so they are parsed again before each replay
+     */
+    @Setup(Level.Invocation)
+    public void parse () throws IOException {
+        changes = toChanges(content);
+    }
+
+    @Benchmark
+    public MapOrString replay () {
+        MapOrString target = new MapOrString();
+        for (Change change : changes) {
+            Models.applyChange(target, change);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public MapOrString replayBatch () {
+        return Models.applyChanges(new MapOrString(), changes);
+    }
+
+    @Benchmark
+    public MapOrString parseAndReplay () throws IOException {
+        MapOrString target = new MapOrString();
+        for (Change change : toChanges(content)) {
+            Models.applyChange(target, change);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public MapOrString streamAndReplay () throws IOException {
+        try (ChangeStreamReader reader = ChangeStreamReader.of(new StringReader(content))) {
+            return reader.applyTo(new MapOrString());
+        }
+    }
+
+    protected List<Change> toChanges (String json) throws IOException {
+        Map<String, Map<String, Object>> stored = mapper.readValue(json, new TypeReference<LinkedHashMap<String, Map<String, Object>>>() {});
+        List<Change> ret = new ArrayList<>(stored.size());
+        for (Map<String, Object> curContent : stored.values()) {
+            ret.add(new Change(Change.ChangeType.valueOf(curContent.get("type").toString()),
+                    (String) curContent.get("position"), curContent.get("value")));
+        }
+        return ret;
+    }
+}
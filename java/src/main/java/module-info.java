@@ -1,7 +1,23 @@
 module net.dontcode.core{
     requires org.slf4j;
     requires com.fasterxml.jackson.annotation;
+    requires transitive com.fasterxml.jackson.core;
+    requires transitive com.fasterxml.jackson.databind;
+    requires transitive jdk.jfr;
     exports net.dontcode.core;
     exports net.dontcode.core.project;
     exports net.dontcode.core.store;
+    exports net.dontcode.core.persistent;
+    exports net.dontcode.core.journal;
+    exports net.dontcode.core.json;
+    exports net.dontcode.core.binary;
+    exports net.dontcode.core.session;
+    exports net.dontcode.core.index;
+    exports net.dontcode.core.query;
+    exports net.dontcode.core.schema;
+    exports net.dontcode.core.subscription;
+    exports net.dontcode.core.compact;
+    exports net.dontcode.core.cache;
+    exports net.dontcode.core.metrics;
+    exports net.dontcode.core.jfr;
 }
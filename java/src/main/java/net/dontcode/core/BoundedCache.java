@@ -0,0 +1,102 @@
+package net.dontcode.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A thread safe cache of at most maxSize values, for values used again and again but cheap to calculate, like parsed positions.
+ * Lookups don't lock. Once full, each new value evicts another one with a CLOCK algorithm:
+ * a value found in the cache survives the next MAX_CHANCES sweeps, so values used only once (like the positions generated by a diff)
+ * are evicted first, and values used again and again stay.
+ * @param <K>
+ * @param <V>
+ */
+public class BoundedCache<K, V> {
+    protected static final int MAX_CHANCES = 3;
+
+    protected final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    protected final Entry<K, V>[] ring;
+    protected int count;
+    protected int hand;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BoundedCache(int maxSize) {
+        if (maxSize<=0)
+            throw new RuntimeException("The maximum size of a cache must be positive");
+        this.ring = new Entry[maxSize];
+    }
+
+    /**
+     * @return the cached value, or null
+     */
+    public V get (K key) {
+        Entry<K, V> found = entries.get(key);
+        if (found==null)
+            return null;
+        // Only written when needed, so that hits don't invalidate the cache line. Losing a concurrent write only loses a few chances.
+        if (found.chances<MAX_CHANCES)
+            found.chances = MAX_CHANCES;
+        return found.value;
+    }
+
+    /**
+     * Returns the cached value, or calculates and caches it. The calculation is done without lock, so it may be done twice for the same key.
+     * @param key
+     * @param calculator calculates the value, exceptions are thrown back and nothing is cached
+     * @return the value
+     */
+    public V computeIfAbsent (K key, Function<? super K, ? extends V> calculator) {
+        V ret = get(key);
+        if (ret!=null)
+            return ret;
+        V calculated = calculator.apply(key);
+        if (calculated==null)
+            return null;
+        synchronized (this) {
+            Entry<K, V> existing = entries.get(key);
+            if (existing!=null)
+                return existing.value;
+            Entry<K, V> added = new Entry<>(key, calculated);
+            if (count<ring.length) {
+                ring[count++] = added;
+            } else {
+                while (ring[hand].chances>0) {
+                    ring[hand].chances--;
+                    hand = (hand+1)%ring.length;
+                }
+                entries.remove(ring[hand].key);
+                ring[hand] = added;
+                hand = (hand+1)%ring.length;
+            }
+            entries.put(key, added);
+        }
+        return calculated;
+    }
+
+    public int size () {
+        return entries.size();
+    }
+
+    public int getMaxSize () {
+        return ring.length;
+    }
+
+    public synchronized void clear () {
+        entries.clear();
+        Arrays.fill(ring, null);
+        count = 0;
+        hand = 0;
+    }
+
+    protected static class Entry<K, V> {
+        protected final K key;
+        protected final V value;
+        protected int chances;
+
+        protected Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -87,24 +87,14 @@ public class DontCodeModelPointer {
     public static String lastElementOf(String position) {
         if( position==null)
             return null;
-        int slashPos = position.lastIndexOf('/');
-        if( slashPos==-1)
-            return position;
-        else {
-            return position.substring(slashPos+1);
-        }
+        return ModelPath.of(position).getLastElement();
     }
 
     public static String parentPositionOf(String position) {
         if ((position==null)||(position.length()==0)) {
             return null;
         }
-        int slashPos = position.lastIndexOf('/');
-        if( slashPos==-1)
-            return "";
-        else {
-            return position.substring(0,slashPos);
-        }
+        return ModelPath.of(position).getParent().getPosition();
     }
 
     @Override
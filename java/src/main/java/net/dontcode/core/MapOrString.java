@@ -1,5 +1,8 @@
 package net.dontcode.core;
 
+import net.dontcode.core.jfr.MapInsertRebuildEvent;
+import net.dontcode.core.metrics.ModelMetrics;
+
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -9,7 +12,7 @@ public class MapOrString {
     protected String string;
 
     public MapOrString() {
-        this.map = new LinkedHashMap<>();
+        this.map = new ModelMap();
     }
 
     public MapOrString(Map<String, Object> map) {
@@ -59,15 +62,18 @@ public class MapOrString {
     }
 
     public MapOrString find (String toFind) {
-        String[] positions = toFind.split("/");
+        return find(ModelPath.of(toFind));
+    }
+
+    public MapOrString find (ModelPath toFind) {
         var cur = this.getMap();
         String nextPos;
-        for (int i=0;i < positions.length; i++)  {
-            nextPos = positions[i];
+        for (int i=0;i < toFind.size(); i++)  {
+            nextPos = toFind.element(i);
             var child = cur.get(nextPos);
             if( child instanceof Map<?,?>) {
                 cur= (Map<String, Object>) child;
-            } else if (i<positions.length-1){
+            } else if (i<toFind.size()-1){
                 return null;
             } else
                 return MapOrString.fromObject(child);
@@ -98,17 +104,48 @@ public class MapOrString {
 
     public void mapPut(String key, Object val) {
         if (this.map!=null)
-            this.map.put(key, val);
+            // ModelMaps share their keys by themselves
+            this.map.put((this.map instanceof OrderedModelMap)?key:ModelKeys.canonical(key), val);
         else
             throw new RuntimeException("Not a map");
     }
 
-    public void mapInsert(String key, Object val, String beforeKey) {
-        if( beforeKey==null) {
+    /**
+     * Inserts the value just before beforeKey, or at the end if beforeKey is null or missing
+     * This is done in constant time if the map is a ModelMap (or another OrderedModelMap), otherwise the map is rebuilt.
+     * @param newKey
+     * @param val
+     * @param beforeKey
+     */
+    public void mapInsert(String newKey, Object val, String beforeKey) {
+        ModelMetrics measures = Models.metrics;
+        if (measures==ModelMetrics.NONE) {
+            insert(newKey, val, beforeKey);
+            return;
+        }
+        if (this.map!=null)
+            measures.recordContainerSize(ModelMetrics.Operation.MAP_INSERT, this.map.size());
+        long start = System.nanoTime();
+        try {
+            insert(newKey, val, beforeKey);
+        } finally {
+            measures.recordLatency(ModelMetrics.Operation.MAP_INSERT, null, System.nanoTime()-start);
+        }
+    }
+
+    protected void insert(String newKey, Object val, String beforeKey) {
+        // ModelMaps share their keys by themselves
+        String key = (this.map instanceof OrderedModelMap)?newKey:ModelKeys.canonical(newKey);
+        if (this.map instanceof OrderedModelMap) {
+            ((OrderedModelMap) this.map).putBefore(key, val, beforeKey);
+        } else if ((beforeKey==null) || ((this.map!=null) && (!this.map.containsKey(beforeKey)))) {
+            // Like a ModelMap, the element is put at the end if beforeKey is missing
             this.mapRemove(key);
-            this.mapPut(key, val);
+            this.map.put(key, val);
         }else {
             if (this.map != null) {
+                MapInsertRebuildEvent event = new MapInsertRebuildEvent();
+                event.begin();
                 Map<String, Object> newMap = new LinkedHashMap<>();
 
                 this.map.entrySet().forEach(stringMapOrStringEntry -> {
@@ -120,6 +157,14 @@ public class MapOrString {
                 });
                 this.map.clear();
                 this.map.putAll(newMap);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.key = key;
+                    event.beforeKey = beforeKey;
+                    event.mapClass = this.map.getClass();
+                    event.mapSize = this.map.size();
+                    event.commit();
+                }
             }
             else
                 throw new RuntimeException("Not a map");
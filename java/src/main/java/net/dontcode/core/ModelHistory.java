@@ -0,0 +1,267 @@
+package net.dontcode.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies changes to a model while keeping what's needed to undo and redo them.
+ * Before each change, only the elements it can modify are copied, and kept as the inverse changes that restore them:
+ *  - For an UPDATE, RESET or DELETE, the previous element at the position,
+ *  - For an ADD merged into an existing element, only its properties that the change modifies,
+ *  - For a MOVE, also the moved element at its old position with the key following it.
+ * So memory used by each step depends on the size of the change, not of the model.
+ */
+public class ModelHistory {
+    protected final MapOrString model;
+    protected final int maxSteps;
+    protected final ArrayDeque<Step> undoSteps = new ArrayDeque<>();
+    protected final ArrayDeque<Step> redoSteps = new ArrayDeque<>();
+
+    public ModelHistory(MapOrString model) {
+        this(model, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param model
+     * @param maxSteps maximum number of changes that can be undone, the oldest ones are forgotten
+     */
+    public ModelHistory(MapOrString model, int maxSteps) {
+        this.model = model;
+        this.maxSteps = maxSteps;
+    }
+
+    public MapOrString getModel() {
+        return model;
+    }
+
+    /**
+     * Applies the change to the model like Models.applyChange(), and keeps its inverse so that it can be undone.
+     * Redoing changes is not possible anymore.
+     * If the change cannot be applied, what it may already have modified is reverted.
+     * @param change
+     * @return the model
+     */
+    public MapOrString applyChange (Change change) {
+        Step step = capture(change, copyOf(change));
+        try {
+            Models.applyChange(model, change);
+        } catch (RuntimeException e) {
+            revert(step);
+            throw e;
+        }
+        undoSteps.push(step);
+        if (undoSteps.size()>maxSteps)
+            undoSteps.removeLast();
+        redoSteps.clear();
+        return model;
+    }
+
+    public boolean canUndo () {
+        return !undoSteps.isEmpty();
+    }
+
+    public boolean canRedo () {
+        return !redoSteps.isEmpty();
+    }
+
+    /**
+     * Cancels the last change applied
+     * @return false if there is nothing to undo
+     */
+    public boolean undo () {
+        Step step = undoSteps.poll();
+        if (step==null)
+            return false;
+        revert(step);
+        redoSteps.push(step);
+        return true;
+    }
+
+    /**
+     * Applies again the last change undone.
+     * If it cannot be applied anymore, what it may already have modified is reverted and it stays the next change to redo.
+     * @return false if there is nothing to redo
+     */
+    public boolean redo () {
+        Step step = redoSteps.poll();
+        if (step==null)
+            return false;
+        Step redone = capture(step.change, step.change);
+        try {
+            Models.applyChange(model, copyOf(step.change));
+        } catch (RuntimeException e) {
+            // Keep the step so that the model stays as it was and can still be redone
+            revert(redone);
+            redoSteps.push(step);
+            throw e;
+        }
+        undoSteps.push(redone);
+        return true;
+    }
+
+    protected void revert (Step step) {
+        if (step.rootBefore!=null) {
+            // The whole model was changed, so just find the differences
+            for (Change inverse: Models.diff(model, new MapOrString(Models.asMap(step.rootBefore)))) {
+                Models.applyChange(model, inverse);
+            }
+        } else {
+            for (Change inverse: step.inverse) {
+                // Values are copied as they become part of the model
+                Models.applyChange(model, copyOf(inverse));
+            }
+        }
+    }
+
+    public int getUndoCount () {
+        return undoSteps.size();
+    }
+
+    public int getRedoCount () {
+        return redoSteps.size();
+    }
+
+    public void clear () {
+        undoSteps.clear();
+        redoSteps.clear();
+    }
+
+    /**
+     * Calculates the changes restoring the model as it is now, once the change is applied
+     * @param toRedo the change kept in the step to redo it
+     */
+    protected Step capture (Change change, Change toRedo) {
+        ModelPath path = ModelPath.of(change.getPosition());
+        if (path.getLastElement().isEmpty()) {
+            // The change targets the parent itself
+            path = path.getParent();
+        }
+        if ((path==null) || (path.isRoot())) {
+            return new Step(toRedo, null, copyOf(model.getMap()));
+        }
+
+        List<Change> inverse = new ArrayList<>();
+        ModelPath restored = restoreTarget(change, path, inverse);
+        if ((change.getType()!= Change.ChangeType.MOVE) || (change.getOldPosition()==null) || (restored==null))
+            return new Step(toRedo, inverse, null);
+
+        // A MOVE may remove the element at its old position
+        ModelPath oldPath = ModelPath.of(change.getOldPosition());
+        if ((oldPath.isRoot()) || (isInside(oldPath, restored)))
+            return new Step(toRedo, inverse, null);
+        Object oldParent = Models.findAtPosition(model.getMap(), oldPath.getParent(), false);
+        if ((!(oldParent instanceof Map<?,?>)) || (!Models.asMap(oldParent).containsKey(oldPath.getLastElement())))
+            return new Step(toRedo, inverse, null);
+        List<Change> restoreOld = new ArrayList<>();
+        restoreElement(Models.asMap(oldParent), oldPath, restoreOld);
+        if (isInside(restored, oldPath)) {
+            return new Step(toRedo, restoreOld, null);
+        }
+        // Restore first the element that is before the other one
+        if (restored.getLastElement().equals(nextKeyOf(Models.asMap(oldParent), oldPath.getLastElement()))) {
+            inverse.addAll(restoreOld);
+            return new Step(toRedo, inverse, null);
+        } else {
+            restoreOld.addAll(inverse);
+            return new Step(toRedo, restoreOld, null);
+        }
+    }
+
+    /**
+     * Adds the changes restoring the element at the position of the change, or its first parent that will be created
+     * @return the position of the element restored, or null if nothing can be modified
+     */
+    protected ModelPath restoreTarget (Change change, ModelPath path, List<Change> into) {
+        ModelPath createdParent = Models.firstMissing(model, path.getParent());
+        if (createdParent!=null) {
+            Object parent = Models.findAtPosition(model.getMap(), createdParent.getParent(), false);
+            if (!(parent instanceof Map<?,?>))
+                return null;
+            restoreElement(Models.asMap(parent), createdParent, into);
+            return createdParent;
+        }
+
+        Object parent = Models.findAtPosition(model.getMap(), path.getParent(), false);
+        if (!(parent instanceof Map<?,?>))
+            return null;
+        Map<String, Object> parentMap = Models.asMap(parent);
+        Object previous = parentMap.get(path.getLastElement());
+        if ((change.getType()== Change.ChangeType.ADD) && (change.getBeforeKey()==null)
+                && (previous instanceof Map<?,?>) && (change.getValue() instanceof Map<?,?>)) {
+            // Merged: only the properties in the value will be modified
+            restoreMerged(Models.asMap(previous), Models.asMap(change.getValue()), path, into);
+        } else {
+            // Otherwise the element is replaced
+            restoreElement(parentMap, path, into);
+        }
+        return path;
+    }
+
+    protected static boolean isInside (ModelPath path, ModelPath parent) {
+        return (path.size()>=parent.size()) && (path.getPosition().equals(parent.getPosition()) || path.getPosition().startsWith(parent.getPosition()+'/'));
+    }
+
+    /**
+     * Adds the changes that restore the properties of previous that the value will modify.
+     * They are restored from the last one, so that the next one is always at its place when restoring an element.
+     */
+    protected static void restoreMerged (Map<String, Object> previous, Map<String, Object> value, ModelPath path, List<Change> into) {
+        List<String> keys = new ArrayList<>(previous.keySet());
+        for (int i=keys.size()-1;i>=0;i--) {
+            String key = keys.get(i);
+            if (!value.containsKey(key))
+                continue;
+            Object previousChild = previous.get(key);
+            Object valueChild = value.get(key);
+            if (previousChild==valueChild)
+                continue;   // Models.applyChange ignores it
+            if ((previousChild instanceof Map<?,?>) && (valueChild instanceof Map<?,?>))
+                restoreMerged(Models.asMap(previousChild), Models.asMap(valueChild), path.subPath(key), into);
+            else
+                restoreElement(previous, path.subPath(key), into);
+        }
+        for (String key:value.keySet()) {
+            if (!previous.containsKey(key))
+                into.add(new Change(Change.ChangeType.DELETE, path.subPath(key).getPosition(), null));
+        }
+    }
+
+    /**
+     * Adds the changes that put back the element as it is now in its parent: the element is deleted and added again before its next key.
+     */
+    protected static void restoreElement (Map<String, Object> parent, ModelPath path, List<Change> into) {
+        String position = path.getPosition();
+        into.add(new Change(Change.ChangeType.DELETE, position, null));
+        Object previous = parent.get(path.getLastElement());
+        if (previous!=null) {
+            into.add(new Change(Change.ChangeType.ADD, position, copyOf(previous), null, null, nextKeyOf(parent, path.getLastElement())));
+        }
+    }
+
+    protected static String nextKeyOf (Map<String, Object> map, String key) {
+        if (map instanceof OrderedModelMap)
+            return ((OrderedModelMap) map).nextKey(key);
+        for (Iterator<String> keys = map.keySet().iterator(); keys.hasNext();) {
+            if (keys.next().equals(key))
+                return keys.hasNext()?keys.next():null;
+        }
+        return null;
+    }
+
+    protected static Change copyOf (Change change) {
+        return new Change(change.getType(), change.getPosition(), copyOf(change.getValue()), change.getPointer(), change.getOldPosition(), change.getBeforeKey());
+    }
+
+    protected static Object copyOf (Object value) {
+        return Models.copyOf(value);
+    }
+
+    /**
+     * A change and what's needed to undo it: either its inverse changes, or the model before it when it changed the root
+     */
+    protected record Step(Change change, List<Change> inverse, Object rootBefore) {
+    }
+}
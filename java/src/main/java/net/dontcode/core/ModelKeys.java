@@ -0,0 +1,100 @@
+package net.dontcode.core;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Shares the keys of all models: every session has elements named "creation", "entities", "name", "a"...
+ * and without this each model would keep its own copy of these strings.
+ *
+ * Keys are canonicalized when they enter a model (ModelMap, MapOrString.mapPut / mapInsert, Models.findAtPosition),
+ * so models read by the json or binary readers share them as well.
+ * The table is a BoundedCache: once full, each new key evicts one not used recently, so common keys stay shared.
+ * Statistics are only kept once enabled, as they would otherwise be updated by all threads on each lookup.
+ */
+public class ModelKeys {
+    public static final int DEFAULT_MAX_KEYS = 65536;
+    /**
+     * Longer keys are unlikely to be shared
+     */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    protected static volatile BoundedCache<String, String> keys = new BoundedCache<>(DEFAULT_MAX_KEYS);
+
+    protected static volatile boolean statsEnabled = false;
+    protected static final LongAdder lookups = new LongAdder();
+    protected static final LongAdder duplicates = new LongAdder();
+    protected static final LongAdder savedBytes = new LongAdder();
+    protected static final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param key
+     * @return the shared instance of the key
+     */
+    public static String canonical (String key) {
+        if ((key==null) || (key.length()>MAX_KEY_LENGTH))
+            return key;
+        BoundedCache<String, String> table = keys;
+        String found = table.get(key);
+        if (found==null) {
+            if ((statsEnabled) && (table.size()>=table.getMaxSize()))
+                evicted.increment();
+            found = table.computeIfAbsent(key, Function.identity());
+        }
+        if (statsEnabled) {
+            lookups.increment();
+            if (found!=key) {
+                duplicates.increment();
+                savedBytes.add(sizeOf(key));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return an estimation of the memory used by a String: its header and its array of (latin1) bytes, aligned on 8 bytes
+     */
+    protected static long sizeOf (String key) {
+        return 24 + ((16 + key.length() + 7) & ~7);
+    }
+
+    /**
+     * Replaces the table by an empty one keeping at most max keys. Models keep the keys they have.
+     * @param max
+     */
+    public static void setMaxKeys (int max) {
+        keys = new BoundedCache<>(max);
+    }
+
+    /**
+     * Starts or stops counting the lookups, duplicates and evictions
+     */
+    public static void setStatsEnabled (boolean enabled) {
+        statsEnabled = enabled;
+    }
+
+    public static Stats getStats () {
+        return new Stats(keys.size(), lookups.sum(), duplicates.sum(), savedBytes.sum(), evicted.sum());
+    }
+
+    /**
+     * Forgets all keys and resets the statistics. Models keep the keys they have.
+     */
+    public static void clear () {
+        keys.clear();
+        lookups.reset();
+        duplicates.reset();
+        savedBytes.reset();
+        evicted.reset();
+    }
+
+    /**
+     * @param size number of keys in the table
+     * @param lookups number of keys canonicalized while enabled
+     * @param duplicates number of copies replaced by the shared key
+     * @param savedBytes estimation of the memory released by these copies
+     * @param evicted number of keys evicted to make room for new ones
+     */
+    public record Stats(int size, long lookups, long duplicates, long savedBytes, long evicted) {
+    }
+}
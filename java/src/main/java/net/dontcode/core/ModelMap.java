@@ -0,0 +1,465 @@
+package net.dontcode.core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An ordered map used to store the elements of an application model.
+ * Like a LinkedHashMap, it keeps the order of insertion, but elements can as well be inserted or moved before any other one in constant time.
+ * As it's a Map, Jackson serializes it like any other map.
+ * The linked nodes are directly indexed by an open addressing table, so each entry costs a single object.
+ *
+ * It remembers the highest key generated like the editor does ("a", "b"... "z", "aa"...), so that a new key can be generated without looking at the other ones.
+ * Keys that don't follow the generated ones, like "name" or "fields", are not taken into account.
+ */
+public class ModelMap extends AbstractMap<String, Object> implements OrderedModelMap {
+    /**
+     * The characters used by the editor to generate the keys of arrays (without w)
+     */
+    public static final String KEY_CHARS = "abcdefghijklmnopqrstuvxyz";
+    /**
+     * Longer keys cannot be generated before long overflows
+     */
+    protected static final int MAX_KEY_LENGTH = 12;
+
+    /**
+     * Size of the table once something is put, and maximum fill ratio before it's doubled
+     */
+    protected static final int MIN_CAPACITY = 4;
+    protected static final float LOAD_FACTOR = .75f;
+
+    /**
+     * The nodes indexed by the hash of their key, with linear probing. Allocated by the first put.
+     */
+    protected Node[] table;
+    protected int size;
+    protected Node head;
+    protected Node tail;
+    protected int modCount;
+    /**
+     * The ordinal of the highest generated key ever put in this map that follows the previous ones, -1 if none.
+     * It only lives in memory: it's kept by Models.copyOf(), but not by the Json or binary codecs nor by PersistentModel.
+     */
+    protected long lastKeyOrdinal = -1;
+
+    public ModelMap() {
+    }
+
+    public ModelMap(Map<String, ?> from) {
+        if (!from.isEmpty())
+            table = new Node[capacityFor(from.size())];
+        from.forEach(this::put);
+    }
+
+    /**
+     * Converts the value so that all its maps are ModelMaps.
+     * Maps that are not ModelMaps are copied, whereas ModelMaps are kept and only their children converted if needed.
+     * @param value a String, a Map or null
+     * @return
+     */
+    public static Object toModelValue (Object value) {
+        if (value instanceof ModelMap) {
+            for (Node cur = ((ModelMap) value).head; cur != null; cur = cur.after) {
+                if (cur.value instanceof Map<?,?>)
+                    cur.value = toModelValue(cur.value);
+            }
+            return value;
+        } else if (value instanceof Map<?,?>) {
+            ModelMap ret = new ModelMap();
+            Models.asMap(value).forEach((key, subValue) -> ret.put(key, toModelValue(subValue)));
+            return ret;
+        } else {
+            return value;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Node found = find(key);
+        return (found == null) ? null : found.value;
+    }
+
+    /**
+     * Replaces the value of an existing key without changing its place, or adds it at the end.
+     */
+    @Override
+    public Object put(String key, Object value) {
+        Node found = find(key);
+        if (found != null) {
+            Object old = found.value;
+            found.value = value;
+            return old;
+        }
+        linkBefore(newNode(key, value), null);
+        return null;
+    }
+
+    /**
+     * Inserts (or moves) the key with its value just before beforeKey.
+     * If beforeKey is null or not present, the key is put at the end.
+     * @param key
+     * @param value
+     * @param beforeKey
+     */
+    @Override
+    public void putBefore(String key, Object value, String beforeKey) {
+        Node found = find(key);
+        if (key.equals(beforeKey)) {
+            put(key, value);
+            return;
+        }
+        Node next = (beforeKey == null) ? null : find(beforeKey);
+        if (found == null) {
+            found = newNode(key, value);
+        } else {
+            found.value = value;
+            unlink(found);
+        }
+        linkBefore(found, next);
+    }
+
+    /**
+     * Moves the existing key, with its value, just before beforeKey, or at the end if beforeKey is null or not present.
+     * @param key
+     * @param beforeKey
+     * @return false if the key doesn't exist
+     */
+    public boolean moveBefore(String key, String beforeKey) {
+        Node found = find(key);
+        if (found == null)
+            return false;
+        if (!key.equals(beforeKey)) {
+            unlink(found);
+            linkBefore(found, (beforeKey == null) ? null : find(beforeKey));
+        }
+        return true;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if ((table == null) || (key == null))
+            return null;
+        int mask = table.length - 1;
+        for (int slot = slotOf(key, mask); table[slot] != null; slot = (slot + 1) & mask) {
+            Node found = table[slot];
+            if ((found.key == key) || (found.key.equals(key))) {
+                removeSlot(slot);
+                size--;
+                unlink(found);
+                return found.value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        table = null;
+        size = 0;
+        head = tail = null;
+        modCount++;
+    }
+
+    /**
+     * Generates a key not used by this map, nor by any key removed from this instance, in constant time.
+     * Keys removed before the map was read or rebuilt (from Json, binary, a PersistentModel, or a batch where an ADD and a DELETE of the key are merged)
+     * can be generated again, like the TypeScript editor does: only the keys present are guaranteed not to be generated.
+     * @return the first key not present after the highest one, like "c" if "a" and "b" are present, or "b" if "a" and "fields" are present
+     */
+    public String generateNextKey() {
+        String ret = keyOf(lastKeyOrdinal+1);
+        // A key put before the ones preceding it, like "z" in an empty map, is only skipped when reached
+        while (find(ret) != null) {
+            lastKeyOrdinal++;
+            ret = keyOf(lastKeyOrdinal+1);
+        }
+        return ret;
+    }
+
+    /**
+     * @param ordinal of a key, or -1
+     * @param lastOrdinal the ordinal of the highest generated key already present, or -1
+     * @param size the number of keys, including this one
+     * @return true if the key can follow the generated ones: there are enough other keys to have generated the ones before it.
+     * Keys like "name" or "fields" are made of the generated characters but have too high ordinals to be part of the sequence.
+     */
+    public static boolean followsGeneratedKeys(long ordinal, long lastOrdinal, int size) {
+        return (ordinal > lastOrdinal) && (ordinal <= lastOrdinal + size);
+    }
+
+    /**
+     * @param ordinal
+     * @return the generated key with this ordinal: 0 is "a", 24 is "z", 25 is "aa"...
+     */
+    public static String keyOf(long ordinal) {
+        if (ordinal < 0)
+            throw new RuntimeException("No key for negative ordinal " + ordinal);
+        int length = KEY_CHARS.length();
+        char[] buffer = new char[MAX_KEY_LENGTH + 2];
+        int start = buffer.length;
+        do {
+            buffer[--start] = KEY_CHARS.charAt((int) (ordinal % length));
+            ordinal = ordinal / length - 1;
+        } while (ordinal >= 0);
+        return new String(buffer, start, buffer.length - start);
+    }
+
+    /**
+     * @param key
+     * @return the ordinal of a key that could have been generated, or -1 if it can't
+     */
+    public static long ordinalOf(String key) {
+        int keyLength = key.length();
+        if ((keyLength == 0) || (keyLength > MAX_KEY_LENGTH))
+            return -1;
+        long ret = 0;
+        for (int i = 0; i < keyLength; i++) {
+            int digit = KEY_CHARS.indexOf(key.charAt(i));
+            if (digit == -1)
+                return -1;
+            ret = ret * KEY_CHARS.length() + digit + 1;
+        }
+        return ret - 1;
+    }
+
+    public String firstKey() {
+        return (head == null) ? null : head.key;
+    }
+
+    public String lastKey() {
+        return (tail == null) ? null : tail.key;
+    }
+
+    /**
+     * @param key
+     * @return the key following the given one, or null if it's the last one or is not present
+     */
+    @Override
+    public String nextKey(String key) {
+        Node found = find(key);
+        return ((found == null) || (found.after == null)) ? null : found.after.key;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new NodeIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                ModelMap.this.clear();
+            }
+        };
+    }
+
+    protected Node newNode(String key, Object value) {
+        key = ModelKeys.canonical(key);
+        Node ret = new Node(key, value);
+        if (table == null)
+            table = new Node[MIN_CAPACITY];
+        else if (size >= table.length * LOAD_FACTOR)
+            resize(table.length * 2);
+        int mask = table.length - 1;
+        int slot = slotOf(key, mask);
+        while (table[slot] != null)
+            slot = (slot + 1) & mask;
+        table[slot] = ret;
+        size++;
+        long ordinal = ordinalOf(key);
+        if (followsGeneratedKeys(ordinal, lastKeyOrdinal, size))
+            lastKeyOrdinal = ordinal;
+        return ret;
+    }
+
+    protected Node find(Object key) {
+        if ((table == null) || (key == null))
+            return null;
+        int mask = table.length - 1;
+        for (int slot = slotOf(key, mask); table[slot] != null; slot = (slot + 1) & mask) {
+            Node cur = table[slot];
+            // Keys are canonical, so they are most often the same instance
+            if ((cur.key == key) || (cur.key.equals(key)))
+                return cur;
+        }
+        return null;
+    }
+
+    /**
+     * Keys like "k1", "k2"... have close hash codes that would form long clusters with linear probing, so they are spread first
+     */
+    protected static int slotOf(Object key, int mask) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    protected static int capacityFor(int count) {
+        int ret = MIN_CAPACITY;
+        while (count >= ret * LOAD_FACTOR)
+            ret *= 2;
+        return ret;
+    }
+
+    protected void resize(int capacity) {
+        Node[] newTable = new Node[capacity];
+        int mask = capacity - 1;
+        for (Node cur = head; cur != null; cur = cur.after) {
+            int slot = slotOf(cur.key, mask);
+            while (newTable[slot] != null)
+                slot = (slot + 1) & mask;
+            newTable[slot] = cur;
+        }
+        table = newTable;
+    }
+
+    /**
+     * Empties the slot, and shifts back the following nodes that can't be found anymore because of the hole
+     */
+    protected void removeSlot(int slot) {
+        int mask = table.length - 1;
+        int hole = slot;
+        table[hole] = null;
+        for (int cur = (hole + 1) & mask; table[cur] != null; cur = (cur + 1) & mask) {
+            int wanted = slotOf(table[cur].key, mask);
+            // The node can fill the hole if the hole is between its wanted slot and its current one
+            if (((cur - wanted) & mask) >= ((cur - hole) & mask)) {
+                table[hole] = table[cur];
+                table[cur] = null;
+                hole = cur;
+            }
+        }
+    }
+
+    /**
+     * Links the node just before next, or at the end if next is null
+     */
+    protected void linkBefore(Node node, Node next) {
+        if (next == null) {
+            node.before = tail;
+            node.after = null;
+            if (tail == null) head = node;
+            else tail.after = node;
+            tail = node;
+        } else {
+            node.after = next;
+            node.before = next.before;
+            if (next.before == null) head = node;
+            else next.before.after = node;
+            next.before = node;
+        }
+        modCount++;
+    }
+
+    protected void unlink(Node node) {
+        if (node.before == null) head = node.after;
+        else node.before.after = node.after;
+        if (node.after == null) tail = node.before;
+        else node.after.before = node.before;
+        node.before = node.after = null;
+        modCount++;
+    }
+
+    protected static class Node implements Map.Entry<String, Object> {
+        final String key;
+        Object value;
+        Node before;
+        Node after;
+
+        Node(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Map.Entry<?, ?>)) return false;
+
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) o;
+            return key.equals(that.getKey()) && Objects.equals(value, that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    protected class NodeIterator implements Iterator<Entry<String, Object>> {
+        Node next = head;
+        Node lastReturned;
+        int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next == null)
+                throw new NoSuchElementException();
+            lastReturned = next;
+            next = next.after;
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            ModelMap.this.remove(lastReturned.key);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package net.dontcode.core;
+
+/**
+ * An immutable position in the model (like "creation/entities/a/name"), parsed once into its elements.
+ * As the same positions are used again and again by changes, instances are kept in a bounded cache: use ModelPath.of() to get one.
+ */
+public final class ModelPath {
+    /**
+     * Maximum number of paths kept in the cache. When reached, paths not used recently are evicted.
+     */
+    public static final int MAX_CACHED_PATHS = 4096;
+
+    public static final ModelPath ROOT = new ModelPath("", new String[0], "");
+
+    private static final BoundedCache<String, ModelPath> cache = new BoundedCache<>(MAX_CACHED_PATHS);
+
+    private final String position;
+    private final String[] elements;
+    private final String lastElement;
+    private ModelPath parent;   // Calculated when needed
+
+    private ModelPath(String position, String[] elements, String lastElement) {
+        this.position = position;
+        this.elements = elements;
+        this.lastElement = lastElement;
+    }
+
+    /**
+     * Returns the path of the position, from the cache if possible
+     * @param position
+     * @return null if position is null, ROOT for an empty position
+     */
+    public static ModelPath of (String position) {
+        if (position==null)
+            return null;
+        if (position.length()==0)
+            return ROOT;
+
+        return cache.computeIfAbsent(position, ModelPath::parse);
+    }
+
+    private static ModelPath parse (String position) {
+        int slashPos = position.lastIndexOf('/');
+        return new ModelPath(position, position.split("/"), (slashPos==-1)?position:position.substring(slashPos+1));
+    }
+
+    public String getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of elements in the path, 0 for the root
+     */
+    public int size () {
+        return elements.length;
+    }
+
+    public String element (int index) {
+        return elements[index];
+    }
+
+    public boolean isRoot () {
+        return position.length()==0;
+    }
+
+    /**
+     * Same as DontCodeModelPointer.lastElementOf()
+     * @return
+     */
+    public String getLastElement() {
+        return lastElement;
+    }
+
+    /**
+     * Same as DontCodeModelPointer.parentPositionOf()
+     * @return the path of the parent, ROOT for a single element path, or null for the root
+     */
+    public ModelPath getParent () {
+        if (parent==null) {
+            if (isRoot())
+                return null;
+            int slashPos = position.lastIndexOf('/');
+            parent = (slashPos==-1)?ROOT:ModelPath.of(position.substring(0, slashPos));
+        }
+        return parent;
+    }
+
+    /**
+     * @param element
+     * @return the path to the given subElement of this one
+     */
+    public ModelPath subPath (String element) {
+        if (isRoot())
+            return ModelPath.of(element);
+        else
+            return ModelPath.of(position+'/'+element);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ModelPath)) return false;
+
+        return position.equals(((ModelPath) o).position);
+    }
+
+    @Override
+    public int hashCode() {
+        return position.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return position;
+    }
+}
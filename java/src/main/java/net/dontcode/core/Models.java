@@ -1,12 +1,21 @@
 package net.dontcode.core;
 
+import net.dontcode.core.jfr.ApplyChangeEvent;
+import net.dontcode.core.jfr.FindAtPositionEvent;
+import net.dontcode.core.metrics.ModelMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Represents an application model.
@@ -15,34 +24,242 @@ import java.util.Set;
 public class Models {
 
     private static Logger log = LoggerFactory.getLogger(Models.class);
+
+    protected static volatile ModelMetrics metrics = ModelMetrics.NONE;
+
+    /**
+     * Installs the metrics receiving the measures of applyChange, findAtPosition and MapOrString.mapInsert
+     * @param newMetrics or null to stop measuring
+     */
+    public static void setMetrics (ModelMetrics newMetrics) {
+        metrics = (newMetrics==null)?ModelMetrics.NONE:newMetrics;
+    }
+
+    public static ModelMetrics getMetrics () {
+        return metrics;
+    }
+
     /**
      * Merge the change into the model and returns the updated model.
      * Does the same as the typescript function applyChange https://github.com/dont-code/core/blob/main/node/packages/core/src/lib/model/dont-code-model-manager.ts
+     * The maps of the value that are inserted in the model are kept if they are ModelMaps, like the ones read by ChangeStreamReader or BinaryCodec,
+     * and copied into ModelMaps otherwise, so that the model can reorder them in constant time.
      * @param orig
      * @param toApply
      * @return
      */
     public static MapOrString applyChange (MapOrString orig, Change toApply) {
-        String parentPosition = DontCodeModelPointer.parentPositionOf (toApply.position);
-        MapOrString curContent = Models.findAtPosition (orig, parentPosition, false);
+        return applyChange(orig, toApply, null);
+    }
+
+    /**
+     * Merge the change into the model, and sends to the collector each atomic change really done to the model, like the typescript applyChange does:
+     *  - ADD, UPDATE or DELETE for each element added, whose value changed, or removed,
+     *  - MOVE (with its oldPosition) for an element moved or reordered,
+     *  - A single ADD for the first missing parent if parents had to be created.
+     * Atomic changes have a pointer with their position, containerPosition and lastElement, and the beforeKey used to insert them.
+     * Their value is the element in the model, not a copy.
+     * @param orig
+     * @param toApply
+     * @param collector receives the atomic changes. If null, nothing is calculated.
+     * @return the updated model
+     */
+    public static MapOrString applyChange (MapOrString orig, Change toApply, Consumer<Change> collector) {
+        ChangeMeasure measure = ChangeMeasure.begin();
+        if (measure==null)
+            return applyChange(orig, toApply, collector, ModelMetrics.NONE);
+        try {
+            return applyChange(orig, toApply, collector, measure.measures);
+        } finally {
+            measure.end(toApply);
+        }
+    }
+
+    protected static MapOrString applyChange (MapOrString orig, Change toApply, Consumer<Change> collector, ModelMetrics measures) {
+        ModelPath path = ModelPath.of(toApply.position);
+        ModelPath createdParent = null;
+        if ((collector!=null) && (toApply.type!= Change.ChangeType.DELETE)) {
+            createdParent = firstMissing(orig, path.getParent());
+        }
+        // Only a DELETE doesn't create the parent if it's missing
+        MapOrString curContent = Models.findAtPosition (orig, path.getParent(), toApply.type!= Change.ChangeType.DELETE);
         if (curContent==null) {
-            if (toApply.type== Change.ChangeType.DELETE) {
-                return orig;
+            return orig;
+        }
+        if ((measures!=ModelMetrics.NONE) && (curContent.isMap()))
+            measures.recordContainerSize(ModelMetrics.Operation.APPLY_CHANGE, curContent.getMap().size());
+
+        if (createdParent!=null) {
+            // Everything below is new, so only the first new parent is sent, and the element it was moved from
+            boolean oldRemoved = (toApply.type== Change.ChangeType.MOVE) && (toApply.oldPosition!=null)
+                    && (Models.findAtPosition(orig, toApply.oldPosition, false)!=null);
+            applyChangeInParent(orig, toApply, path, curContent, null);
+            collector.accept(atomicChange(Change.ChangeType.ADD, createdParent.getPosition(), Models.findAtPosition(orig.getMap(), createdParent, false), null, null));
+            if (oldRemoved)
+                collector.accept(atomicChange(Change.ChangeType.DELETE, toApply.oldPosition, null, null, null));
+        } else {
+            applyChangeInParent(orig, toApply, path, curContent, collector);
+        }
+        return orig;
+    }
+
+    /**
+     * Merge the list of changes into the model, in order, and returns the updated model.
+     * The result is the same as calling applyChange for each change, but faster when changes to the same parent follow each other:
+     *  - Consecutive changes in the same parent resolve it only once: a change to another parent in between makes the next one resolve it again,
+     *  - Consecutive changes to the same position are coalesced when the last one fully replaces the others (a DELETE or a String value).
+     * @param orig
+     * @param changes
+     * @return
+     */
+    public static MapOrString applyChanges (MapOrString orig, List<Change> changes) {
+        return applyChanges(orig, changes.iterator());
+    }
+
+    /**
+     * Same as applyChanges(MapOrString, List), but each change is applied as soon as it is read from the stream.
+     * @param orig
+     * @param changes
+     * @return
+     */
+    public static MapOrString applyChanges (MapOrString orig, Stream<Change> changes) {
+        return applyChanges(orig, changes.iterator());
+    }
+
+    protected static MapOrString applyChanges (MapOrString orig, Iterator<Change> changes) {
+        ChangeBatch batch = new ChangeBatch(orig);
+        while (changes.hasNext()) {
+            batch.add(changes.next());
+        }
+        batch.flush();
+        return orig;
+    }
+
+    /**
+     * Calculates the changes that transform the model from into the model to, when applied in order with applyChange().
+     *  - Elements only in from are DELETEd, elements only in to are ADDed,
+     *  - Elements that are the same (or the same reference) are skipped, and other elements are compared recursively,
+     *  - Elements only in a different order are MOVEd before their next element: the fewest elements possible are moved.
+     * Values of the changes are copies of the elements of to, so that applying them doesn't share anything between the models.
+     * @param from
+     * @param to
+     * @return
+     */
+    public static List<Change> diff (MapOrString from, MapOrString to) {
+        if (((from!=null) && (from.isString())) || ((to!=null) && (to.isString())))
+            throw new RuntimeException("Can only calculate the difference between maps");
+        List<Change> ret = new ArrayList<>();
+        Map<String, Object> fromMap = (from==null)?null:from.getMap();
+        Map<String, Object> toMap = (to==null)?null:to.getMap();
+        diff("", (fromMap==null)?Map.of():fromMap, (toMap==null)?Map.of():toMap, ret);
+        return ret;
+    }
+
+    /**
+     * @param parentPosition position of from and to. Positions are only concatenated, as parsing and caching them would be wasted: each is used once.
+     */
+    protected static void diff (String parentPosition, Map<String, Object> from, Map<String, Object> to, List<Change> into) {
+        if (from==to)
+            return;
+        for (String key:from.keySet()) {
+            if (!to.containsKey(key))
+                into.add(new Change(Change.ChangeType.DELETE, subPosition(parentPosition, key), null));
+        }
+
+        // Going backward, each element that is added, replaced or moved is put just before its next one, already at its place
+        Set<String> keptInPlace = keysInSameOrder(from, to);
+        List<String> keys = new ArrayList<>(to.keySet());
+        String nextKey = null;
+        for (int i=keys.size()-1;i>=0;i--) {
+            String key = keys.get(i);
+            String position = subPosition(parentPosition, key);
+            Object toValue = to.get(key);
+            boolean placed = false;
+            if (!from.containsKey(key)) {
+                into.add(new Change(Change.ChangeType.ADD, position, copyOf(toValue), null, null, nextKey));
+                placed = true;
             } else {
-                curContent= Models.findAtPosition (orig, parentPosition, true);
+                Object fromValue = from.get(key);
+                if (fromValue!=toValue) {
+                    if ((fromValue instanceof Map<?,?>) && (toValue instanceof Map<?,?>)) {
+                        diff(position, asMap(fromValue), asMap(toValue), into);
+                    } else if (!Objects.equals(fromValue, toValue)) {
+                        // When replacing a String, or replacing by a String, the element is always put again before beforeKey, or at the end
+                        into.add(new Change(Change.ChangeType.UPDATE, position, copyOf(toValue), null, null, nextKey));
+                        placed = true;
+                    }
+                }
             }
+            if ((!placed) && (!keptInPlace.contains(key))) {
+                into.add(new Change(Change.ChangeType.MOVE, position, null, null, position, nextKey));
+            }
+            nextKey = key;
         }
+    }
 
-        if ((toApply.type== Change.ChangeType.MOVE) && (toApply.oldPosition==null) && (toApply.value==null)) {
-            log.warn("Cannot apply MOVE Change without value or oldPosition for {}", toApply.position);
-            return orig;
+    /**
+     * @return the biggest set of keys present in both maps and in the same order (the longest increasing subsequence of their indexes in from)
+     */
+    protected static Set<String> keysInSameOrder (Map<String, Object> from, Map<String, Object> to) {
+        Map<String, Integer> fromIndexes = new HashMap<>();
+        for (String key:from.keySet()) {
+            fromIndexes.put(key, fromIndexes.size());
         }
-        if ((toApply.value!=null) || (toApply.type== Change.ChangeType.MOVE)||(toApply.type== Change.ChangeType.DELETE))
-            recursiveApplyChange (orig, toApply, curContent, MapOrString.fromObject(toApply.value), DontCodeModelPointer.lastElementOf(toApply.position), true);
-        else {
-            log.warn("Missing a value to non MOVE or DELETE change for {}", toApply.position);
+        List<String> common = new ArrayList<>();
+        int[] indexes = new int[Math.min(from.size(), to.size())];
+        for (String key:to.keySet()) {
+            Integer index = fromIndexes.get(key);
+            if (index!=null) {
+                indexes[common.size()] = index;
+                common.add(key);
+            }
         }
-        return orig;
+
+        // tails[l] is the position in common of the smallest end of increasing subsequences of length l+1
+        int[] tails = new int[common.size()];
+        int[] previous = new int[common.size()];
+        int length = 0;
+        for (int i=0;i<common.size();i++) {
+            int low = 0, high = length;
+            while (low<high) {
+                int middle = (low+high) >>> 1;
+                if (indexes[tails[middle]]<indexes[i]) low = middle+1;
+                else high = middle;
+            }
+            previous[i] = (low>0)?tails[low-1]:-1;
+            tails[low] = i;
+            if (low==length) length++;
+        }
+
+        Set<String> ret = new HashSet<>();
+        for (int i=(length>0)?tails[length-1]:-1; i>=0; i=previous[i]) {
+            ret.add(common.get(i));
+        }
+        return ret;
+    }
+
+    /**
+     * Elements of a model that are Maps always have String keys
+     * @param element a Map of the model
+     * @return the element as a Map
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> asMap (Object element) {
+        return (Map<String, Object>) element;
+    }
+
+    /**
+     * @return a deep copy of the value, with ModelMaps for maps
+     */
+    protected static Object copyOf (Object value) {
+        if (value instanceof Map<?,?>) {
+            ModelMap ret = new ModelMap();
+            asMap(value).forEach((key, subValue) -> ret.put(key, copyOf(subValue)));
+            if (value instanceof ModelMap)
+                ret.lastKeyOrdinal = Math.max(ret.lastKeyOrdinal, ((ModelMap) value).lastKeyOrdinal);
+            return ret;
+        }
+        return value;
     }
 
     public static Map<String, Object> applyChange (Map<String, Object> orig, Change toApply) {
@@ -52,80 +269,226 @@ public class Models {
         return applyChange(new MapOrString(orig), toApply).getMap();
     }
 
+    /**
+     * Calculates a key that can be added to the element at the given position, like the TypeScript DontCodeModelManager.generateNextKeyForPosition
+     * @param src
+     * @param position of an array like "creation/entities"
+     * @param create if true, creates the missing elements along the path
+     * @return the key, generated in constant time if the element is a ModelMap
+     */
+    public static String generateNextKeyForPosition (MapOrString src, String position, boolean create) {
+        Object array = findAtPosition(src.getMap(), position, create);
+        if (!(array instanceof Map<?,?>))
+            throw new RuntimeException("No element at position "+position);
+        return generateNextKey(asMap(array));
+    }
+
+    /**
+     * @param array
+     * @return a key not present in array, following its generated keys like ModelMap.generateNextKey() does
+     */
+    public static String generateNextKey (Map<String, Object> array) {
+        if (array instanceof ModelMap)
+            return ((ModelMap) array).generateNextKey();
+        // The order of a plain map is not the order of creation, so the generated keys are followed in ascending order
+        long[] ordinals = array.keySet().stream().mapToLong(ModelMap::ordinalOf).filter(ordinal -> ordinal >= 0).sorted().toArray();
+        long last = -1;
+        for (long ordinal: ordinals) {
+            if (ModelMap.followsGeneratedKeys(ordinal, last, array.size()))
+                last = ordinal;
+        }
+        String ret = ModelMap.keyOf(last+1);
+        while (array.containsKey(ret)) {
+            last++;
+            ret = ModelMap.keyOf(last+1);
+        }
+        return ret;
+    }
+
     public static MapOrString findAtPosition (MapOrString src, String position, boolean create) {
+        return findAtPosition(src, ModelPath.of(position), create);
+    }
+
+    public static MapOrString findAtPosition (MapOrString src, ModelPath position, boolean create) {
         var result= findAtPosition(src.getMap(), position, create);
         return MapOrString.fromObject(result);
     }
 
     public static Object findAtPosition (Map<String, Object> src, String position, boolean create) {
-        if ((position==null)||(position.length()==0)||(src==null))
+        return findAtPosition(src, ModelPath.of(position), create);
+    }
+
+    /**
+     * Returns the element at the given position in the model, or null if not found.
+     * @param src
+     * @param position
+     * @param create if true, creates the missing elements along the path
+     * @return a Map, a String, or null
+     */
+    public static Object findAtPosition (Map<String, Object> src, ModelPath position, boolean create) {
+        ModelMetrics measures = metrics;
+        // Only committed if the position is missing
+        FindAtPositionEvent event = new FindAtPositionEvent();
+        event.begin();
+        if (measures==ModelMetrics.NONE)
+            return findAtPosition(src, position, create, measures, event);
+        long start = System.nanoTime();
+        Object ret = findAtPosition(src, position, create, measures, event);
+        measures.recordLatency(ModelMetrics.Operation.FIND_AT_POSITION, null, System.nanoTime()-start);
+        if (ret instanceof Map<?,?>)
+            measures.recordContainerSize(ModelMetrics.Operation.FIND_AT_POSITION, ((Map<?, ?>) ret).size());
+        return ret;
+    }
+
+    protected static Object findAtPosition (Map<String, Object> src, ModelPath position, boolean create, ModelMetrics measures, FindAtPositionEvent event) {
+        if ((position==null)||(position.isRoot())||(src==null))
             return src;
 
-        String[]path = position.split("/");
         Map<String, Object> cur = src;
-        for (int i=0;i<path.length;i++) {
-            var elt=path[i];
-            if ( cur.get(elt) instanceof Map<?,?>) {
-                cur = (Map<String, Object>) cur.get(elt);
-            } else if ((cur.get(elt) instanceof String)&&(i == path.length-1)) {
-                return cur.get(elt);
+        int created = 0;
+        int firstCreated = -1;
+        for (int i=0;i<position.size();i++) {
+            var elt=position.element(i);
+            var child=cur.get(elt);
+            if ( child instanceof Map<?,?>) {
+                cur = (Map<String, Object>) child;
+            } else if ((child instanceof String)&&(i == position.size()-1)) {
+                return child;
             } else if (create==false) {
+                event.commitFor(position, i, 0);
                 return null;
             } else {
-                var newOne=new LinkedHashMap<String, Object>();
-                cur.put(elt, newOne);
-                cur = newOne;
+                if (created++==0)
+                    firstCreated = i;
+                var newOne=new ModelMap();
+                cur.put((cur instanceof OrderedModelMap)?elt:ModelKeys.canonical(elt), newOne);
+                // Some maps, like the ones of a CompactModel, store a copy of the value
+                cur = (cur instanceof ModelMap)?newOne:asMap(cur.get(elt));
             }
         }
+        if (created>0) {
+            measures.recordCreatedOnFind(created);
+            event.commitFor(position, firstCreated, created);
+        }
         return cur;
     }
 
+    /**
+     * Applies the change once the parent element has been found
+     * @param orig
+     * @param toApply
+     * @param path
+     * @param curContent the parent element of the change
+     */
+    protected static void applyChangeInParent (MapOrString orig, Change toApply, ModelPath path, MapOrString curContent) {
+        applyChangeInParent(orig, toApply, path, curContent, null);
+    }
+
+    protected static void applyChangeInParent (MapOrString orig, Change toApply, ModelPath path, MapOrString curContent, Consumer<Change> collector) {
+        if ((toApply.type== Change.ChangeType.MOVE) && (toApply.oldPosition==null) && (toApply.value==null)) {
+            log.warn("Cannot apply MOVE Change without value or oldPosition for {}", toApply.position);
+            metrics.recordWarning(ModelMetrics.Warning.MOVE_WITHOUT_VALUE);
+            return;
+        }
+        if ((toApply.value!=null) || (toApply.type== Change.ChangeType.MOVE)||(toApply.type== Change.ChangeType.DELETE))
+            recursiveApplyChange (orig, toApply, curContent, MapOrString.fromObject(toApply.value), path.getLastElement(), true,
+                    (collector==null)?null:path.getParent().getPosition(), collector);
+        else {
+            log.warn("Missing a value to non MOVE or DELETE change for {}", toApply.position);
+            metrics.recordWarning(ModelMetrics.Warning.MISSING_VALUE);
+        }
+    }
+
     protected static void recursiveApplyChange (MapOrString orig, Change toApply, MapOrString oldContent, MapOrString newContent, String position, boolean isRoot ) {
+        recursiveApplyChange(orig, toApply, oldContent, newContent, position, isRoot, null, null);
+    }
+
+    /**
+     * @param parentPosition position of oldContent, only calculated when there is a collector
+     * @param collector receives the atomic changes, can be null
+     */
+    protected static void recursiveApplyChange (MapOrString orig, Change toApply, MapOrString oldContent, MapOrString newContent, String position, boolean isRoot,
+                                                String parentPosition, Consumer<Change> collector) {
         if (position.indexOf('/')!=-1)
             throw new RuntimeException("Position must be single element");
         MapOrString curContent = ( position.length()==0)?oldContent:MapOrString.fromObject(oldContent.mapGet(position));
+        String curPosition = (collector==null)?null:subPosition(parentPosition, position);
 
         switch (toApply.type) {
             case ADD:
             case UPDATE:
             case MOVE:
             case RESET:{
+                // An element moved from the model is already stored as the model wants
+                boolean inModel = false;
                 if (toApply.type== Change.ChangeType.MOVE) {
                     if ((newContent == null) || (newContent.isNull())) {
                         newContent = Models.findAtPosition(orig, toApply.getOldPosition(), false);
+                        if (newContent == null)
+                            throw new RuntimeException("Nothing to move at "+toApply.getOldPosition());
+                        inModel = true;
                     }
                 }
                 if (curContent != null) {
                     if (curContent.isString()||(newContent==null)||newContent.isString()) {
+                        Object inserted = toInsert(newContent, inModel);
                         if (isRoot)
-                            oldContent.mapInsert(position, newContent.getMapOrStringValue(), toApply.beforeKey);
+                            oldContent.mapInsert(position, inserted, toApply.beforeKey);
                         else
-                            oldContent.mapInsert(position, newContent.getMapOrStringValue(), null);
+                            oldContent.mapInsert(position, inserted, null);
 
+                        if (collector!=null) {
+                            // The element is replaced: its old position is kept, so it's just reordered
+                            if ((isRoot) && (toApply.type== Change.ChangeType.MOVE))
+                                collector.accept(atomicChange(Change.ChangeType.MOVE, curPosition, inserted, curPosition, toApply.beforeKey));
+                            else if (!Objects.equals(curContent.getMapOrStringValue(), inserted))
+                                collector.accept(atomicChange(Change.ChangeType.UPDATE, curPosition, inserted, null, isRoot?toApply.beforeKey:null));
+                        }
                     } else {
                         Set<String> toRemove = new HashSet<>(curContent.getMap().keySet()); // Keep track of elements that will need to be deleted in case of reset or update
                         newContent.getMap().entrySet().forEach(newItem -> {
                             toRemove.remove(newItem.getKey());
                             if ((newItem.getValue()!=curContent.mapGet(newItem.getKey())))  // Don't bother adding the same element
-                                recursiveApplyChange (orig, toApply, curContent, MapOrString.fromObject(newItem.getValue()), newItem.getKey(), false);
+                                recursiveApplyChange (orig, toApply, curContent, MapOrString.fromObject(newItem.getValue()), newItem.getKey(), false, curPosition, collector);
                         });
                         if ((toApply.type.equals(Change.ChangeType.RESET)) || (
                                 toApply.type.equals(Change.ChangeType.UPDATE)
                                 )) {
                             toRemove.forEach(s -> {
                                 curContent.getMap().remove(s);
+                                if (collector!=null)
+                                    collector.accept(atomicChange(Change.ChangeType.DELETE, subPosition(curPosition, s), null, null, null));
                             });
                         }
 
                         if ((isRoot) && (toApply.type.equals(Change.ChangeType.MOVE) || (toApply.beforeKey!=null))) {
-                            oldContent.mapInsert(position, newContent.getMapOrStringValue(), toApply.beforeKey);
+                            boolean inPlace = (collector!=null) && (toApply.type!= Change.ChangeType.MOVE) && (oldContent.getMap() instanceof OrderedModelMap)
+                                    && (toApply.beforeKey.equals(((OrderedModelMap) oldContent.getMap()).nextKey(position)));
+                            Object inserted = toInsert(newContent, inModel);
+                            oldContent.mapInsert(position, inserted, toApply.beforeKey);
+                            if ((collector!=null) && (!inPlace))
+                                collector.accept(atomicChange(Change.ChangeType.MOVE, curPosition, inserted, curPosition, toApply.beforeKey));
                         }
                     }
                 }else {
-                    oldContent.mapInsert(position, newContent.getMapOrStringValue(), toApply.beforeKey);
+                    Object inserted = toInsert(newContent, inModel);
+                    oldContent.mapInsert(position, inserted, toApply.beforeKey);
+                    boolean oldRemoved = false;
                     if (toApply.type== Change.ChangeType.MOVE) {
-                        MapOrString parent = Models.findAtPosition(orig, DontCodeModelPointer.parentPositionOf(toApply.getOldPosition()), false);
-                        parent.mapRemove(DontCodeModelPointer.lastElementOf(toApply.getOldPosition()));
+                        ModelPath oldPath = ModelPath.of(toApply.getOldPosition());
+                        MapOrString parent = Models.findAtPosition(orig, oldPath.getParent(), false);
+                        oldRemoved = (collector!=null) && (parent.mapContainsKey(oldPath.getLastElement()));
+                        parent.mapRemove(oldPath.getLastElement());
+                    }
+                    if (collector!=null) {
+                        if ((toApply.type== Change.ChangeType.MOVE) && (isRoot)) {
+                            if (!curPosition.equals(toApply.oldPosition))
+                                collector.accept(atomicChange(Change.ChangeType.MOVE, curPosition, inserted, toApply.oldPosition, toApply.beforeKey));
+                        } else {
+                            collector.accept(atomicChange(Change.ChangeType.ADD, curPosition, inserted, null, toApply.beforeKey));
+                            if (oldRemoved)
+                                collector.accept(atomicChange(Change.ChangeType.DELETE, toApply.oldPosition, null, null, null));
+                        }
                     }
                 }
             }
@@ -133,9 +496,180 @@ public class Models {
             case DELETE: {
                 if (curContent!=null) {
                     oldContent.mapRemove(position);
+                    if (collector!=null)
+                        collector.accept(atomicChange(Change.ChangeType.DELETE, curPosition, null, null, null));
                 }
             }
             break;
         }
     }
+
+    /**
+     * @param inModel true if the value is already an element of the model
+     * @return the value to insert in the model: maps are converted into ModelMaps when they are first inserted
+     */
+    protected static Object toInsert (MapOrString value, boolean inModel) {
+        return inModel?value.getMapOrStringValue():ModelMap.toModelValue(value.getMapOrStringValue());
+    }
+
+    /**
+     * @return the first element of the path that doesn't exist in the model, or null if the path exists
+     */
+    protected static ModelPath firstMissing (MapOrString model, ModelPath path) {
+        if ((path==null) || (path.isRoot()) || (!model.isMap()))
+            return null;
+        Map<String, Object> cur = model.getMap();
+        for (int i=0;i<path.size();i++) {
+            Object child = cur.get(path.element(i));
+            if (child instanceof Map<?,?>) {
+                cur = asMap(child);
+            } else {
+                // Like findAtPosition, a String at the end of the path is kept
+                if ((child instanceof String) && (i==path.size()-1))
+                    return null;
+                ModelPath ret = path;
+                while (ret.size()>i+1)
+                    ret = ret.getParent();
+                return ret;
+            }
+        }
+        return null;
+    }
+
+    protected static String subPosition (String parentPosition, String element) {
+        if (element.length()==0)
+            return parentPosition;
+        else if (parentPosition.length()==0)
+            return element;
+        else
+            return parentPosition+'/'+element;
+    }
+
+    protected static Change atomicChange (Change.ChangeType type, String position, Object value, String oldPosition, String beforeKey) {
+        int slashPos = position.lastIndexOf('/');
+        DontCodeModelPointer pointer = new DontCodeModelPointer(position, null, (slashPos==-1)?"":position.substring(0, slashPos), null,
+                position.substring(slashPos+1), null);
+        return new Change(type, position, value, pointer, oldPosition, beforeKey);
+    }
+
+    /**
+     * Measures the application of a change for the metrics and the ApplyChange event, by applyChange and applyChanges
+     */
+    protected static final class ChangeMeasure {
+        protected final ModelMetrics measures;
+        protected final ApplyChangeEvent event;
+        protected final long start;
+
+        protected ChangeMeasure(ModelMetrics measures, ApplyChangeEvent event) {
+            this.measures = measures;
+            this.event = event;
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * @return the measure started, or null if there are no metrics and the event is disabled
+         */
+        protected static ChangeMeasure begin () {
+            ModelMetrics measures = metrics;
+            ApplyChangeEvent event = new ApplyChangeEvent();
+            if ((measures==ModelMetrics.NONE) && (!event.isEnabled()))
+                return null;
+            return new ChangeMeasure(measures, event);
+        }
+
+        protected void end (Change applied) {
+            measures.recordLatency(ModelMetrics.Operation.APPLY_CHANGE, applied.type, System.nanoTime()-start);
+            event.commitFor(applied);
+        }
+    }
+
+    /**
+     * Applies changes one after the other, keeping the last parent found and the last change in memory
+     * so that they can be reused or coalesced with the next change only.
+     */
+    protected static class ChangeBatch {
+        protected final MapOrString orig;
+        protected Change pending;
+        protected ModelPath pendingPath;
+        protected boolean pendingCreatesParent;
+
+        protected ModelPath lastParentPath;
+        protected MapOrString lastParent;
+
+        protected ChangeBatch(MapOrString orig) {
+            this.orig = orig;
+        }
+
+        protected void add (Change next) {
+            ModelPath nextPath = ModelPath.of(next.position);
+            if ((pending!=null) && (nextPath.equals(pendingPath)) && (replaces(next, pending))) {
+                // The pending change has no effect except creating the parent element
+                pendingCreatesParent = pendingCreatesParent || (pending.type!= Change.ChangeType.DELETE);
+                pending = next;
+                return;
+            }
+            flush();
+            pending = next;
+            pendingPath = nextPath;
+            pendingCreatesParent = false;
+        }
+
+        /**
+         * Can the next change, at the same position, be applied instead of the previous one ?
+         * Yes if it replaces completely the element: a DELETE or a string value inserted at the end.
+         * MOVEs are never coalesced as they modify another position, neither are changes to the root.
+         */
+        protected static boolean replaces (Change next, Change previous) {
+            if ((previous.type== Change.ChangeType.MOVE) || (next.type== Change.ChangeType.MOVE) || (next.position.length()==0))
+                return false;
+            if (next.type== Change.ChangeType.DELETE)
+                return true;
+            return (next.value instanceof String) && (next.beforeKey==null);
+        }
+
+        protected void flush () {
+            if (pending==null)
+                return;
+            Change toApply = pending;
+            pending = null;
+
+            ChangeMeasure measure = ChangeMeasure.begin();
+            if (measure==null) {
+                apply(toApply);
+                return;
+            }
+            try {
+                apply(toApply);
+            } finally {
+                measure.end(toApply);
+            }
+        }
+
+        protected void apply (Change toApply) {
+            ModelPath parentPath = pendingPath.getParent();
+            MapOrString parent;
+            if ((lastParent!=null) && (Objects.equals(parentPath, lastParentPath))) {
+                parent = lastParent;
+            } else {
+                parent = Models.findAtPosition(orig, parentPath, (toApply.type!= Change.ChangeType.DELETE) || pendingCreatesParent);
+            }
+            if (parent==null) {
+                return;
+            }
+            ModelMetrics measures = metrics;
+            if ((measures!=ModelMetrics.NONE) && (parent.isMap()))
+                measures.recordContainerSize(ModelMetrics.Operation.APPLY_CHANGE, parent.getMap().size());
+            applyChangeInParent(orig, toApply, pendingPath, parent);
+
+            if (toApply.type== Change.ChangeType.MOVE) {
+                // The old position may have been anywhere in the model, so nothing found before can be trusted
+                lastParent = null;
+                lastParentPath = null;
+            } else {
+                lastParent = parent;
+                lastParentPath = parentPath;
+            }
+        }
+    }
 }
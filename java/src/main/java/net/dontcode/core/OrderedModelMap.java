@@ -0,0 +1,21 @@
+package net.dontcode.core;
+
+import java.util.Map;
+
+/**
+ * A map of a model that can insert an element before any other one, like ModelMap or the elements of a CompactModel.
+ * Models and MapOrString use it to reorder elements without rebuilding the map.
+ */
+public interface OrderedModelMap extends Map<String, Object> {
+
+    /**
+     * Inserts (or moves) the key with its value just before beforeKey.
+     * If beforeKey is null or not present, the key is put at the end.
+     */
+    void putBefore(String key, Object value, String beforeKey);
+
+    /**
+     * @return the key following the given one, or null if it's the last one or is not present
+     */
+    String nextKey(String key);
+}
@@ -0,0 +1,133 @@
+package net.dontcode.core.binary;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact binary format for Messages, Changes and model values, an alternative to Json between services.
+ *
+ * Each content starts with a header: the MAGIC bytes, the VERSION and the kind of content (MESSAGE, CHANGE or MODEL),
+ * so that it can be told apart from Json (that never starts with MAGIC) and negotiated with the CONTENT_TYPE.
+ * Then:
+ *  - Message and Change types are single bytes (0 for null, else ordinal+1)
+ *  - Strings (positions, keys, values...) are written once as varint length + UTF-8 bytes, and then as a varint index in a dictionary local to the content
+ *  - Values start with a single byte type (NULL, STRING, MAP...), maps are their count followed by their keys and values
+ */
+public class BinaryCodec {
+    public static final byte[] MAGIC = {(byte) 0xDC, (byte) 0xB1};
+    public static final byte VERSION = 1;
+    public static final String CONTENT_TYPE = "application/vnd.dont-code.binary;version=1";
+
+    public static final byte MESSAGE = 1;
+    public static final byte CHANGE = 2;
+    public static final byte MODEL = 3;
+
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte MAP = 2;
+    static final byte LIST = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte TRUE = 6;
+    static final byte FALSE = 7;
+    static final byte NUMBER_TEXT = 8;
+
+    /**
+     * Writers are shared by all threads (including virtual ones) through a small pool, unless their buffer grew bigger than MAX_REUSED_BUFFER.
+     * When the pool is empty, a new writer is created.
+     */
+    protected static final int MAX_REUSED_BUFFER = 64*1024;
+    protected static final int POOL_SIZE = 16;
+    private static final AtomicReferenceArray<BinaryWriter> writers = new AtomicReferenceArray<>(POOL_SIZE);
+
+    public static byte[] encode (Message message) {
+        BinaryWriter writer = writer();
+        try {
+            writer.writeHeader(MESSAGE).writeMessage(message);
+            return writer.toByteArray();
+        } finally {
+            release(writer);
+        }
+    }
+
+    public static byte[] encode (Change change) {
+        BinaryWriter writer = writer();
+        try {
+            writer.writeHeader(CHANGE).writeChange(change);
+            return writer.toByteArray();
+        } finally {
+            release(writer);
+        }
+    }
+
+    public static byte[] encodeModel (MapOrString model) {
+        BinaryWriter writer = writer();
+        try {
+            writer.writeHeader(MODEL).writeValue(model.getMapOrStringValue());
+            return writer.toByteArray();
+        } finally {
+            release(writer);
+        }
+    }
+
+    public static Message decodeMessage (byte[] content) throws IOException {
+        return reader(content, MESSAGE).readMessage();
+    }
+
+    public static Change decodeChange (byte[] content) throws IOException {
+        return reader(content, CHANGE).readChange();
+    }
+
+    public static MapOrString decodeModel (byte[] content) throws IOException {
+        return MapOrString.fromObject(reader(content, MODEL).readValue());
+    }
+
+    /**
+     * @return true if the content starts with the binary header, false for Json or any other content
+     */
+    public static boolean isBinary (byte[] content) {
+        return isBinary(content, 0, content.length);
+    }
+
+    public static boolean isBinary (byte[] content, int offset, int length) {
+        return (length>MAGIC.length) && (content[offset]==MAGIC[0]) && (content[offset+1]==MAGIC[1]);
+    }
+
+    /**
+     * @return a writer taken from the pool, or a new one
+     */
+    protected static BinaryWriter writer () {
+        for (int i=0;i<POOL_SIZE;i++) {
+            if (writers.get(i)!=null) {
+                BinaryWriter ret = writers.getAndSet(i, null);
+                if (ret!=null)
+                    return ret.reset();
+            }
+        }
+        return new BinaryWriter();
+    }
+
+    /**
+     * Gives the writer back to the pool, unless its buffer is too big to be kept or the pool is full
+     */
+    protected static void release (BinaryWriter writer) {
+        if (writer.buffer.length>MAX_REUSED_BUFFER)
+            return;
+        for (int i=0;i<POOL_SIZE;i++) {
+            if ((writers.get(i)==null) && (writers.compareAndSet(i, null, writer)))
+                return;
+        }
+    }
+
+    protected static BinaryReader reader (byte[] content, byte kind) throws IOException {
+        BinaryReader ret = new BinaryReader(content);
+        byte found = ret.readHeader();
+        if (found!=kind)
+            throw new IOException("Expecting binary content of kind "+kind+" but got "+found);
+        return ret;
+    }
+}
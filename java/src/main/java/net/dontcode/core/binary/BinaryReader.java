@@ -0,0 +1,223 @@
+package net.dontcode.core.binary;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.Message;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.jfr.MessageDecodeEvent;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads messages, changes and model values written by a BinaryWriter. Maps are read as ModelMaps.
+ * Content that is corrupted, truncated or not written by a BinaryWriter throws an IOException giving the offset of the problem.
+ */
+public class BinaryReader {
+    /**
+     * Maps and lists nested deeper than that are rejected instead of overflowing the stack, like Jackson does
+     */
+    public static final int MAX_DEPTH = 1000;
+
+    protected final byte[] buffer;
+    protected int position;
+    protected final int end;
+    protected final List<String> dictionary = new ArrayList<>();
+    protected int depth;
+
+    public BinaryReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public BinaryReader(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.end = offset+length;
+    }
+
+    /**
+     * Checks the header and returns the kind of content
+     */
+    public byte readHeader () throws IOException {
+        if (!BinaryCodec.isBinary(buffer, position, end-position))
+            throw new IOException("Not a binary dont-code content at offset "+position);
+        position += BinaryCodec.MAGIC.length;
+        byte version = buffer[position++];
+        if (version!=BinaryCodec.VERSION)
+            throw new IOException("Unsupported binary version "+version+" at offset "+(position-1));
+        return readByte();
+    }
+
+    public Message readMessage () throws IOException {
+        MessageDecodeEvent event = new MessageDecodeEvent();
+        event.begin();
+        Message ret = new Message();
+        int type = readByte();
+        ret.setType(readEnum(Message.MessageType.values(), type));
+        ret.setSessionId(readString());
+        if (readByte()!=0)
+            ret.setChange(readChange());
+        event.commitFor("binary", ret);
+        return ret;
+    }
+
+    public Change readChange () throws IOException {
+        Change ret = new Change();
+        int type = readByte();
+        ret.setType(readEnum(Change.ChangeType.values(), type));
+        ret.setPosition(readString());
+        ret.setValue(readValue());
+        ret.setPointer(readPointer());
+        ret.setOldPosition(readString());
+        ret.setBeforeKey(readString());
+        return ret;
+    }
+
+    public DontCodeModelPointer readPointer () throws IOException {
+        int flag = readByte();
+        if (flag==0)
+            return null;
+        DontCodeModelPointer ret = new DontCodeModelPointer();
+        ret.setIsProperty((flag==1)?null:(flag==3));
+        ret.setPosition(readString());
+        ret.setPositionInSchema(readString());
+        ret.setContainerPosition(readString());
+        ret.setContainerPositionInSchema(readString());
+        ret.setLastElement(readString());
+        return ret;
+    }
+
+    public Object readValue () throws IOException {
+        byte tag = readByte();
+        switch (tag) {
+            case BinaryCodec.NULL:
+                return null;
+            case BinaryCodec.STRING:
+                return readString();
+            case BinaryCodec.MAP: {
+                enter();
+                int count = readCount();
+                ModelMap ret = new ModelMap();
+                for (int i=0;i<count;i++) {
+                    String key = readString();
+                    ret.put(key, readValue());
+                }
+                depth--;
+                return ret;
+            }
+            case BinaryCodec.LIST: {
+                enter();
+                int count = readCount();
+                List<Object> ret = new ArrayList<>(count);
+                for (int i=0;i<count;i++) {
+                    ret.add(readValue());
+                }
+                depth--;
+                return ret;
+            }
+            case BinaryCodec.LONG: {
+                long zigzag = readVarlong();
+                long number = (zigzag >>> 1) ^ -(zigzag & 1);
+                if ((number>=Integer.MIN_VALUE) && (number<=Integer.MAX_VALUE))
+                    return (int) number;    // Like Jackson does
+                return number;
+            }
+            case BinaryCodec.DOUBLE: {
+                checkAvailable(8);
+                long bits = 0;
+                for (int i=0;i<8;i++)
+                    bits = (bits << 8) | (buffer[position++] & 0xFF);
+                return Double.longBitsToDouble(bits);
+            }
+            case BinaryCodec.TRUE:
+                return Boolean.TRUE;
+            case BinaryCodec.FALSE:
+                return Boolean.FALSE;
+            case BinaryCodec.NUMBER_TEXT:
+                return new BigDecimal(readString());
+            default:
+                throw new IOException("Unknown value type "+tag+" at offset "+(position-1));
+        }
+    }
+
+    public String readString () throws IOException {
+        int ref = readVarint();
+        if (ref==0)
+            return null;
+        if (ref>1) {
+            if (ref-2>=dictionary.size())
+                throw new IOException("Unknown string reference "+ref+" at offset "+position);
+            return dictionary.get(ref-2);
+        }
+        int length = readVarint();
+        checkAvailable(length);
+        String ret = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        dictionary.add(ret);
+        return ret;
+    }
+
+    public byte readByte () throws IOException {
+        checkAvailable(1);
+        return buffer[position++];
+    }
+
+    public int readVarint () throws IOException {
+        int start = position;
+        long ret = readVarlong();
+        if ((ret<0) || (ret>Integer.MAX_VALUE))
+            throw new IOException("Invalid number "+ret+" at offset "+start);
+        return (int) ret;
+    }
+
+    public long readVarlong () throws IOException {
+        long ret = 0;
+        for (int shift=0; shift<64; shift+=7) {
+            byte b = readByte();
+            ret |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80)==0)
+                return ret;
+        }
+        throw new IOException("Malformed varint at offset "+position);
+    }
+
+    public boolean hasRemaining () {
+        return position<end;
+    }
+
+    protected void checkAvailable (int length) throws IOException {
+        if ((length<0) || (length>end-position))
+            throw new IOException("Unexpected end of binary content at offset "+position);
+    }
+
+    /**
+     * Reads the number of elements of a map or a list. Each element takes at least a byte, so a bigger count can only come from corrupted content,
+     * and would allocate too much memory.
+     */
+    protected void enter () throws IOException {
+        if (++depth>MAX_DEPTH)
+            throw new IOException("Values nested deeper than "+MAX_DEPTH+" at offset "+(position-1));
+    }
+
+    protected int readCount () throws IOException {
+        int start = position;
+        int ret = readVarint();
+        if (ret>end-position)
+            throw new IOException("Invalid count of "+ret+" elements at offset "+start+", only "+(end-position)+" bytes remaining");
+        return ret;
+    }
+
+    /**
+     * @param ordinal the ordinal of the value plus one, 0 for null
+     */
+    protected <T extends Enum<T>> T readEnum (T[] values, int ordinal) throws IOException {
+        if (ordinal==0)
+            return null;
+        if ((ordinal<0) || (ordinal>values.length))
+            throw new IOException("Invalid "+values.getClass().getComponentType().getSimpleName()+" "+ordinal+" at offset "+(position-1));
+        return values[ordinal-1];
+    }
+}
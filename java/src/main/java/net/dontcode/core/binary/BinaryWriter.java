@@ -0,0 +1,186 @@
+package net.dontcode.core.binary;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes messages, changes and model values in the binary format described in BinaryCodec.
+ * Each string is written only once: the next times, only its index in the dictionary is written.
+ * Not thread-safe, but can be reused after a reset().
+ */
+public class BinaryWriter {
+    protected byte[] buffer;
+    protected int size;
+    protected final HashMap<String, Integer> dictionary = new HashMap<>();
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Empties the writer and its dictionary so that another content can be written
+     */
+    public BinaryWriter reset () {
+        size = 0;
+        dictionary.clear();
+        return this;
+    }
+
+    public byte[] toByteArray () {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public BinaryWriter writeHeader (byte kind) {
+        ensureCapacity(BinaryCodec.MAGIC.length+2);
+        for (byte b: BinaryCodec.MAGIC)
+            buffer[size++] = b;
+        buffer[size++] = BinaryCodec.VERSION;
+        buffer[size++] = kind;
+        return this;
+    }
+
+    public void writeMessage (Message message) {
+        writeByte((message.getType()==null)?0:message.getType().ordinal()+1);
+        writeString(message.getSessionId());
+        if (message.getChange()==null)
+            writeByte(0);
+        else {
+            writeByte(1);
+            writeChange(message.getChange());
+        }
+    }
+
+    public void writeChange (Change change) {
+        writeByte((change.getType()==null)?0:change.getType().ordinal()+1);
+        writeString(change.getPosition());
+        writeValue(change.getValue());
+        writePointer(change.getPointer());
+        writeString(change.getOldPosition());
+        writeString(change.getBeforeKey());
+    }
+
+    public void writePointer (DontCodeModelPointer pointer) {
+        if (pointer==null) {
+            writeByte(0);
+            return;
+        }
+        // Flag telling if it's a property: 1 for null, 2 for false, 3 for true
+        writeByte((pointer.getIsProperty()==null)?1:(pointer.getIsProperty()?3:2));
+        writeString(pointer.getPosition());
+        writeString(pointer.getPositionInSchema());
+        writeString(pointer.getContainerPosition());
+        writeString(pointer.getContainerPositionInSchema());
+        writeString(pointer.getLastElement());
+    }
+
+    /**
+     * Writes a value of the model: a Map, a String, or any simple Json value (Number, Boolean, Collection)
+     * @param value
+     */
+    public void writeValue (Object value) {
+        if (value==null) {
+            writeByte(BinaryCodec.NULL);
+        } else if (value instanceof String) {
+            writeByte(BinaryCodec.STRING);
+            writeString((String) value);
+        } else if (value instanceof Map<?,?>) {
+            Map<?,?> map = (Map<?,?>) value;
+            writeByte(BinaryCodec.MAP);
+            writeVarint(map.size());
+            for (Map.Entry<?,?> entry: map.entrySet()) {
+                writeString(entry.getKey().toString());
+                writeValue(entry.getValue());
+            }
+        } else if (value instanceof MapOrString) {
+            writeValue(((MapOrString) value).getMapOrStringValue());
+        } else if (value instanceof Collection<?>) {
+            Collection<?> list = (Collection<?>) value;
+            writeByte(BinaryCodec.LIST);
+            writeVarint(list.size());
+            for (Object item: list) {
+                writeValue(item);
+            }
+        } else if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short) || (value instanceof Byte)) {
+            writeByte(BinaryCodec.LONG);
+            long number = ((Number) value).longValue();
+            writeVarlong((number << 1) ^ (number >> 63)); // ZigZag so that small negative numbers stay small
+        } else if ((value instanceof Double) || (value instanceof Float)) {
+            writeByte(BinaryCodec.DOUBLE);
+            long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            ensureCapacity(8);
+            for (int i=56;i>=0;i-=8)
+                buffer[size++] = (byte) (bits >>> i);
+        } else if (value instanceof Boolean) {
+            writeByte(((Boolean) value)?BinaryCodec.TRUE:BinaryCodec.FALSE);
+        } else if (value instanceof Number) {
+            // BigDecimal or BigInteger, kept as their text
+            writeByte(BinaryCodec.NUMBER_TEXT);
+            writeString(value.toString());
+        } else {
+            throw new RuntimeException("Cannot encode a value of class "+value.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes the string or its index in the dictionary if already written:
+     * 0 for null, 1 followed by its length and UTF-8 bytes for a new one, or its index+2.
+     */
+    public void writeString (String value) {
+        if (value==null) {
+            writeByte(0);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index!=null) {
+            writeVarint(index+2);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        writeByte(1);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    public void writeByte (int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeVarint (int value) {
+        writeVarlong(value & 0xFFFFFFFFL);
+    }
+
+    public void writeVarlong (long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    protected void ensureCapacity (int more) {
+        if (size+more > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length*2, size+more));
+        }
+    }
+}
@@ -0,0 +1 @@
+package net.dontcode.core.binary;
\ No newline at end of file
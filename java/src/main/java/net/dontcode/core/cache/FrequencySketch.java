@@ -0,0 +1,79 @@
+package net.dontcode.core.cache;
+
+/**
+ * Estimates how often an element was used recently, with a count-min sketch of 4 rows of 4 bits counters, two counters per byte.
+ * Counters are halved once enough elements have been counted, so that old uses are forgotten.
+ * Not thread safe: ModelCache uses it under its lock.
+ */
+public class FrequencySketch {
+    protected static final int DEPTH = 4;
+    protected static final int MAX_COUNT = 15;
+    protected static final int[] SEEDS = {0x97cb3127, 0x7ed55d16, 0xc761c23c, 0x165667b1};
+
+    protected final byte[] counters;
+    protected final int mask;
+    protected final int sampleSize;
+    protected int additions;
+
+    /**
+     * @param expectedElements number of elements whose frequency is tracked
+     */
+    public FrequencySketch(int expectedElements) {
+        int width = Integer.highestOneBit(Math.max(expectedElements, 16) - 1) << 1;
+        this.counters = new byte[width * DEPTH / 2];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    public void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            if (count(index) < MAX_COUNT) {
+                counters[index >>> 1] += (byte) (1 << shiftOf(index));
+                added = true;
+            }
+        }
+        if (added && (++additions >= sampleSize))
+            reset();
+    }
+
+    /**
+     * @return the estimated number of uses, up to 15
+     */
+    public int frequency(int hash) {
+        int ret = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            ret = Math.min(ret, count(indexOf(hash, row)));
+        }
+        return ret;
+    }
+
+    protected int indexOf(int hash, int row) {
+        int spread = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        spread ^= spread >>> 16;
+        return row * (mask + 1) + (spread & mask);
+    }
+
+    protected int count(int index) {
+        return (counters[index >>> 1] >>> shiftOf(index)) & MAX_COUNT;
+    }
+
+    /**
+     * @return the position of the counter in its byte: the low 4 bits for even indexes, the high ones for odd indexes
+     */
+    protected static int shiftOf(int index) {
+        return (index & 1) << 2;
+    }
+
+    /**
+     * Halves all counters
+     */
+    protected void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            // The low bit of the high counter must not become the high bit of the low one
+            counters[i] = (byte) (((counters[i] & 0xFF) >>> 1) & 0x77);
+        }
+        additions /= 2;
+    }
+}
@@ -0,0 +1,406 @@
+package net.dontcode.core.cache;
+
+import net.dontcode.core.MapOrString;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded cache of the models of sessions, keeping the ones used the most often, with the W-TinyLFU policy:
+ *  - New models enter a small LRU window (1% of the maximum weight),
+ *  - Models leaving the window are only admitted in the main area if they're used more often than the one they would evict,
+ *  - The main area is a segmented LRU: models used again are protected (80% of it) from the ones used only once.
+ * How often a session is used is estimated by a FrequencySketch, so sessions evicted or not loaded yet are known as well.
+ *
+ * Models are weighed by their number of elements. Concurrent loads of the same session call the loader only once.
+ * A session invalidated or put while it's loading keeps its new state: the loaded model is returned to the threads waiting for it, but not cached.
+ * Reads don't lock: they are recorded in a buffer applied to the policy by the next thread getting the lock.
+ */
+public class ModelCache {
+    protected static final int READ_BUFFER_SIZE = 128;
+    protected static final int WINDOW = 0;
+    protected static final int PROBATION = 1;
+    protected static final int PROTECTED = 2;
+
+    protected final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    protected final ConcurrentHashMap<String, CompletableFuture<MapOrString>> loading = new ConcurrentHashMap<>();
+    protected final ToIntFunction<MapOrString> weigher;
+    protected final long maxWeight;
+    protected final long maxWindow;
+    protected final long maxProtected;
+
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected final ArrayBlockingQueue<Node> readBuffer = new ArrayBlockingQueue<>(READ_BUFFER_SIZE);
+    protected final FrequencySketch sketch;
+    protected final AccessOrder window = new AccessOrder();
+    protected final AccessOrder probation = new AccessOrder();
+    protected final AccessOrder protectedArea = new AccessOrder();
+    protected long weight;
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder loads = new LongAdder();
+    protected final LongAdder loadFailures = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxWeight maximum number of elements of all the models in the cache
+     */
+    public ModelCache(long maxWeight) {
+        this(maxWeight, ModelCache::elementCount);
+    }
+
+    /**
+     * @param maxWeight
+     * @param weigher calculates the weight of a model
+     */
+    public ModelCache(long maxWeight, ToIntFunction<MapOrString> weigher) {
+        if (maxWeight<=0)
+            throw new RuntimeException("The maximum weight of a cache must be positive");
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.maxWindow = Math.max(1, maxWeight/100);
+        this.maxProtected = (long) ((maxWeight-maxWindow)*0.8);
+        this.sketch = new FrequencySketch((int) Math.min(maxWeight, 1<<20));
+    }
+
+    /**
+     * @param model
+     * @return the number of elements (maps and values) of the model
+     */
+    public static int elementCount (MapOrString model) {
+        return (model==null)?0:elementCount(model.getMapOrStringValue());
+    }
+
+    protected static int elementCount (Object value) {
+        int ret = 1;
+        if (value instanceof Map<?,?>) {
+            for (Object child: ((Map<?, ?>) value).values()) {
+                ret += elementCount(child);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param sessionId
+     * @return the cached model, or null
+     */
+    public MapOrString getIfPresent (String sessionId) {
+        Node found = data.get(sessionId);
+        if (found==null) {
+            misses.increment();
+            recordMiss(sessionId);
+            return null;
+        }
+        hits.increment();
+        recordRead(found);
+        return found.value;
+    }
+
+    /**
+     * Returns the cached model of the session, or loads it. If other threads ask for the same session while it's loading, they wait for it.
+     * @param sessionId
+     * @param loader rebuilds the model of the session, for example by replaying its changes
+     * @return the model
+     */
+    public MapOrString get (String sessionId, Function<String, MapOrString> loader) {
+        MapOrString found = getIfPresent(sessionId);
+        if (found!=null)
+            return found;
+
+        CompletableFuture<MapOrString> load = new CompletableFuture<>();
+        CompletableFuture<MapOrString> existing = loading.putIfAbsent(sessionId, load);
+        if (existing!=null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw (e.getCause() instanceof RuntimeException)?(RuntimeException) e.getCause():e;
+            }
+        }
+        try {
+            // It may have been loaded just before this load was registered
+            Node loaded = data.get(sessionId);
+            MapOrString ret;
+            if (loaded!=null) {
+                ret = loaded.value;
+            } else {
+                loads.increment();
+                ret = loader.apply(sessionId);
+                if (ret!=null)
+                    putLoaded(sessionId, ret, load);
+            }
+            load.complete(ret);
+            return ret;
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(sessionId, load);
+        }
+    }
+
+    /**
+     * Adds or replaces the model of the session. Must be called again if the model changed a lot, to update its weight.
+     */
+    public void put (String sessionId, MapOrString model) {
+        Node node = new Node(sessionId, model, weigher.applyAsInt(model));
+        lock.lock();
+        try {
+            // A model being loaded is older than this one
+            loading.remove(sessionId);
+            insert(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts the loaded model, unless the session was invalidated or put since the load started
+     */
+    protected void putLoaded (String sessionId, MapOrString model, CompletableFuture<MapOrString> load) {
+        Node node = new Node(sessionId, model, weigher.applyAsInt(model));
+        lock.lock();
+        try {
+            if (loading.get(sessionId)==load)
+                insert(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void insert (Node node) {
+        drainReads();
+        Node previous = data.put(node.key, node);
+        if (previous!=null)
+            unlink(previous);
+        window.addFirst(node);
+        node.area = WINDOW;
+        weight += node.weight;
+        evict();
+    }
+
+    public MapOrString invalidate (String sessionId) {
+        lock.lock();
+        try {
+            drainReads();
+            loading.remove(sessionId);
+            Node removed = data.remove(sessionId);
+            if (removed==null)
+                return null;
+            unlink(removed);
+            return removed.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll () {
+        lock.lock();
+        try {
+            readBuffer.clear();
+            loading.clear();
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedArea.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size () {
+        return data.size();
+    }
+
+    public Stats getStats () {
+        lock.lock();
+        try {
+            drainReads();
+            return new Stats(hits.sum(), misses.sum(), loads.sum(), loadFailures.sum(), evictions.sum(), data.size(), weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void recordMiss (String sessionId) {
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(sessionId.hashCode());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    protected void recordRead (Node node) {
+        // A full buffer loses reads: the policy is then a bit less accurate, but reads never wait
+        readBuffer.offer(node);
+        if ((readBuffer.size()>=READ_BUFFER_SIZE/2) && lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    protected void drainReads () {
+        Node node;
+        while ((node = readBuffer.poll())!=null) {
+            onAccess(node);
+        }
+    }
+
+    protected void onAccess (Node node) {
+        sketch.increment(node.key.hashCode());
+        if (data.get(node.key)!=node)
+            return;
+        switch (node.area) {
+            case WINDOW -> window.moveToFirst(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.area = PROTECTED;
+                protectedArea.addFirst(node);
+                while (protectedArea.weight>maxProtected) {
+                    Node demoted = protectedArea.removeLast();
+                    demoted.area = PROBATION;
+                    probation.addFirst(demoted);
+                }
+            }
+            case PROTECTED -> protectedArea.moveToFirst(node);
+        }
+    }
+
+    /**
+     * Moves the models leaving the window to the main area, then evicts until the weight is below the maximum
+     */
+    protected void evict () {
+        Node candidates = null;
+        while ((window.weight>maxWindow) && (window.last!=null)) {
+            Node candidate = window.removeLast();
+            candidate.area = PROBATION;
+            probation.addFirst(candidate);
+            if (candidates==null)
+                candidates = candidate;
+        }
+
+        while ((weight>maxWeight) && (!data.isEmpty())) {
+            Node victim = (probation.last!=null)?probation.last:((protectedArea.last!=null)?protectedArea.last:window.last);
+            if ((candidates!=null) && (candidates.area==PROBATION) && (candidates!=victim)) {
+                // The candidate is only admitted if it's used more often than the victim
+                Node candidate = candidates;
+                candidates = candidate.previous;
+                if (sketch.frequency(candidate.key.hashCode())>sketch.frequency(victim.key.hashCode()))
+                    remove(victim);
+                else
+                    remove(candidate);
+            } else {
+                if (candidates==victim)
+                    candidates = null;
+                remove(victim);
+            }
+        }
+    }
+
+    protected void remove (Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+        evictions.increment();
+    }
+
+    protected void unlink (Node node) {
+        switch (node.area) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> protectedArea.remove(node);
+        }
+        weight -= node.weight;
+        node.area = -1;
+    }
+
+    /**
+     * @param hits number of models found in the cache
+     * @param misses number of models not found
+     * @param loads number of times the loader was called
+     * @param loadFailures number of times the loader failed
+     * @param evictions number of models evicted to respect the maximum weight
+     * @param size number of models in the cache
+     * @param weight sum of the weights of these models
+     */
+    public record Stats(long hits, long misses, long loads, long loadFailures, long evictions, int size, long weight) {
+        public double hitRatio () {
+            long requests = hits+misses;
+            return (requests==0)?1.0:(double) hits/requests;
+        }
+    }
+
+    protected static class Node {
+        protected final String key;
+        protected final MapOrString value;
+        protected final int weight;
+        protected int area = -1;
+        protected Node previous;
+        protected Node next;
+
+        protected Node(String key, MapOrString value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A list of nodes from the most recently used (first) to the least (last)
+     */
+    protected static class AccessOrder {
+        protected Node first;
+        protected Node last;
+        protected long weight;
+
+        protected void addFirst (Node node) {
+            node.previous = null;
+            node.next = first;
+            if (first==null) last = node;
+            else first.previous = node;
+            first = node;
+            weight += node.weight;
+        }
+
+        protected void remove (Node node) {
+            if (node.previous==null) first = node.next;
+            else node.previous.next = node.next;
+            if (node.next==null) last = node.previous;
+            else node.next.previous = node.previous;
+            node.previous = node.next = null;
+            weight -= node.weight;
+        }
+
+        protected Node removeLast () {
+            Node ret = last;
+            remove(ret);
+            return ret;
+        }
+
+        protected void moveToFirst (Node node) {
+            if (node!=first) {
+                remove(node);
+                addFirst(node);
+            }
+        }
+
+        protected void clear () {
+            first = last = null;
+            weight = 0;
+        }
+    }
+}
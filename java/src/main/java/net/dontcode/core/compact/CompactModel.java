@@ -0,0 +1,505 @@
+package net.dontcode.core.compact;
+
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelKeys;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.OrderedModelMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A model stored in a few arrays instead of one map per element: each element is an index in parallel arrays
+ * with the id of its key, its value, its first (and last) child and its next sibling.
+ * A model with small elements (2 to 5 properties) takes a lot less memory than with ModelMaps, as there is no object per element or per property.
+ *
+ * Elements are read and modified through OrderedModelMap views, so Models.applyChange() and findAtPosition() work on it:
+ * <pre>
+ *     CompactModel model = CompactModel.of(json);
+ *     Models.applyChange(model.asMapOrString(), change);
+ * </pre>
+ * Maps put in the model are copied into the arrays. Removed or replaced elements are left in the arrays until compact() is called.
+ * Elements with at least INDEXED_CHILDREN children also get an index of their children by key, so that big arrays like entities are found in constant time,
+ * but removing or moving a child still walks its previous siblings.
+ * Like ModelMap, it's not thread safe.
+ */
+public class CompactModel {
+    protected static final int NONE = -1;
+    protected static final int ROOT = 0;
+    /**
+     * The value of elements that are maps
+     */
+    protected static final Object MAP = new Object();
+    /**
+     * Number of children from which an element indexes them by key
+     */
+    protected static final int INDEXED_CHILDREN = 16;
+
+    protected int[] keys;
+    protected Object[] values;
+    protected int[] firstChild;
+    protected int[] lastChild;
+    protected int[] nextSibling;
+    protected int[] childCount;
+    protected int used;
+    /**
+     * Incremented by each compaction, as the views of elements are not valid anymore
+     */
+    protected int generation;
+
+    protected String[] keyNames = new String[16];
+    protected final HashMap<String, Integer> keyIds = new HashMap<>();
+    /**
+     * For each element with at least INDEXED_CHILDREN children, its children by key id
+     */
+    protected final HashMap<Integer, HashMap<Integer, Integer>> childIndexes = new HashMap<>();
+
+    protected final Element root;
+
+    public CompactModel() {
+        this(16);
+    }
+
+    /**
+     * @param capacity number of elements (maps, or other values) to allocate
+     */
+    public CompactModel(int capacity) {
+        capacity = Math.max(capacity, 1);
+        keys = new int[capacity];
+        values = new Object[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        childCount = new int[capacity];
+        keys[ROOT] = NONE;
+        values[ROOT] = MAP;
+        firstChild[ROOT] = NONE;
+        lastChild[ROOT] = NONE;
+        nextSibling[ROOT] = NONE;
+        used = 1;
+        root = new Element(ROOT);
+    }
+
+    /**
+     * @param content
+     * @return a compact copy of the content
+     */
+    public static CompactModel of(Map<String, ?> content) {
+        CompactModel ret = new CompactModel();
+        content.forEach(ret.root::put);
+        return ret;
+    }
+
+    /**
+     * @return the view of the root of the model, valid even after a compaction
+     */
+    public OrderedModelMap getRoot() {
+        return root;
+    }
+
+    public MapOrString asMapOrString() {
+        return new MapOrString(root);
+    }
+
+    /**
+     * @return a copy of the model made of ModelMaps
+     */
+    public ModelMap toModelMap() {
+        return (ModelMap) ModelMap.toModelValue(root);
+    }
+
+    /**
+     * @return the number of elements in the arrays, including the removed ones
+     */
+    public int getAllocated() {
+        return used;
+    }
+
+    /**
+     * @return the number of elements removed or replaced, released by the next compaction
+     */
+    public int getGarbage() {
+        return used - countElements();
+    }
+
+    /**
+     * Rewrites the arrays with only the elements still in the model, the children of each element being next to each other.
+     * Views of elements other than the root are no more valid after this.
+     * @return the number of elements released
+     */
+    public int compact() {
+        int live = countElements();
+        int[] newKeys = new int[live];
+        Object[] newValues = new Object[live];
+        int[] newFirst = new int[live];
+        int[] newLast = new int[live];
+        int[] newNext = new int[live];
+        int[] newCount = new int[live];
+        Arrays.fill(newNext, NONE);
+        int[] oldOf = new int[live];
+        oldOf[0] = ROOT;
+        int count = 1;
+        for (int cur = 0; cur < count; cur++) {
+            int old = oldOf[cur];
+            newKeys[cur] = keys[old];
+            newValues[cur] = values[old];
+            int previous = NONE;
+            newFirst[cur] = NONE;
+            for (int child = firstChild[old]; child != NONE; child = nextSibling[child]) {
+                int copy = count++;
+                oldOf[copy] = child;
+                if (previous == NONE) newFirst[cur] = copy;
+                else newNext[previous] = copy;
+                previous = copy;
+            }
+            newLast[cur] = previous;
+            newCount[cur] = childCount[old];
+        }
+
+        int released = used - live;
+        keys = newKeys;
+        values = newValues;
+        firstChild = newFirst;
+        lastChild = newLast;
+        nextSibling = newNext;
+        childCount = newCount;
+        used = live;
+        generation++;
+        childIndexes.clear();
+        for (int cur = 0; cur < live; cur++) {
+            if (childCount[cur] >= INDEXED_CHILDREN)
+                childIndexes.put(cur, indexChildren(cur));
+        }
+        return released;
+    }
+
+    protected int countElements() {
+        int ret = 0;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = ROOT;
+        while (top > 0) {
+            int cur = stack[--top];
+            ret++;
+            for (int child = firstChild[cur]; child != NONE; child = nextSibling[child]) {
+                if (top == stack.length)
+                    stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = child;
+            }
+        }
+        return ret;
+    }
+
+    protected int allocate(int key, Object value) {
+        if (used == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+        }
+        keys[used] = key;
+        values[used] = value;
+        firstChild[used] = NONE;
+        lastChild[used] = NONE;
+        nextSibling[used] = NONE;
+        childCount[used] = 0;
+        return used++;
+    }
+
+    protected int keyIdOf(String key) {
+        Integer found = keyIds.get(key);
+        if (found != null)
+            return found;
+        int ret = keyIds.size();
+        if (ret == keyNames.length)
+            keyNames = Arrays.copyOf(keyNames, ret * 2);
+        key = ModelKeys.canonical(key);
+        keyNames[ret] = key;
+        keyIds.put(key, ret);
+        return ret;
+    }
+
+    /**
+     * Copies the value, and all its children if it's a map, in new elements
+     * @return the element with the value
+     */
+    protected int importValue(int key, Object value) {
+        if (value instanceof Map<?, ?>) {
+            int ret = allocate(key, MAP);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                append(ret, importValue(keyIdOf(entry.getKey().toString()), entry.getValue()));
+            }
+            return ret;
+        }
+        return allocate(key, value);
+    }
+
+    protected Object valueOf(int element) {
+        return (values[element] == MAP) ? new Element(element) : values[element];
+    }
+
+    protected int childOf(int parent, Object key) {
+        if (!(key instanceof String))
+            return NONE;
+        Integer keyId = keyIds.get(key);
+        if (keyId == null)
+            return NONE;
+        if (childCount[parent] >= INDEXED_CHILDREN) {
+            Integer found = childIndexes.get(parent).get(keyId);
+            return (found == null) ? NONE : found;
+        }
+        for (int child = firstChild[parent]; child != NONE; child = nextSibling[child]) {
+            if (keys[child] == keyId)
+                return child;
+        }
+        return NONE;
+    }
+
+    protected int previousOf(int parent, int child) {
+        int previous = NONE;
+        for (int cur = firstChild[parent]; cur != child; cur = nextSibling[cur]) {
+            previous = cur;
+        }
+        return previous;
+    }
+
+    protected HashMap<Integer, Integer> indexChildren(int parent) {
+        HashMap<Integer, Integer> ret = new HashMap<>();
+        for (int child = firstChild[parent]; child != NONE; child = nextSibling[child]) {
+            ret.put(keys[child], child);
+        }
+        return ret;
+    }
+
+    /**
+     * Counts, and indexes if needed, a child just linked to its parent
+     */
+    protected void linked(int parent, int child) {
+        int count = ++childCount[parent];
+        if (count > INDEXED_CHILDREN)
+            childIndexes.get(parent).put(keys[child], child);
+        else if (count == INDEXED_CHILDREN)
+            childIndexes.put(parent, indexChildren(parent));
+    }
+
+    protected void unlinked(int parent, int child) {
+        int count = childCount[parent]--;
+        if (count > INDEXED_CHILDREN)
+            childIndexes.get(parent).remove(keys[child]);
+        else if (count == INDEXED_CHILDREN)
+            childIndexes.remove(parent);
+    }
+
+    protected void append(int parent, int child) {
+        nextSibling[child] = NONE;
+        if (lastChild[parent] == NONE) firstChild[parent] = child;
+        else nextSibling[lastChild[parent]] = child;
+        lastChild[parent] = child;
+        linked(parent, child);
+    }
+
+    /**
+     * Links the child just before next, or at the end if next is NONE
+     */
+    protected void linkBefore(int parent, int child, int next) {
+        if (next == NONE) {
+            append(parent, child);
+            return;
+        }
+        int previous = previousOf(parent, next);
+        nextSibling[child] = next;
+        if (previous == NONE) firstChild[parent] = child;
+        else nextSibling[previous] = child;
+        linked(parent, child);
+    }
+
+    protected void unlink(int parent, int child) {
+        int previous = previousOf(parent, child);
+        if (previous == NONE) firstChild[parent] = nextSibling[child];
+        else nextSibling[previous] = nextSibling[child];
+        if (lastChild[parent] == child) lastChild[parent] = previous;
+        nextSibling[child] = NONE;
+        unlinked(parent, child);
+    }
+
+    protected void replaceChild(int parent, int child, int by) {
+        int previous = previousOf(parent, child);
+        nextSibling[by] = nextSibling[child];
+        if (previous == NONE) firstChild[parent] = by;
+        else nextSibling[previous] = by;
+        if (lastChild[parent] == child) lastChild[parent] = by;
+        nextSibling[child] = NONE;
+        if (childCount[parent] >= INDEXED_CHILDREN)
+            childIndexes.get(parent).put(keys[by], by);
+    }
+
+    /**
+     * The view of an element that is a map.
+     * Views are created when reading the model, so they are not kept and two views of the same element are equal but not the same.
+     */
+    protected class Element extends AbstractMap<String, Object> implements OrderedModelMap {
+        protected final int element;
+        protected final int generation;
+
+        protected Element(int element) {
+            this.element = element;
+            this.generation = CompactModel.this.generation;
+        }
+
+        protected int element() {
+            if ((element != ROOT) && (generation != CompactModel.this.generation))
+                throw new RuntimeException("Element of a CompactModel used after its compaction");
+            return element;
+        }
+
+        @Override
+        public int size() {
+            return childCount[element()];
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return firstChild[element()] == NONE;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return childOf(element(), key) != NONE;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int child = childOf(element(), key);
+            return (child == NONE) ? null : valueOf(child);
+        }
+
+        /**
+         * Replaces the value of an existing key without changing its place, or adds it at the end.
+         * Maps are copied into the model, and the previous value (if it was a map) is not part of the model anymore.
+         */
+        @Override
+        public Object put(String key, Object value) {
+            int parent = element();
+            int child = childOf(parent, key);
+            if ((child != NONE) && (values[child] != MAP) && !(value instanceof Map<?, ?>)) {
+                Object old = values[child];
+                values[child] = value;
+                return old;
+            }
+            int created = importValue(keyIdOf(key), value);
+            if (child == NONE) {
+                append(parent, created);
+                return null;
+            }
+            Object old = valueOf(child);
+            replaceChild(parent, child, created);
+            return old;
+        }
+
+        @Override
+        public void putBefore(String key, Object value, String beforeKey) {
+            if (key.equals(beforeKey)) {
+                put(key, value);
+                return;
+            }
+            int parent = element();
+            int child = childOf(parent, key);
+            int moved;
+            if ((child != NONE) && (values[child] != MAP) && !(value instanceof Map<?, ?>)) {
+                values[child] = value;
+                moved = child;
+            } else {
+                moved = importValue(keyIdOf(key), value);
+            }
+            if (child != NONE)
+                unlink(parent, child);
+            linkBefore(parent, moved, (beforeKey == null) ? NONE : childOf(parent, beforeKey));
+        }
+
+        @Override
+        public String nextKey(String key) {
+            int child = childOf(element(), key);
+            return ((child == NONE) || (nextSibling[child] == NONE)) ? null : keyNames[keys[nextSibling[child]]];
+        }
+
+        @Override
+        public Object remove(Object key) {
+            int parent = element();
+            int child = childOf(parent, key);
+            if (child == NONE)
+                return null;
+            Object old = valueOf(child);
+            unlink(parent, child);
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            int parent = element();
+            firstChild[parent] = NONE;
+            lastChild[parent] = NONE;
+            childCount[parent] = 0;
+            childIndexes.remove(parent);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new ElementIterator(firstChild[element()]);
+                }
+
+                @Override
+                public int size() {
+                    return Element.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    Element.this.clear();
+                }
+            };
+        }
+
+        protected class ElementIterator implements Iterator<Entry<String, Object>> {
+            int next;
+            int lastReturned = NONE;
+
+            protected ElementIterator(int next) {
+                this.next = next;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+                if (next == NONE)
+                    throw new NoSuchElementException();
+                lastReturned = next;
+                next = nextSibling[next];
+                return new SimpleImmutableEntry<>(keyNames[keys[lastReturned]], valueOf(lastReturned));
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == NONE)
+                    throw new IllegalStateException();
+                unlink(element(), lastReturned);
+                lastReturned = NONE;
+            }
+        }
+    }
+}
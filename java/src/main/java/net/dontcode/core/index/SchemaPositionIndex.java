@@ -0,0 +1,205 @@
+package net.dontcode.core.index;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import net.dontcode.core.schema.DontCodeSchemaManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Finds the elements of a model by their position in the schema, without walking the model:
+ * getItems("creation/entities/fields") returns the position of every field of every entity.
+ *
+ * It is kept up to date by receiving the atomic changes of Models.applyChange(), so each change only updates the elements it modifies.
+ */
+public class SchemaPositionIndex implements Consumer<Change> {
+    protected final Function<String, DontCodeModelPointer> schemaResolver;
+    protected final Map<String, Set<String>> items = new HashMap<>();
+    protected final Map<String, Set<String>> properties = new HashMap<>();
+    /**
+     * All indexed positions, sorted so that the elements below a position follow it
+     */
+    protected final TreeMap<String, DontCodeModelPointer> positions = new TreeMap<>();
+
+    /**
+     * Indexes the positions known by the default dont-code schema
+     */
+    public SchemaPositionIndex() {
+        this(DontCodeSchemaManager.getDefault().pointerResolver());
+    }
+
+    /**
+     * @param schemaResolver calculates the pointer (with positionInSchema and isProperty) of a position, or null if it must not be indexed
+     */
+    public SchemaPositionIndex(Function<String, DontCodeModelPointer> schemaResolver) {
+        this.schemaResolver = schemaResolver;
+    }
+
+    /**
+     * A resolver that only knows which elements are arrays: the key following them is the key of an item, and is not part of the position in schema.
+     * @param arrayPositionsInSchema
+     */
+    public static Function<String, DontCodeModelPointer> arrayResolver (Set<String> arrayPositionsInSchema) {
+        return position -> {
+            StringBuilder positionInSchema = new StringBuilder();
+            boolean isProperty = true;
+            boolean nextIsItem = false;
+            for (String element: position.split("/")) {
+                if (nextIsItem) {
+                    // The key of an item is not part of the position in schema
+                    nextIsItem = false;
+                    isProperty = false;
+                    continue;
+                }
+                isProperty = true;
+                if (!positionInSchema.isEmpty())
+                    positionInSchema.append('/');
+                positionInSchema.append(element);
+                nextIsItem = arrayPositionsInSchema.contains(positionInSchema.toString());
+            }
+            int slashPos = position.lastIndexOf('/');
+            int schemaSlashPos = positionInSchema.lastIndexOf("/");
+            return new DontCodeModelPointer(position, positionInSchema.toString(), (slashPos==-1)?"":position.substring(0, slashPos),
+                    (schemaSlashPos==-1)?"":positionInSchema.substring(0, schemaSlashPos), position.substring(slashPos+1), isProperty);
+        };
+    }
+
+    /**
+     * Indexes again the whole model
+     * @param model
+     * @return this
+     */
+    public SchemaPositionIndex index (MapOrString model) {
+        clear();
+        if (model.isMap())
+            indexChildren("", model.getMap());
+        return this;
+    }
+
+    /**
+     * Applies the change to the model and updates the index
+     * @param model must be the one indexed
+     * @param change
+     * @return the model
+     */
+    public MapOrString applyChange (MapOrString model, Change change) {
+        return Models.applyChange(model, change, this);
+    }
+
+    /**
+     * Updates the index with an atomic change sent by Models.applyChange()
+     * @param atomic
+     */
+    @Override
+    public void accept (Change atomic) {
+        String position = atomic.getPosition();
+        switch (atomic.getType()) {
+            case DELETE -> unindex(position);
+            case MOVE -> {
+                if ((atomic.getOldPosition()!=null) && (!atomic.getOldPosition().equals(position)))
+                    unindex(atomic.getOldPosition());
+                reindex(position, atomic.getValue());
+            }
+            default -> reindex(position, atomic.getValue());
+        }
+    }
+
+    /**
+     * @param positionInSchema
+     * @return the positions of the items of all arrays at this position in the schema, like all fields of all entities with "creation/entities/fields"
+     */
+    public Set<String> getItems (String positionInSchema) {
+        return Collections.unmodifiableSet(items.getOrDefault(positionInSchema, Collections.emptySet()));
+    }
+
+    /**
+     * @param positionInSchema
+     * @return the positions of all the properties at this position in the schema, like the names of all entities with "creation/entities/name"
+     */
+    public Set<String> getProperties (String positionInSchema) {
+        return Collections.unmodifiableSet(properties.getOrDefault(positionInSchema, Collections.emptySet()));
+    }
+
+    /**
+     * @param position
+     * @return the pointer of an element of the model, or null if there is none at this position
+     */
+    public DontCodeModelPointer getPointer (String position) {
+        return positions.get(position);
+    }
+
+    public int size () {
+        return positions.size();
+    }
+
+    public void clear () {
+        items.clear();
+        properties.clear();
+        positions.clear();
+    }
+
+    protected void reindex (String position, Object value) {
+        if (position.isEmpty()) {
+            clear();
+            if (value instanceof Map<?,?>)
+                indexChildren("", Models.asMap(value));
+            return;
+        }
+        unindex(position);
+        indexElement(position, value);
+    }
+
+    protected void indexElement (String position, Object value) {
+        DontCodeModelPointer pointer = schemaResolver.apply(position);
+        if (pointer!=null) {
+            positions.put(position, pointer);
+            (Boolean.FALSE.equals(pointer.getIsProperty())?items:properties).computeIfAbsent(pointer.getPositionInSchema(), key -> new LinkedHashSet<>()).add(position);
+        }
+        if (value instanceof Map<?,?>)
+            indexChildren(position, Models.asMap(value));
+    }
+
+    protected void indexChildren (String parentPosition, Map<String, Object> children) {
+        for (Map.Entry<String, Object> child: children.entrySet()) {
+            indexElement(parentPosition.isEmpty()?child.getKey():parentPosition+'/'+child.getKey(), child.getValue());
+        }
+    }
+
+    /**
+     * Removes the position and all the elements below it
+     */
+    protected void unindex (String position) {
+        if (position.isEmpty()) {
+            clear();
+            return;
+        }
+        unindexPointer(positions.remove(position));
+        // '0' follows '/', so the submap holds all positions starting with position/
+        for (Iterator<DontCodeModelPointer> below = positions.subMap(position+'/', position+'0').values().iterator(); below.hasNext();) {
+            unindexPointer(below.next());
+            below.remove();
+        }
+    }
+
+    protected void unindexPointer (DontCodeModelPointer pointer) {
+        if (pointer==null)
+            return;
+        Map<String, Set<String>> bySchema = Boolean.FALSE.equals(pointer.getIsProperty())?items:properties;
+        Set<String> found = bySchema.get(pointer.getPositionInSchema());
+        if (found!=null) {
+            found.remove(pointer.getPosition());
+            if (found.isEmpty())
+                bySchema.remove(pointer.getPositionInSchema());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.dontcode.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import net.dontcode.core.Change;
+
+import java.util.Map;
+
+@Name("net.dontcode.core.ApplyChange")
+@Label("Apply Change")
+@Category({"Dont-code", "Model"})
+@Description("A change merged into a model by Models.applyChange or applyChanges")
+public class ApplyChangeEvent extends Event {
+    @Label("Position")
+    public String position;
+
+    @Label("Change Type")
+    public String changeType;
+
+    @Label("Elements Touched")
+    @Description("Number of elements (maps and values) of the value merged into the model")
+    public int touchedElements;
+
+    /**
+     * Ends the event, and commits it with the description of the change if it's recorded
+     */
+    public void commitFor (Change change) {
+        end();
+        if (shouldCommit()) {
+            position = change.getPosition();
+            changeType = (change.getType()==null)?null:change.getType().name();
+            touchedElements = (change.getValue()==null)?0:countElements(change.getValue());
+            commit();
+        }
+    }
+
+    /**
+     * @return the number of maps and values in the value
+     */
+    public static int countElements (Object value) {
+        int ret = 1;
+        if (value instanceof Map<?,?>) {
+            for (Object child: ((Map<?, ?>) value).values()) {
+                ret += countElements(child);
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,49 @@
+package net.dontcode.core.jfr;
+
+import jdk.jfr.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gives the JFR settings of the events of the change pipeline, shipped in the jar as dontcode.jfc:
+ *  - ApplyChange, MessageDecode and SessionApply events taking more than 1 ms,
+ *  - FindAtPosition misses and creations taking more than 100 us,
+ *  - All MapInsertRebuild events, with their stack trace.
+ * Example: new Recording(ChangePipelineRecording.getSettings()).start()
+ */
+public class ChangePipelineRecording {
+    public static final String SETTINGS = "dontcode.jfc";
+
+    /**
+     * @return the configuration with only the events of the change pipeline
+     */
+    public static Configuration getConfiguration () {
+        try (InputStream input = ChangePipelineRecording.class.getResourceAsStream(SETTINGS)) {
+            if (input==null)
+                throw new RuntimeException("Cannot find the JFR settings "+SETTINGS);
+            return Configuration.create(new InputStreamReader(input, StandardCharsets.UTF_8));
+        } catch (IOException | ParseException e) {
+            throw new RuntimeException("Cannot read the JFR settings "+SETTINGS, e);
+        }
+    }
+
+    /**
+     * @return the settings of the default configuration of the JDK, with the events of the change pipeline
+     */
+    public static Map<String, String> getSettings () {
+        Map<String, String> ret = new HashMap<>();
+        try {
+            ret.putAll(Configuration.getConfiguration("default").getSettings());
+        } catch (IOException | ParseException e) {
+            throw new RuntimeException("Cannot read the default JFR settings", e);
+        }
+        ret.putAll(getConfiguration().getSettings());
+        return ret;
+    }
+}
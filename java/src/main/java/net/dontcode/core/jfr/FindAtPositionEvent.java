@@ -0,0 +1,44 @@
+package net.dontcode.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import net.dontcode.core.ModelPath;
+
+/**
+ * Only sent when the position is not found, or when missing elements are created: found positions are the normal case.
+ */
+@Name("net.dontcode.core.FindAtPosition")
+@Label("Find At Position Miss")
+@Category({"Dont-code", "Model"})
+@Description("A position not found in a model by Models.findAtPosition, or whose missing elements were created")
+public class FindAtPositionEvent extends Event {
+    @Label("Position")
+    public String position;
+
+    @Label("Missing Element")
+    @Description("The first element of the position that was not found")
+    public String missingElement;
+
+    @Label("Created Elements")
+    @Description("Number of missing elements created, 0 if they were not to be created")
+    public int createdElements;
+
+    /**
+     * Commits the event if it's recorded
+     * @param path the position looked for
+     * @param missing index in path of the first missing element
+     * @param created number of elements created
+     */
+    public void commitFor (ModelPath path, int missing, int created) {
+        end();
+        if (shouldCommit()) {
+            position = path.getPosition();
+            missingElement = path.element(missing);
+            createdElements = created;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package net.dontcode.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("net.dontcode.core.MapInsertRebuild")
+@Label("Map Insert Rebuild")
+@Category({"Dont-code", "Model"})
+@Description("A map that is not a ModelMap fully copied by MapOrString.mapInsert to insert an element before another")
+public class MapInsertRebuildEvent extends Event {
+    @Label("Key")
+    public String key;
+
+    @Label("Before Key")
+    public String beforeKey;
+
+    @Label("Map Class")
+    public Class<?> mapClass;
+
+    @Label("Map Size")
+    public int mapSize;
+}
@@ -0,0 +1,44 @@
+package net.dontcode.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import net.dontcode.core.Message;
+
+@Name("net.dontcode.core.MessageDecode")
+@Label("Message Decode")
+@Category({"Dont-code", "Message"})
+public class MessageDecodeEvent extends Event {
+    @Label("Format")
+    public String format;
+
+    @Label("Session Id")
+    public String sessionId;
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Position")
+    public String position;
+
+    @Label("Change Type")
+    public String changeType;
+
+    /**
+     * Commits the event with the description of the decoded message if it's recorded
+     */
+    public void commitFor (String decodedFormat, Message message) {
+        end();
+        if (shouldCommit()) {
+            format = decodedFormat;
+            sessionId = message.getSessionId();
+            messageType = (message.getType()==null)?null:message.getType().name();
+            if (message.getChange()!=null) {
+                position = message.getChange().getPosition();
+                changeType = (message.getChange().getType()==null)?null:message.getChange().getType().name();
+            }
+            commit();
+        }
+    }
+}
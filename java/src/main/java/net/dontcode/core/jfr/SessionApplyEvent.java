@@ -0,0 +1,26 @@
+package net.dontcode.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Gives the session of the ApplyChange events sent by the same thread during this one.
+ */
+@Name("net.dontcode.core.SessionApply")
+@Label("Session Apply")
+@Category({"Dont-code", "Session"})
+@Description("Changes applied to the model of a session")
+public class SessionApplyEvent extends Event {
+    @Label("Session Id")
+    public String sessionId;
+
+    @Label("Changes")
+    public int changes;
+
+    @Label("Failed")
+    @Description("True if the changes could not all be applied together")
+    public boolean failed;
+}
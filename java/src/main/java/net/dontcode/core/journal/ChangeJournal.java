@@ -0,0 +1,303 @@
+package net.dontcode.core.journal;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.Models;
+import net.dontcode.core.json.ChangeStreamReader;
+import net.dontcode.core.json.DontCodeJsonModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Keeps all the messages of a session in an append-only journal, so that its model can be recovered after a restart.
+ * Messages are stored in memory mapped segment files, and a snapshot of the model is written every snapshotInterval changes.
+ * Recovery then only loads the latest snapshot and replays the messages received after it.
+ *
+ * Files of a session are stored in their own directory:
+ *  - 00000000000000000000.segment, 00000000000000001000.segment... : the messages, the name being the sequence number of the first one
+ *  - 00000000000000001000.snapshot : the model once the messages before this sequence number have been applied
+ */
+public class ChangeJournal implements Closeable {
+    private static Logger log = LoggerFactory.getLogger(ChangeJournal.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4*1024*1024;
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+    static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    protected final Path directory;
+    protected final String sessionId;
+    protected final int segmentSize;
+    protected final int snapshotInterval;
+
+    JournalSegment current;
+    protected long snapshotSequence;
+
+    protected ChangeJournal(Path directory, String sessionId, int segmentSize, int snapshotInterval) {
+        this.directory = directory;
+        this.sessionId = sessionId;
+        this.segmentSize = segmentSize;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public static ChangeJournal open (Path baseDirectory, String sessionId) throws IOException {
+        return open(baseDirectory, sessionId, DEFAULT_SEGMENT_SIZE, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Opens the journal of the session, creating it if needed. New messages are appended after the existing ones.
+     * @param baseDirectory the directory containing the journals of all sessions
+     * @param sessionId
+     * @param segmentSize the size of each segment file. A message bigger than that gets its own segment.
+     * @param snapshotInterval number of changes between two snapshots when using apply()
+     * @return
+     * @throws IOException
+     */
+    public static ChangeJournal open (Path baseDirectory, String sessionId, int segmentSize, int snapshotInterval) throws IOException {
+        if ((sessionId==null) || (sessionId.length()==0) || (sessionId.startsWith(".")) || (sessionId.indexOf('/')!=-1) || (sessionId.indexOf('\\')!=-1))
+            throw new RuntimeException("Invalid sessionId for a journal: "+sessionId);
+        Path directory = baseDirectory.resolve(sessionId);
+        Files.createDirectories(directory);
+
+        ChangeJournal ret = new ChangeJournal(directory, sessionId, segmentSize, snapshotInterval);
+        Path lastSnapshot = ret.latestSnapshot();
+        ret.snapshotSequence = (lastSnapshot==null)?0:JournalSegment.sequenceOf(lastSnapshot);
+        List<Path> segments = ret.listFiles(JournalSegment.EXTENSION);
+        if (segments.isEmpty()) {
+            ret.current = JournalSegment.create(directory, ret.snapshotSequence, segmentSize);
+        } else {
+            ret.current = JournalSegment.open(segments.get(segments.size()-1), segmentSize);
+        }
+        return ret;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return the sequence number the next message will get, that is the number of messages in the journal
+     */
+    public synchronized long getSequence () {
+        return current.nextSequence;
+    }
+
+    /**
+     * @return the sequence number of the latest snapshot, 0 if none
+     */
+    public synchronized long getSnapshotSequence() {
+        return snapshotSequence;
+    }
+
+    /**
+     * Appends the message at the end of the journal
+     * @param message
+     * @return its sequence number
+     * @throws IOException
+     */
+    public synchronized long append (Message message) throws IOException {
+        byte[] content = DontCodeJsonModule.messageWriter.writeValueAsBytes(message);
+        long sequence = current.nextSequence;
+        if (!current.append(content)) {
+            roll(sequence, content.length);
+            current.append(content);
+        }
+        return sequence;
+    }
+
+    public long append (Change change) throws IOException {
+        return append(new Message(Message.MessageType.CHANGE, sessionId, change));
+    }
+
+    /**
+     * Applies the change of the message to the model, then appends the message to the journal.
+     * A change that cannot be applied is not journaled, so that it never prevents the recovery of the session.
+     * Every snapshotInterval messages, a snapshot of the model is written as well.
+     * @param model
+     * @param message
+     * @return the updated model
+     * @throws IOException
+     */
+    public synchronized MapOrString apply (MapOrString model, Message message) throws IOException {
+        if ((message.getType()== Message.MessageType.CHANGE) && (message.getChange()!=null)) {
+            model = Models.applyChange(model, message.getChange());
+        }
+        append(message);
+        if (current.nextSequence-snapshotSequence>=snapshotInterval) {
+            snapshot(model);
+        }
+        return model;
+    }
+
+    /**
+     * Writes a snapshot of the model, that must contain all the changes of the journal.
+     * Messages and snapshots before it are not needed anymore and are deleted.
+     * @param model
+     * @throws IOException
+     */
+    public synchronized void snapshot (MapOrString model) throws IOException {
+        long sequence = current.nextSequence;
+
+        // Write it completely on disk before making it visible, so that a crash never leaves a partial snapshot
+        Path snapshotFile = directory.resolve(JournalSegment.baseNameOf(sequence)+SNAPSHOT_EXTENSION);
+        Path temp = directory.resolve(snapshotFile.getFileName()+".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile());
+             JsonGenerator gen = DontCodeJsonModule.mapper.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeNumberField("sequence", sequence);
+            gen.writeFieldName("model");
+            DontCodeJsonModule.writeValue(gen, model.getMapOrStringValue());
+            gen.writeEndObject();
+            gen.flush();
+            out.getFD().sync();
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The older files can only be deleted once the snapshot is surely visible after a crash
+        syncDirectory();
+        snapshotSequence = sequence;
+
+        roll(sequence, 0);
+        for (Path file:listFiles(JournalSegment.EXTENSION)) {
+            if (JournalSegment.sequenceOf(file)<sequence)
+                Files.deleteIfExists(file);
+        }
+        for (Path file:listFiles(SNAPSHOT_EXTENSION)) {
+            if (JournalSegment.sequenceOf(file)<sequence)
+                Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Rebuilds the model of the session from the latest snapshot and the messages appended after it.
+     * Changes are applied one by one, like they were when received. A change that fails is logged and skipped.
+     * @return the model, empty if nothing has been journaled
+     * @throws IOException
+     */
+    public synchronized MapOrString recover () throws IOException {
+        MapOrString model = new MapOrString();
+        long fromSequence = 0;
+        Path lastSnapshot = latestSnapshot();
+        if (lastSnapshot!=null) {
+            try (JsonParser parser = DontCodeJsonModule.mapper.createParser(lastSnapshot.toFile())) {
+                parser.nextToken();
+                while (parser.nextToken()==JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    if ("sequence".equals(field)) {
+                        fromSequence = parser.getLongValue();
+                    } else if ("model".equals(field)) {
+                        // Read directly as ModelMaps
+                        Object snapshotModel = ChangeStreamReader.readValue(parser);
+                        if (snapshotModel!=null)
+                            model = MapOrString.fromObject(snapshotModel);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+
+        final long from = fromSequence;
+        final MapOrString recovered = model;
+        current.force();
+        for (Path file:listFiles(JournalSegment.EXTENSION)) {
+            if (file.equals(current.file)) {
+                replayChanges(current, from, recovered);
+            } else {
+                try (JournalSegment segment = JournalSegment.open(file, 0)) {
+                    replayChanges(segment, from, recovered);
+                }
+            }
+        }
+        log.debug("Recovered session {} from snapshot at {}", sessionId, from);
+        return recovered;
+    }
+
+    void replayChanges (JournalSegment segment, long fromSequence, MapOrString model) throws IOException {
+        long position = segment.buffer.position();
+        try {
+            segment.forEach((sequence, content) -> {
+                if (sequence >= fromSequence) {
+                    Message message = DontCodeJsonModule.messageReader.readValue(content);
+                    if ((message.getType() == Message.MessageType.CHANGE) && (message.getChange() != null)) {
+                        try {
+                            Models.applyChange(model, message.getChange());
+                        } catch (RuntimeException e) {
+                            log.warn("Skipping change {} at {} of session {} that cannot be applied: {}", sequence, message.getChange().getPosition(), sessionId, e.toString());
+                        }
+                    }
+                }
+            });
+        } finally {
+            segment.buffer.position((int) position);
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new one
+     */
+    protected void roll (long sequence, int minSize) throws IOException {
+        if (current.firstSequence==sequence) {
+            // The current segment is empty, just check it's big enough
+            if (current.buffer.capacity()>=minSize+JournalSegment.HEADER_SIZE)
+                return;
+        }
+        current.close();
+        if (current.firstSequence==sequence)
+            Files.deleteIfExists(current.file);
+        current = JournalSegment.create(directory, sequence, Math.max(segmentSize, minSize+JournalSegment.HEADER_SIZE));
+    }
+
+    /**
+     * Makes sure the files created, renamed or deleted in the directory are on disk
+     */
+    protected void syncDirectory () {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some systems, like Windows, can't open a directory
+            log.debug("Cannot sync the journal directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    protected Path latestSnapshot () throws IOException {
+        List<Path> snapshots = listFiles(SNAPSHOT_EXTENSION);
+        return snapshots.isEmpty()?null:snapshots.get(snapshots.size()-1);
+    }
+
+    /**
+     * @return the files of the session with the given extension, sorted by sequence number
+     */
+    protected List<Path> listFiles (String extension) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(extension)).sorted().toList();
+        }
+    }
+
+    /**
+     * Makes sure all messages are written to disk
+     */
+    public synchronized void flush () {
+        current.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        current.close();
+    }
+}
@@ -0,0 +1,130 @@
+package net.dontcode.core.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A memory mapped file storing records of the journal, one after the other.
+ * Each record is stored as its length, its CRC32 and its content. A length of 0 marks the end of the segment,
+ * and a record with a wrong CRC (partially written when the process stopped) is ignored with all the following ones.
+ */
+class JournalSegment implements Closeable {
+    static final String EXTENSION = ".segment";
+    static final int HEADER_SIZE = 8;
+
+    protected final Path file;
+    protected final long firstSequence;
+    protected final FileChannel channel;
+    protected final MappedByteBuffer buffer;
+    protected long nextSequence;
+
+    protected JournalSegment(Path file, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.file = file;
+        this.firstSequence = firstSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.nextSequence = firstSequence;
+    }
+
+    static String baseNameOf(long sequence) {
+        return String.format("%020d", sequence);
+    }
+
+    static String fileNameOf(long firstSequence) {
+        return baseNameOf(firstSequence) + EXTENSION;
+    }
+
+    /**
+     * @return the sequence number in the name of a segment or snapshot file
+     */
+    static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * Creates a new empty segment, or reuses the existing one with the same first sequence
+     */
+    static JournalSegment create(Path directory, long firstSequence, int capacity) throws IOException {
+        return open(directory.resolve(fileNameOf(firstSequence)), capacity);
+    }
+
+    /**
+     * Opens the segment and positions it after its last valid record
+     */
+    static JournalSegment open(Path file, int minCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long capacity = Math.max(channel.size(), minCapacity);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        JournalSegment ret = new JournalSegment(file, sequenceOf(file), channel, buffer);
+        ret.forEach((sequence, content) -> {});
+        return ret;
+    }
+
+    /**
+     * Appends the record if there is enough space in the segment
+     * @param content
+     * @return false if the segment is full
+     */
+    boolean append(byte[] content) {
+        if (buffer.remaining() < content.length + HEADER_SIZE)
+            return false;
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(content);
+        // Write the length last, so that a partially written record is never seen as complete
+        buffer.putInt(start, content.length);
+        nextSequence++;
+        return true;
+    }
+
+    /**
+     * Calls the consumer for each valid record in the segment, and positions the segment after the last one
+     */
+    void forEach(RecordConsumer consumer) throws IOException {
+        buffer.position(0);
+        long sequence = firstSequence;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+            if ((length <= 0) || (length > buffer.remaining())) {
+                buffer.position(start);
+                break;
+            }
+            byte[] content = new byte[length];
+            buffer.get(content);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if ((int) crc.getValue() != expectedCrc) {
+                buffer.position(start);
+                break;
+            }
+            consumer.accept(sequence++, content);
+        }
+        nextSequence = sequence;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    @FunctionalInterface
+    interface RecordConsumer {
+        void accept(long sequence, byte[] content) throws IOException;
+    }
+}
@@ -0,0 +1 @@
+package net.dontcode.core.journal;
\ No newline at end of file
@@ -0,0 +1,224 @@
+package net.dontcode.core.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.Models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the changes of a session one after the other, directly from the Json tokens, without loading the whole session in memory.
+ * Sessions are stored either as an object of changes keyed by their order ({"1": {change}, "2": {change}...}) or as an array of changes.
+ * Values of the changes are read directly as ModelMaps, ready to be applied to a model.
+ */
+public class ChangeStreamReader implements Iterator<Change>, Closeable {
+    protected static final JsonFactory factory = new JsonFactory();
+
+    protected final JsonParser parser;
+    protected JsonToken endToken;
+    protected Change next;
+
+    public ChangeStreamReader(JsonParser parser) {
+        this.parser = parser;
+    }
+
+    public static ChangeStreamReader of (InputStream in) throws IOException {
+        return new ChangeStreamReader(factory.createParser(in));
+    }
+
+    public static ChangeStreamReader of (Reader in) throws IOException {
+        return new ChangeStreamReader(factory.createParser(in));
+    }
+
+    public static ChangeStreamReader of (Path file) throws IOException {
+        return of(Files.newInputStream(file));
+    }
+
+    /**
+     * Applies each change of the session to the model as soon as it is read
+     * @param model
+     * @return the updated model
+     */
+    public MapOrString applyTo (MapOrString model) {
+        return Models.applyChanges(model, stream());
+    }
+
+    /**
+     * @return the changes not yet read, as a lazy stream
+     */
+    public Stream<Change> stream () {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next==null) {
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next!=null;
+    }
+
+    @Override
+    public Change next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Change ret = next;
+        next = null;
+        return ret;
+    }
+
+    protected Change readNext () throws IOException {
+        if (endToken==null) {
+            JsonToken start = parser.nextToken();
+            if (start==null)
+                return null;
+            else if (start==JsonToken.START_OBJECT)
+                endToken = JsonToken.END_OBJECT;
+            else if (start==JsonToken.START_ARRAY)
+                endToken = JsonToken.END_ARRAY;
+            else
+                throw new RuntimeException("A session must be an object or an array of changes, not "+start);
+        }
+
+        JsonToken token = parser.nextToken();
+        if ((token==null) || (token==endToken))
+            return null;
+        if (token==JsonToken.FIELD_NAME)
+            token = parser.nextToken();
+        if (token!=JsonToken.START_OBJECT)
+            throw new RuntimeException("Expecting a change at "+parser.currentLocation()+", found "+token);
+        return readChange(parser);
+    }
+
+    /**
+     * Reads a change, the parser being on its START_OBJECT token or its first FIELD_NAME.
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    public static Change readChange (JsonParser parser) throws IOException {
+        Change ret = new Change();
+        for (JsonToken token = firstField(parser); token==JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "type" -> ret.setType((parser.currentToken()==JsonToken.VALUE_NULL)?null:Change.ChangeType.valueOf(parser.getText()));
+                case "position" -> ret.setPosition(readString(parser));
+                case "value" -> ret.setValue(readValue(parser));
+                case "oldPosition" -> ret.setOldPosition(readString(parser));
+                case "beforeKey" -> ret.setBeforeKey(readString(parser));
+                case "pointer" -> ret.setPointer(readPointer(parser));
+                default -> parser.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Reads a DontCodeModelPointer, the parser being on its START_OBJECT token, its first FIELD_NAME, or VALUE_NULL
+     */
+    public static DontCodeModelPointer readPointer (JsonParser parser) throws IOException {
+        if (parser.currentToken()==JsonToken.VALUE_NULL)
+            return null;
+        DontCodeModelPointer ret = new DontCodeModelPointer();
+        for (JsonToken token = firstField(parser); token==JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "position" -> ret.setPosition(readString(parser));
+                case "positionInSchema" -> ret.setPositionInSchema(readString(parser));
+                case "containerPosition" -> ret.setContainerPosition(readString(parser));
+                case "containerPositionInSchema" -> ret.setContainerPositionInSchema(readString(parser));
+                case "lastElement" -> ret.setLastElement(readString(parser));
+                case "isProperty" -> ret.setIsProperty((parser.currentToken()==JsonToken.VALUE_NULL)?null:parser.getValueAsBoolean());
+                default -> parser.skipChildren();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Reads a value of the model, the parser being on its first token (or the first FIELD_NAME of an object).
+     * Objects are read as ModelMaps, keeping the order of their elements, and other values like Jackson does (String, Number, Boolean, List or null).
+     * @param parser
+     * @return
+     * @throws IOException
+     */
+    public static Object readValue (JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token==null)
+            return null;
+        switch (token) {
+            case START_OBJECT:
+            case FIELD_NAME: {
+                ModelMap ret = new ModelMap();
+                String key = (token==JsonToken.FIELD_NAME)?parser.currentName():parser.nextFieldName();
+                for (; key!=null; key = parser.nextFieldName()) {
+                    parser.nextToken();
+                    ret.put(key, readValue(parser));
+                }
+                return ret;
+            }
+            case START_ARRAY: {
+                List<Object> ret = new ArrayList<>();
+                while (parser.nextToken()!=JsonToken.END_ARRAY) {
+                    ret.add(readValue(parser));
+                }
+                return ret;
+            }
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new RuntimeException("Unexpected token "+token+" at "+parser.currentLocation());
+        }
+    }
+
+    /**
+     * Moves the parser to the first field of the current object if it's on its START_OBJECT
+     * @return the current token
+     */
+    protected static JsonToken firstField (JsonParser parser) throws IOException {
+        return (parser.currentToken()==JsonToken.START_OBJECT)?parser.nextToken():parser.currentToken();
+    }
+
+    protected static String readString (JsonParser parser) throws IOException {
+        return (parser.currentToken()==JsonToken.VALUE_NULL)?null:parser.getText();
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
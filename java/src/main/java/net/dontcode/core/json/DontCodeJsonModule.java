@@ -0,0 +1,264 @@
+package net.dontcode.core.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.jfr.MessageDecodeEvent;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jackson module reading and writing Message, Change, DontCodeModelPointer and MapOrString directly from / to the Json tokens, without using reflection.
+ * Values of changes are read as ModelMaps, so they can be applied to a model without any copy.
+ *
+ * The reader and writers below are thread-safe and should be reused:
+ *   String json = DontCodeJsonModule.messageWriter.writeValueAsString(message);
+ */
+public class DontCodeJsonModule extends SimpleModule {
+
+    public static final ObjectMapper mapper = new ObjectMapper().registerModule(new DontCodeJsonModule());
+    public static final ObjectReader messageReader = mapper.readerFor(Message.class);
+    public static final ObjectWriter messageWriter = mapper.writerFor(Message.class);
+    public static final ObjectReader changeReader = mapper.readerFor(Change.class);
+    public static final ObjectWriter changeWriter = mapper.writerFor(Change.class);
+    public static final ObjectReader modelReader = mapper.readerFor(MapOrString.class);
+    public static final ObjectWriter modelWriter = mapper.writerFor(MapOrString.class);
+
+    private static final long serialVersionUID = 1L;
+
+    public DontCodeJsonModule() {
+        // Given to the constructor instead of calling addSerializer(), that subclasses could override
+        super("DontCodeJsonModule", Version.unknownVersion(), deserializers(), serializers());
+    }
+
+    protected static Map<Class<?>, JsonDeserializer<?>> deserializers () {
+        return Map.of(Message.class, new MessageDeserializer(),
+                Change.class, new ChangeDeserializer(),
+                DontCodeModelPointer.class, new PointerDeserializer(),
+                MapOrString.class, new MapOrStringDeserializer());
+    }
+
+    protected static List<JsonSerializer<?>> serializers () {
+        return List.of(new MessageSerializer(), new ChangeSerializer(), new PointerSerializer(), new MapOrStringSerializer());
+    }
+
+    /**
+     * Writes a value of the model: a Map, a String, or any simple Json value.
+     * @param gen
+     * @param value
+     * @throws IOException
+     */
+    public static void writeValue (JsonGenerator gen, Object value) throws IOException {
+        if (value==null) {
+            gen.writeNull();
+        } else if (value instanceof String) {
+            gen.writeString((String) value);
+        } else if (value instanceof Map<?,?>) {
+            gen.writeStartObject(value);
+            for (Map.Entry<?,?> entry: ((Map<?,?>) value).entrySet()) {
+                gen.writeFieldName(entry.getKey().toString());
+                writeValue(gen, entry.getValue());
+            }
+            gen.writeEndObject();
+        } else if (value instanceof MapOrString) {
+            writeValue(gen, ((MapOrString) value).getMapOrStringValue());
+        } else if (value instanceof Collection<?>) {
+            gen.writeStartArray();
+            for (Object item: (Collection<?>) value) {
+                writeValue(gen, item);
+            }
+            gen.writeEndArray();
+        } else {
+            gen.writeObject(value);
+        }
+    }
+
+    public static void writeChange (JsonGenerator gen, Change change) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("type", (change.getType()==null)?null:change.getType().name());
+        gen.writeStringField("position", change.getPosition());
+        gen.writeFieldName("value");
+        writeValue(gen, change.getValue());
+        gen.writeFieldName("pointer");
+        writePointer(gen, change.getPointer());
+        gen.writeStringField("oldPosition", change.getOldPosition());
+        gen.writeStringField("beforeKey", change.getBeforeKey());
+        gen.writeEndObject();
+    }
+
+    public static void writePointer (JsonGenerator gen, DontCodeModelPointer pointer) throws IOException {
+        if (pointer==null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        gen.writeStringField("position", pointer.getPosition());
+        gen.writeStringField("positionInSchema", pointer.getPositionInSchema());
+        gen.writeStringField("containerPosition", pointer.getContainerPosition());
+        gen.writeStringField("containerPositionInSchema", pointer.getContainerPositionInSchema());
+        gen.writeStringField("lastElement", pointer.getLastElement());
+        gen.writeFieldName("isProperty");
+        if (pointer.getIsProperty()==null)
+            gen.writeNull();
+        else
+            gen.writeBoolean(pointer.getIsProperty());
+        gen.writeEndObject();
+    }
+
+    /**
+     * Reads a message, the parser being on its START_OBJECT token or its first FIELD_NAME.
+     */
+    public static Message readMessage (JsonParser parser) throws IOException {
+        MessageDecodeEvent event = new MessageDecodeEvent();
+        event.begin();
+        Message ret = new Message();
+        for (JsonToken token = ChangeStreamReader.firstField(parser); token==JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            JsonToken valueToken = parser.nextToken();
+            switch (field) {
+                case "type" -> ret.setType((valueToken==JsonToken.VALUE_NULL)?null:Message.MessageType.valueOf(parser.getText()));
+                case "sessionId" -> ret.setSessionId(ChangeStreamReader.readString(parser));
+                case "change" -> ret.setChange((valueToken==JsonToken.VALUE_NULL)?null:ChangeStreamReader.readChange(parser));
+                default -> parser.skipChildren();
+            }
+        }
+        event.commitFor("json", ret);
+        return ret;
+    }
+
+    protected static class MessageSerializer extends StdSerializer<Message> {
+        private static final long serialVersionUID = 1L;
+
+        protected MessageSerializer() {
+            super(Message.class);
+        }
+
+        @Override
+        public void serialize(Message message, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("type", (message.getType()==null)?null:message.getType().name());
+            gen.writeStringField("sessionId", message.getSessionId());
+            gen.writeFieldName("change");
+            if (message.getChange()==null)
+                gen.writeNull();
+            else
+                writeChange(gen, message.getChange());
+            gen.writeEndObject();
+        }
+    }
+
+    protected static class MessageDeserializer extends StdDeserializer<Message> {
+        private static final long serialVersionUID = 1L;
+
+        protected MessageDeserializer() {
+            super(Message.class);
+        }
+
+        @Override
+        public Message deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            return readMessage(parser);
+        }
+    }
+
+    protected static class ChangeSerializer extends StdSerializer<Change> {
+        private static final long serialVersionUID = 1L;
+
+        protected ChangeSerializer() {
+            super(Change.class);
+        }
+
+        @Override
+        public void serialize(Change change, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writeChange(gen, change);
+        }
+    }
+
+    protected static class ChangeDeserializer extends StdDeserializer<Change> {
+        private static final long serialVersionUID = 1L;
+
+        protected ChangeDeserializer() {
+            super(Change.class);
+        }
+
+        @Override
+        public Change deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            return ChangeStreamReader.readChange(parser);
+        }
+    }
+
+    protected static class PointerSerializer extends StdSerializer<DontCodeModelPointer> {
+        private static final long serialVersionUID = 1L;
+
+        protected PointerSerializer() {
+            super(DontCodeModelPointer.class);
+        }
+
+        @Override
+        public void serialize(DontCodeModelPointer pointer, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writePointer(gen, pointer);
+        }
+    }
+
+    protected static class PointerDeserializer extends StdDeserializer<DontCodeModelPointer> {
+        private static final long serialVersionUID = 1L;
+
+        protected PointerDeserializer() {
+            super(DontCodeModelPointer.class);
+        }
+
+        @Override
+        public DontCodeModelPointer deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            return ChangeStreamReader.readPointer(parser);
+        }
+    }
+
+    protected static class MapOrStringSerializer extends StdSerializer<MapOrString> {
+        private static final long serialVersionUID = 1L;
+
+        protected MapOrStringSerializer() {
+            super(MapOrString.class);
+        }
+
+        @Override
+        public void serialize(MapOrString value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writeValue(gen, value.getMapOrStringValue());
+        }
+    }
+
+    protected static class MapOrStringDeserializer extends StdDeserializer<MapOrString> {
+        private static final long serialVersionUID = 1L;
+
+        protected MapOrStringDeserializer() {
+            super(MapOrString.class);
+        }
+
+        @Override
+        public MapOrString deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            Object value = ChangeStreamReader.readValue(parser);
+            if ((value==null) || (value instanceof String) || (value instanceof Map<?,?>))
+                return MapOrString.fromObject(value);
+            else if (parser.currentToken().isScalarValue())     // Numbers or booleans are kept as their text
+                return new MapOrString(parser.getText());
+            else
+                throw new RuntimeException("Cannot read a MapOrString from an array at "+parser.currentLocation());
+        }
+    }
+}
@@ -0,0 +1 @@
+package net.dontcode.core.json;
\ No newline at end of file
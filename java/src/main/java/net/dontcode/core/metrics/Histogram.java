@@ -0,0 +1,101 @@
+package net.dontcode.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts values in buckets of powers of 2: bucket n counts values from 2^(n-1) to 2^n-1, and bucket 0 counts 0 (and negative values).
+ * Recording a value is lock free and doesn't allocate. Percentiles are precise to a factor of 2.
+ */
+public class Histogram {
+    protected static final int BUCKETS = 64;
+
+    protected final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder total = new LongAdder();
+    protected final AtomicLong max = new AtomicLong();
+
+    public void record (long value) {
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        if (value>max.get())
+            max.accumulateAndGet(value, Math::max);
+    }
+
+    protected static int bucketOf (long value) {
+        return (value<=0)?0:Math.min(BUCKETS-1, 64-Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * @return the highest value counted in the bucket
+     */
+    protected static long upperBoundOf (int bucket) {
+        return (bucket>=BUCKETS-1)?Long.MAX_VALUE:(1L<<bucket)-1;
+    }
+
+    public long getCount () {
+        return count.sum();
+    }
+
+    public long getTotal () {
+        return total.sum();
+    }
+
+    public long getMax () {
+        return max.get();
+    }
+
+    public double getMean () {
+        long n = count.sum();
+        return (n==0)?0:(double) total.sum()/n;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return a value that at least this percentage of the recorded values are lower than or equal to, or 0 if nothing was recorded
+     */
+    public long getPercentile (double percentile) {
+        long n = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        long rank = (long) Math.ceil(n*percentile/100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if ((seen>=rank) && (seen>0))
+                return Math.min(upperBoundOf(i), getMax());
+        }
+        return 0;
+    }
+
+    /**
+     * Adds the values counted by other to this one
+     */
+    public void add (Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.addAndGet(i, other.buckets.get(i));
+        }
+        count.add(other.count.sum());
+        total.add(other.total.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public void reset () {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count="+getCount()+", mean="+Math.round(getMean())+", p50="+getPercentile(50)+", p99="+getPercentile(99)+", max="+getMax();
+    }
+}
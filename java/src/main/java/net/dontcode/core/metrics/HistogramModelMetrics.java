@@ -0,0 +1,115 @@
+package net.dontcode.core.metrics;
+
+import net.dontcode.core.Change;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the measures of model operations in Histograms:
+ *  - Latencies in nanoseconds, by operation and type of change,
+ *  - Sizes of the maps the operations worked on,
+ *  - Counts of elements created by findAtPosition and of ignored changes.
+ */
+public class HistogramModelMetrics implements ModelMetrics {
+    protected static final Change.ChangeType[] TYPES = Change.ChangeType.values();
+
+    /**
+     * By operation, then by type of change. The last one is for operations without change.
+     */
+    protected final Histogram[][] latencies = new Histogram[Operation.values().length][TYPES.length+1];
+    protected final Histogram[] containerSizes = new Histogram[Operation.values().length];
+    protected final LongAdder createdOnFind = new LongAdder();
+    protected final LongAdder[] warnings = new LongAdder[Warning.values().length];
+
+    public HistogramModelMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            for (int j = 0; j < latencies[i].length; j++) {
+                latencies[i][j] = new Histogram();
+            }
+            containerSizes[i] = new Histogram();
+        }
+        for (int i = 0; i < warnings.length; i++) {
+            warnings[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void recordLatency(Operation operation, Change.ChangeType type, long nanos) {
+        latencies[operation.ordinal()][(type==null)?TYPES.length:type.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void recordContainerSize(Operation operation, int size) {
+        containerSizes[operation.ordinal()].record(size);
+    }
+
+    @Override
+    public void recordCreatedOnFind(int count) {
+        createdOnFind.add(count);
+    }
+
+    @Override
+    public void recordWarning(Warning warning) {
+        warnings[warning.ordinal()].increment();
+    }
+
+    /**
+     * @param operation
+     * @param type the type of change, or null for operations not applying a change
+     * @return the latencies in nanoseconds
+     */
+    public Histogram getLatency (Operation operation, Change.ChangeType type) {
+        return latencies[operation.ordinal()][(type==null)?TYPES.length:type.ordinal()];
+    }
+
+    /**
+     * @return the latencies of the operation for all types of change
+     */
+    public Histogram getLatency (Operation operation) {
+        Histogram ret = new Histogram();
+        for (Histogram byType: latencies[operation.ordinal()]) {
+            ret.add(byType);
+        }
+        return ret;
+    }
+
+    public Histogram getContainerSize (Operation operation) {
+        return containerSizes[operation.ordinal()];
+    }
+
+    public long getCreatedOnFind () {
+        return createdOnFind.sum();
+    }
+
+    public long getWarnings (Warning warning) {
+        return warnings[warning.ordinal()].sum();
+    }
+
+    public void reset () {
+        for (int i = 0; i < latencies.length; i++) {
+            for (Histogram histogram: latencies[i]) {
+                histogram.reset();
+            }
+            containerSizes[i].reset();
+        }
+        createdOnFind.reset();
+        for (LongAdder warning: warnings) {
+            warning.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder ret = new StringBuilder();
+        for (Operation operation: Operation.values()) {
+            Histogram latency = getLatency(operation);
+            if (latency.getCount()>0)
+                ret.append(operation).append(": ").append(latency).append(" ns, size ").append(getContainerSize(operation)).append('\n');
+        }
+        ret.append("createdOnFind=").append(getCreatedOnFind());
+        for (Warning warning: Warning.values()) {
+            ret.append(", ").append(warning).append('=').append(getWarnings(warning));
+        }
+        return ret.toString();
+    }
+}
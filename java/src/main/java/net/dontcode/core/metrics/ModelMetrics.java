@@ -0,0 +1,63 @@
+package net.dontcode.core.metrics;
+
+import net.dontcode.core.Change;
+
+/**
+ * Receives measures of the operations done on models. Install one with Models.setMetrics().
+ * By default, NONE is installed and operations are not measured at all: they only compare the installed metrics with NONE.
+ * Implementations are called by all threads modifying models, so they must be thread safe and fast.
+ */
+public interface ModelMetrics {
+    ModelMetrics NONE = new ModelMetrics() {
+    };
+
+    enum Operation {
+        /**
+         * Models.applyChange, and each change applied by Models.applyChanges
+         */
+        APPLY_CHANGE,
+        /**
+         * Models.findAtPosition
+         */
+        FIND_AT_POSITION,
+        /**
+         * MapOrString.mapInsert
+         */
+        MAP_INSERT
+    }
+
+    enum Warning {
+        /**
+         * A MOVE without value nor oldPosition was ignored
+         */
+        MOVE_WITHOUT_VALUE,
+        /**
+         * A change without value, other than MOVE or DELETE, was ignored
+         */
+        MISSING_VALUE
+    }
+
+    /**
+     * @param operation
+     * @param type the type of the change applied, or null if the operation doesn't apply a change
+     * @param nanos the duration of the operation
+     */
+    default void recordLatency (Operation operation, Change.ChangeType type, long nanos) {
+    }
+
+    /**
+     * @param operation
+     * @param size number of elements of the map the operation worked on
+     */
+    default void recordContainerSize (Operation operation, int size) {
+    }
+
+    /**
+     * @param count number of missing elements created by findAtPosition
+     */
+    default void recordCreatedOnFind (int count) {
+    }
+
+    default void recordWarning (Warning warning) {
+    }
+}
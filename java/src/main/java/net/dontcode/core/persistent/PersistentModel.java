@@ -0,0 +1,177 @@
+package net.dontcode.core.persistent;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.ModelPath;
+import net.dontcode.core.Models;
+import net.dontcode.core.OrderedModelMap;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable version of an application model.
+ * Applying a change returns a new PersistentModel that shares all the elements not touched by the change with the previous one,
+ * so keeping a snapshot of a model costs nothing, and snapshots can be read by any thread.
+ *
+ * Elements are ordered arrays copied on write instead of hash tries, as it keeps the order of keys.
+ * Their values are split in chunks and their index is shared between versions, so that updating an element of a wide container
+ * (like thousands of entities) only copies a chunk of it. Adding an element at the end copies its keys and index, but not its values,
+ * whereas removing or reordering elements copies the whole container (see PersistentModelBenchmark).
+ */
+public final class PersistentModel {
+    public static final PersistentModel EMPTY = new PersistentModel(PersistentModelNode.EMPTY);
+
+    private final PersistentModelNode root;
+
+    private PersistentModel(PersistentModelNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Creates a persistent model with a copy of the content
+     * @param content
+     * @return
+     */
+    public static PersistentModel of(Map<String, Object> content) {
+        if (content == null)
+            return EMPTY;
+        return new PersistentModel(PersistentModelNode.freeze(content));
+    }
+
+    public PersistentModelNode getRoot() {
+        return root;
+    }
+
+    /**
+     * @return a read only view of the model
+     */
+    public MapOrString asMapOrString() {
+        return new MapOrString(root);
+    }
+
+    public MapOrString find(String position) {
+        return asMapOrString().find(position);
+    }
+
+    /**
+     * @return a mutable copy of the whole model
+     */
+    public MapOrString toMutable() {
+        return new MapOrString(Models.asMap(ModelMap.toModelValue(root)));
+    }
+
+    /**
+     * Applies the change like Models.applyChange() and returns the new version of the model. This one is not modified.
+     * @param toApply
+     * @return
+     */
+    public PersistentModel applyChange(Change toApply) {
+        OrderedModelMap mutableRoot = thaw(root);
+        prepareFor(mutableRoot, toApply);
+        Models.applyChange(new MapOrString(mutableRoot), toApply);
+        return new PersistentModel(PersistentModelNode.freeze(mutableRoot));
+    }
+
+    /**
+     * Applies the changes in order and returns the new version of the model. This one is not modified.
+     * @param changes
+     * @return
+     */
+    public PersistentModel applyChanges(List<Change> changes) {
+        OrderedModelMap mutableRoot = thaw(root);
+        MapOrString mutable = new MapOrString(mutableRoot);
+        // Each change must be prepared on the result of the previous ones, so they are applied one by one
+        for (Change change : changes) {
+            prepareFor(mutableRoot, change);
+            Models.applyChange(mutable, change);
+        }
+        return new PersistentModel(PersistentModelNode.freeze(mutableRoot));
+    }
+
+    /**
+     * Makes mutable all the elements that the change can modify: the parents of its position (and old position for a MOVE),
+     * and the elements of its position that its value will be merged into.
+     * @param mutableRoot
+     * @param change
+     */
+    protected static void prepareFor(Map<String, Object> mutableRoot, Change change) {
+        ModelPath path = ModelPath.of(change.getPosition());
+        Object merged = change.getValue();
+        if ((merged == null) && (change.getOldPosition() != null) && (!change.getOldPosition().equals(change.getPosition()))) {
+            // A MOVE merges the content of the old position
+            merged = Models.findAtPosition(mutableRoot, change.getOldPosition(), false);
+        }
+
+        Map<String, Object> parent = thawPath(mutableRoot, path.getParent());
+        if (parent != null) {
+            if (path.getLastElement().isEmpty()) {
+                // Like Models, an empty last element (root or "/") targets the parent itself
+                thawMerged(parent, merged);
+            } else {
+                thawMerged(parent, path.getLastElement(), merged);
+            }
+        }
+
+        if (change.getOldPosition() != null) {
+            thawPath(mutableRoot, ModelPath.of(change.getOldPosition()).getParent());
+        }
+    }
+
+    /**
+     * Makes mutable all the elements down to the position
+     * @return the mutable element at the position, or null if it doesn't exist or is not a map
+     */
+    protected static Map<String, Object> thawPath(Map<String, Object> mutableRoot, ModelPath path) {
+        Map<String, Object> cur = mutableRoot;
+        if (path == null)
+            return cur;
+        for (int i = 0; i < path.size(); i++) {
+            cur = thawChild(cur, path.element(i));
+            if (cur == null)
+                return null;
+        }
+        return cur;
+    }
+
+    /**
+     * @return the mutable child, or null if it's not a map
+     */
+    protected static Map<String, Object> thawChild(Map<String, Object> parent, String key) {
+        Object child = parent.get(key);
+        if (child instanceof PersistentModelNode) {
+            OrderedModelMap ret = thaw((PersistentModelNode) child);
+            parent.put(key, ret);
+            return ret;
+        } else if ((child instanceof TransientNode) || (child instanceof ModelMap)) {
+            // Already thawed, or added by a previous change
+            return Models.asMap(child);
+        } else
+            return null;
+    }
+
+    protected static void thawMerged(Map<String, Object> parent, String key, Object value) {
+        if (value instanceof Map<?, ?>) {
+            Map<String, Object> child = thawChild(parent, key);
+            if (child != null) {
+                thawMerged(child, value);
+            }
+        }
+    }
+
+    protected static void thawMerged(Map<String, Object> element, Object value) {
+        if (value instanceof Map<?, ?>) {
+            for (Map.Entry<String, Object> subValue : Models.asMap(value).entrySet()) {
+                thawMerged(element, subValue.getKey(), subValue.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return a mutable view of the node, whose children are still the immutable ones. The node is only copied when frozen.
+     */
+    protected static OrderedModelMap thaw(PersistentModelNode node) {
+        return new TransientNode(node);
+    }
+}
@@ -0,0 +1,234 @@
+package net.dontcode.core.persistent;
+
+import net.dontcode.core.Models;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable element of a PersistentModel: an ordered map whose values are Strings or other PersistentModelNodes.
+ * Any attempt to modify it throws an UnsupportedOperationException.
+ *
+ * Values are stored in chunks of CHUNK_SIZE, so that a new version replacing some values only copies their chunks,
+ * and shares its keys and index with the previous one. Adding keys copies the keys and the index, but not the values.
+ */
+public final class PersistentModelNode extends AbstractMap<String, Object> {
+    /**
+     * Above this number of elements, a hash index is used instead of scanning the keys
+     */
+    static final int INDEX_THRESHOLD = 8;
+    static final int CHUNK_SHIFT = 5;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    public static final PersistentModelNode EMPTY = new PersistentModelNode(new String[0], new Object[0][], null);
+
+    private final String[] keys;
+    private final Object[][] chunks;
+    /**
+     * Open addressing table of the positions of keys plus one, 0 being an empty slot. Shared between versions with the same keys.
+     */
+    private final int[] index;
+
+    private PersistentModelNode(String[] keys, Object[][] chunks, int[] index) {
+        this.keys = keys;
+        this.chunks = chunks;
+        this.index = index;
+    }
+
+    private PersistentModelNode(String[] keys, Object[][] chunks) {
+        this(keys, chunks, (keys.length > INDEX_THRESHOLD) ? newIndex(keys) : null);
+    }
+
+    /**
+     * Converts the value into an immutable one. Strings and PersistentModelNodes are returned as is, whereas Maps are copied.
+     * The elements of a PersistentModel being edited only copy what has been modified.
+     * @param value a String, a Map or null
+     * @return
+     */
+    public static Object freeze(Object value) {
+        if ((value instanceof PersistentModelNode) || !(value instanceof Map<?, ?>)) {
+            return value;
+        }
+        if (value instanceof TransientNode) {
+            return ((TransientNode) value).freeze();
+        }
+
+        Map<String, Object> map = Models.asMap(value);
+        if (map.isEmpty())
+            return EMPTY;
+        String[] keys = new String[map.size()];
+        Object[][] chunks = newChunks(keys.length);
+        int i = 0;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            keys[i] = entry.getKey();
+            chunks[i >>> CHUNK_SHIFT][i & (CHUNK_SIZE - 1)] = freeze(entry.getValue());
+            i++;
+        }
+        return new PersistentModelNode(keys, chunks);
+    }
+
+    public static PersistentModelNode freeze(Map<String, Object> map) {
+        return (PersistentModelNode) freeze((Object) map);
+    }
+
+    /**
+     * Creates the next version of this node
+     * @param replaced the new values of existing keys
+     * @param appended the keys and values to add at the end
+     * @return the new node, sharing the unmodified chunks, and the keys and index if nothing is appended
+     */
+    PersistentModelNode with(Map<String, Object> replaced, Map<String, Object> appended) {
+        int size = keys.length + appended.size();
+        Object[][] newChunks = Arrays.copyOf(chunks, (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        for (Map.Entry<String, Object> entry : replaced.entrySet()) {
+            int pos = indexOf(entry.getKey());
+            int chunk = pos >>> CHUNK_SHIFT;
+            if (newChunks[chunk] == chunks[chunk])
+                newChunks[chunk] = newChunks[chunk].clone();
+            newChunks[chunk][pos & (CHUNK_SIZE - 1)] = freeze(entry.getValue());
+        }
+        if (appended.isEmpty())
+            return new PersistentModelNode(keys, newChunks, index);
+
+        String[] newKeys = Arrays.copyOf(keys, size);
+        int pos = keys.length;
+        for (Map.Entry<String, Object> entry : appended.entrySet()) {
+            int chunk = pos >>> CHUNK_SHIFT;
+            if (newChunks[chunk] == null)
+                newChunks[chunk] = new Object[Math.min(CHUNK_SIZE, size - (chunk << CHUNK_SHIFT))];
+            else if (newChunks[chunk].length < CHUNK_SIZE)
+                newChunks[chunk] = Arrays.copyOf(newChunks[chunk], Math.min(CHUNK_SIZE, size - (chunk << CHUNK_SHIFT)));
+            newKeys[pos] = entry.getKey();
+            newChunks[chunk][pos & (CHUNK_SIZE - 1)] = freeze(entry.getValue());
+            pos++;
+        }
+        return new PersistentModelNode(newKeys, newChunks, appendTo(index, newKeys, keys.length));
+    }
+
+    protected static Object[][] newChunks(int size) {
+        Object[][] ret = new Object[(size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT][];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = new Object[Math.min(CHUNK_SIZE, size - (i << CHUNK_SHIFT))];
+        }
+        return ret;
+    }
+
+    /**
+     * @return the index of the keys, filled at less than half its capacity
+     */
+    protected static int[] newIndex(String[] keys) {
+        int capacity = INDEX_THRESHOLD * 2;
+        while (capacity < keys.length * 2)
+            capacity *= 2;
+        return fill(new int[capacity], keys, 0);
+    }
+
+    /**
+     * @return a copy of the index with the keys from the given position added, or a new one if it would be too full
+     */
+    protected static int[] appendTo(int[] index, String[] keys, int from) {
+        if (keys.length <= INDEX_THRESHOLD)
+            return null;
+        if ((index == null) || (index.length < keys.length * 2))
+            return newIndex(keys);
+        return fill(index.clone(), keys, from);
+    }
+
+    protected static int[] fill(int[] index, String[] keys, int from) {
+        int mask = index.length - 1;
+        for (int pos = from; pos < keys.length; pos++) {
+            int slot = slotOf(keys[pos], mask);
+            while (index[slot] != 0)
+                slot = (slot + 1) & mask;
+            index[slot] = pos + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Spreads the hash codes like ModelMap, as generated keys have close ones
+     */
+    protected static int slotOf(Object key, int mask) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    protected int indexOf(Object key) {
+        if (key == null)
+            return -1;
+        if (index != null) {
+            int mask = index.length - 1;
+            for (int slot = slotOf(key, mask); index[slot] != 0; slot = (slot + 1) & mask) {
+                String found = keys[index[slot] - 1];
+                if ((found == key) || (found.equals(key)))
+                    return index[slot] - 1;
+            }
+            return -1;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) != -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int found = indexOf(key);
+        return (found == -1) ? null : valueAt(found);
+    }
+
+    public String keyAt(int pos) {
+        return keys[pos];
+    }
+
+    public Object valueAt(int pos) {
+        return chunks[pos >>> CHUNK_SHIFT][pos & (CHUNK_SIZE - 1)];
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= keys.length)
+                            throw new NoSuchElementException();
+                        Entry<String, Object> ret = new SimpleImmutableEntry<>(keys[next], valueAt(next));
+                        next++;
+                        return ret;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,189 @@
+package net.dontcode.core.persistent;
+
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.OrderedModelMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A mutable view of a PersistentModelNode, used while changes are applied to a PersistentModel.
+ * Replaced values and keys added at the end are kept aside, so that freezing it only copies the modified chunks of the node.
+ * Other modifications (removing or reordering keys) copy the node into a ModelMap, as they change the position of all the following keys.
+ */
+final class TransientNode extends AbstractMap<String, Object> implements OrderedModelMap {
+    private final PersistentModelNode base;
+    private HashMap<String, Object> replaced;
+    private ModelMap appended;
+    /**
+     * The whole content once a key is removed or moved, null until then
+     */
+    private ModelMap rebuilt;
+
+    TransientNode(PersistentModelNode base) {
+        this.base = base;
+    }
+
+    /**
+     * @return the new version of the node
+     */
+    PersistentModelNode freeze() {
+        if (rebuilt != null)
+            return PersistentModelNode.freeze(rebuilt);
+        if ((replaced == null) && ((appended == null) || (appended.isEmpty())))
+            return base;
+        return base.with((replaced == null) ? Map.of() : replaced, (appended == null) ? Map.of() : appended);
+    }
+
+    private ModelMap rebuild() {
+        if (rebuilt == null) {
+            ModelMap content = new ModelMap();
+            for (Entry<String, Object> entry : entrySet()) {
+                content.put(entry.getKey(), entry.getValue());
+            }
+            rebuilt = content;
+            replaced = null;
+            appended = null;
+        }
+        return rebuilt;
+    }
+
+    @Override
+    public int size() {
+        if (rebuilt != null)
+            return rebuilt.size();
+        return base.size() + ((appended == null) ? 0 : appended.size());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (rebuilt != null)
+            return rebuilt.containsKey(key);
+        return (base.indexOf(key) != -1) || ((appended != null) && (appended.containsKey(key)));
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (rebuilt != null)
+            return rebuilt.get(key);
+        int pos = base.indexOf(key);
+        if (pos == -1)
+            return (appended == null) ? null : appended.get(key);
+        return valueAt(pos);
+    }
+
+    private Object valueAt(int pos) {
+        if (replaced != null) {
+            String key = base.keyAt(pos);
+            Object found = replaced.get(key);
+            if ((found != null) || (replaced.containsKey(key)))
+                return found;
+        }
+        return base.valueAt(pos);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (rebuilt != null)
+            return rebuilt.put(key, value);
+        int pos = base.indexOf(key);
+        if (pos == -1) {
+            if (appended == null)
+                appended = new ModelMap();
+            return appended.put(key, value);
+        }
+        Object old = valueAt(pos);
+        if (replaced == null)
+            replaced = new HashMap<>();
+        replaced.put(base.keyAt(pos), value);
+        return old;
+    }
+
+    @Override
+    public void putBefore(String key, Object value, String beforeKey) {
+        if (rebuilt == null) {
+            if (base.indexOf(key) == -1) {
+                if ((beforeKey == null) || (base.indexOf(beforeKey) == -1)) {
+                    if (appended == null)
+                        appended = new ModelMap();
+                    appended.putBefore(key, value, beforeKey);
+                    return;
+                }
+            } else if ((key.equals(beforeKey)) || (Objects.equals(beforeKey, nextKey(key)))) {
+                // The key stays at its place
+                put(key, value);
+                return;
+            }
+        }
+        rebuild().putBefore(key, value, beforeKey);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if ((rebuilt == null) && (base.indexOf(key) == -1))
+            return (appended == null) ? null : appended.remove(key);
+        return rebuild().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        rebuilt = new ModelMap();
+        replaced = null;
+        appended = null;
+    }
+
+    @Override
+    public String nextKey(String key) {
+        if (rebuilt != null)
+            return rebuilt.nextKey(key);
+        int pos = base.indexOf(key);
+        if (pos == -1)
+            return (appended == null) ? null : appended.nextKey(key);
+        if (pos + 1 < base.size())
+            return base.keyAt(pos + 1);
+        return (appended == null) ? null : appended.firstKey();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (rebuilt != null)
+            return rebuilt.entrySet();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    int next = 0;
+                    final Iterator<Entry<String, Object>> appendedIterator = (appended == null) ? null : appended.entrySet().iterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        return (next < base.size()) || ((appendedIterator != null) && (appendedIterator.hasNext()));
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next < base.size()) {
+                            Entry<String, Object> ret = new SimpleImmutableEntry<>(base.keyAt(next), valueAt(next));
+                            next++;
+                            return ret;
+                        }
+                        if (appendedIterator == null)
+                            throw new NoSuchElementException();
+                        return appendedIterator.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return TransientNode.this.size();
+            }
+        };
+    }
+}
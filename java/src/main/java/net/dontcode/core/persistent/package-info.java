@@ -0,0 +1 @@
+package net.dontcode.core.persistent;
\ No newline at end of file
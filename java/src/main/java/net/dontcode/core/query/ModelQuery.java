@@ -0,0 +1,495 @@
+package net.dontcode.core.query;
+
+import net.dontcode.core.BoundedCache;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A query on models, written in the subset of JSONPath used by dont-code:
+ *  - $ for the root, .name or ['name'] for a property, .* or [*] for all children, ..name for all descendants with this name,
+ *  - [?(@.name==='value')] for the children whose property equals (or with != differs from) a value, [?(@.name)] for those having the property.
+ *
+ * A query is compiled once into a plan that can be used on any number of models, by any number of threads.
+ * Results are streamed: children are only looked at when the previous results have been consumed.
+ */
+public class ModelQuery {
+    protected static final int MAX_CACHED_QUERIES = 1024;
+    protected static final BoundedCache<String, ModelQuery> cache = new BoundedCache<>(MAX_CACHED_QUERIES);
+
+    protected final String query;
+    protected final Step[] steps;
+
+    protected ModelQuery(String query, Step[] steps) {
+        this.query = query;
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles the query, or returns the plan already compiled for it
+     * @param query
+     * @return the plan
+     */
+    public static ModelQuery compile (String query) {
+        return cache.computeIfAbsent(query, toCompile -> new ModelQuery(toCompile, new Parser(toCompile).parse()));
+    }
+
+    /**
+     * Equivalent of queryModelToArray() of the TypeScript DontCodeModelManager
+     * @param model
+     * @param query
+     * @return the values found, the elements of the values that are lists being returned instead of the lists
+     */
+    public static List<Object> queryModelToArray (MapOrString model, String query) {
+        return compile(query).toArray(model, null);
+    }
+
+    public static List<Object> queryModelToArray (MapOrString model, String query, String position) {
+        return compile(query).toArray(model, position);
+    }
+
+    /**
+     * Equivalent of queryModelToSingle() of the TypeScript DontCodeModelManager
+     * @param model
+     * @param query
+     * @return the element found, or null if none
+     */
+    public static ModelQueryResult queryModelToSingle (MapOrString model, String query) {
+        return compile(query).single(model, null);
+    }
+
+    public static ModelQueryResult queryModelToSingle (MapOrString model, String query, String position) {
+        return compile(query).single(model, position);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @param model
+     * @param position if not null, the query is run on the element at this position
+     * @return a lazy stream of the elements found, with their pointer relative to the element at position, like in TypeScript
+     */
+    public Stream<ModelQueryResult> stream (MapOrString model, String position) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(model, position), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public Stream<ModelQueryResult> stream (MapOrString model) {
+        return stream(model, null);
+    }
+
+    public Iterator<ModelQueryResult> iterator (MapOrString model, String position) {
+        ModelQueryResult root;
+        if ((position==null) || (position.isEmpty())) {
+            root = new ModelQueryResult("", model.getMapOrStringValue());
+        } else {
+            MapOrString found = Models.findAtPosition(model, position, false);
+            if (found==null)
+                return Collections.emptyIterator();
+            root = new ModelQueryResult("", found.getMapOrStringValue());
+        }
+        return new Results(root);
+    }
+
+    /**
+     * Like JSONPath in TypeScript, lists found are flattened: their elements are returned instead of them
+     */
+    public List<Object> toArray (MapOrString model, String position) {
+        List<Object> ret = new ArrayList<>();
+        for (Iterator<ModelQueryResult> it = iterator(model, position); it.hasNext();) {
+            Object value = it.next().value();
+            if (value instanceof List<?> list)
+                ret.addAll(list);
+            else
+                ret.add(value);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the only element found, or null if none
+     * @throws RuntimeException if multiple elements are found
+     */
+    public ModelQueryResult single (MapOrString model, String position) {
+        Iterator<ModelQueryResult> it = iterator(model, position);
+        if (!it.hasNext())
+            return null;
+        ModelQueryResult ret = it.next();
+        if (it.hasNext())
+            throw new RuntimeException("Multiple results returned by queryModelToSingle with path "+query);
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return query;
+    }
+
+    /**
+     * Walks the model depth first, with one iterator of candidates per step being evaluated
+     */
+    protected class Results implements Iterator<ModelQueryResult> {
+        protected final ArrayDeque<Iterator<ModelQueryResult>> candidates = new ArrayDeque<>();
+        protected ModelQueryResult next;
+
+        protected Results(ModelQueryResult root) {
+            candidates.push(Collections.singletonList(root).iterator());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ((next==null) && (!candidates.isEmpty())) {
+                Iterator<ModelQueryResult> top = candidates.peek();
+                if (!top.hasNext()) {
+                    candidates.pop();
+                    continue;
+                }
+                ModelQueryResult candidate = top.next();
+                // The size of the stack tells which step selected the candidate
+                int stepIndex = candidates.size()-1;
+                if (stepIndex==steps.length)
+                    next = candidate;
+                else
+                    candidates.push(steps[stepIndex].select(candidate));
+            }
+            return next!=null;
+        }
+
+        @Override
+        public ModelQueryResult next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ModelQueryResult ret = next;
+            next = null;
+            return ret;
+        }
+    }
+
+    /**
+     * Selects the elements matching a part of the query from one element
+     */
+    protected interface Step {
+        Iterator<ModelQueryResult> select (ModelQueryResult from);
+    }
+
+    protected static String childPointer (String parent, String key) {
+        return parent.isEmpty()?key:parent+'/'+key;
+    }
+
+    /**
+     * Lazily iterates over the children of an element
+     */
+    protected static Iterator<ModelQueryResult> children (ModelQueryResult from) {
+        if (from.value() instanceof Map<?,?> map) {
+            Iterator<? extends Map.Entry<?, ?>> entries = map.entrySet().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public ModelQueryResult next() {
+                    Map.Entry<?, ?> entry = entries.next();
+                    return new ModelQueryResult(childPointer(from.pointer(), entry.getKey().toString()), entry.getValue());
+                }
+            };
+        } else if (from.value() instanceof List<?> list) {
+            Iterator<?> elements = list.iterator();
+            return new Iterator<>() {
+                int index = 0;
+                @Override
+                public boolean hasNext() {
+                    return elements.hasNext();
+                }
+
+                @Override
+                public ModelQueryResult next() {
+                    return new ModelQueryResult(childPointer(from.pointer(), String.valueOf(index++)), elements.next());
+                }
+            };
+        }
+        return Collections.emptyIterator();
+    }
+
+    protected static Object propertyOf (Object value, String name) {
+        if (value instanceof Map<?,?> map)
+            return map.get(name);
+        if (value instanceof List<?> list) {
+            try {
+                int index = Integer.parseInt(name);
+                return ((index>=0) && (index<list.size()))?list.get(index):null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    protected record PropertyStep(String name) implements Step {
+        @Override
+        public Iterator<ModelQueryResult> select(ModelQueryResult from) {
+            Object found = propertyOf(from.value(), name);
+            if (found==null)
+                return Collections.emptyIterator();
+            return Collections.singletonList(new ModelQueryResult(childPointer(from.pointer(), name), found)).iterator();
+        }
+    }
+
+    protected record WildcardStep() implements Step {
+        @Override
+        public Iterator<ModelQueryResult> select(ModelQueryResult from) {
+            return children(from);
+        }
+    }
+
+    /**
+     * Selects the element and all its descendants, depth first
+     */
+    protected record DescendantsStep() implements Step {
+        @Override
+        public Iterator<ModelQueryResult> select(ModelQueryResult from) {
+            return new Iterator<>() {
+                final ArrayDeque<Iterator<ModelQueryResult>> toVisit = new ArrayDeque<>(List.of(Collections.singletonList(from).iterator()));
+
+                @Override
+                public boolean hasNext() {
+                    while ((!toVisit.isEmpty()) && (!toVisit.peek().hasNext()))
+                        toVisit.pop();
+                    return !toVisit.isEmpty();
+                }
+
+                @Override
+                public ModelQueryResult next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    ModelQueryResult ret = toVisit.peek().next();
+                    toVisit.push(children(ret));
+                    return ret;
+                }
+            };
+        }
+    }
+
+    /**
+     * Selects the children having the property, or whose property equals (or differs from) the value
+     */
+    protected record FilterStep(String property, boolean equals, Object value) implements Step {
+        @Override
+        public Iterator<ModelQueryResult> select(ModelQueryResult from) {
+            Iterator<ModelQueryResult> children = children(from);
+            return new Iterator<>() {
+                ModelQueryResult next;
+
+                @Override
+                public boolean hasNext() {
+                    while ((next==null) && (children.hasNext())) {
+                        ModelQueryResult child = children.next();
+                        if (matches(child.value()))
+                            next = child;
+                    }
+                    return next!=null;
+                }
+
+                @Override
+                public ModelQueryResult next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    ModelQueryResult ret = next;
+                    next = null;
+                    return ret;
+                }
+            };
+        }
+
+        protected boolean matches (Object child) {
+            if (!(child instanceof Map<?,?>) && !(child instanceof List<?>))
+                return false;
+            Object found = propertyOf(child, property);
+            if (value==null)
+                return found!=null;
+            boolean same;
+            if ((found==null) || (found instanceof Map<?,?>) || (found instanceof List<?>)) {
+                same = false;
+            } else if (value instanceof Number number) {
+                try {
+                    same = Double.parseDouble(found.toString())==number.doubleValue();
+                } catch (NumberFormatException e) {
+                    same = false;
+                }
+            } else {
+                same = value.equals(found.toString());
+            }
+            return same==equals;
+        }
+    }
+
+    /**
+     * Parses the JSONPath query into steps
+     */
+    protected static class Parser {
+        protected final String query;
+        protected int pos;
+
+        protected Parser(String query) {
+            this.query = query.trim();
+        }
+
+        protected Step[] parse () {
+            List<Step> steps = new ArrayList<>();
+            if (query.startsWith("$") || query.startsWith("@"))
+                pos = 1;
+            while (pos<query.length()) {
+                char c = query.charAt(pos);
+                if (c=='.') {
+                    pos++;
+                    if ((pos<query.length()) && (query.charAt(pos)=='.')) {
+                        pos++;
+                        steps.add(new DescendantsStep());
+                        if ((pos<query.length()) && (query.charAt(pos)=='['))
+                            continue;
+                    }
+                    steps.add(nameStep(readName()));
+                } else if (c=='[') {
+                    pos++;
+                    steps.add(bracketStep());
+                } else if (steps.isEmpty() && (pos==0)) {
+                    // A relative query without $ or @
+                    steps.add(nameStep(readName()));
+                } else {
+                    throw error("Unexpected character "+c);
+                }
+            }
+            return steps.toArray(new Step[0]);
+        }
+
+        protected Step nameStep (String name) {
+            if (name.isEmpty())
+                throw error("Missing property name");
+            return name.equals("*")?new WildcardStep():new PropertyStep(name);
+        }
+
+        protected String readName () {
+            int start = pos;
+            while ((pos<query.length()) && (query.charAt(pos)!='.') && (query.charAt(pos)!='['))
+                pos++;
+            return query.substring(start, pos);
+        }
+
+        protected Step bracketStep () {
+            Step ret;
+            char c = peek();
+            if (c=='*') {
+                pos++;
+                ret = new WildcardStep();
+            } else if ((c=='\'') || (c=='"')) {
+                ret = new PropertyStep(readQuoted());
+            } else if (c=='?') {
+                pos++;
+                expect('(');
+                ret = filterStep();
+                expect(')');
+            } else {
+                int start = pos;
+                while ((pos<query.length()) && (query.charAt(pos)!=']'))
+                    pos++;
+                ret = new PropertyStep(query.substring(start, pos).trim());
+            }
+            expect(']');
+            return ret;
+        }
+
+        protected Step filterStep () {
+            skipSpaces();
+            expect('@');
+            String property;
+            if (peek()=='.') {
+                pos++;
+                int start = pos;
+                while ((pos<query.length()) && (Character.isJavaIdentifierPart(query.charAt(pos))))
+                    pos++;
+                property = query.substring(start, pos);
+            } else {
+                expect('[');
+                property = readQuoted();
+                expect(']');
+            }
+            skipSpaces();
+            if (peek()==')')
+                return new FilterStep(property, true, null);
+
+            boolean equals;
+            if (query.startsWith("===", pos) || query.startsWith("!==", pos)) {
+                equals = query.charAt(pos)=='=';
+                pos += 3;
+            } else if (query.startsWith("==", pos) || query.startsWith("!=", pos)) {
+                equals = query.charAt(pos)=='=';
+                pos += 2;
+            } else {
+                throw error("Unsupported filter");
+            }
+            skipSpaces();
+            Object value;
+            char c = peek();
+            if ((c=='\'') || (c=='"')) {
+                value = readQuoted();
+            } else {
+                int start = pos;
+                while ((pos<query.length()) && (query.charAt(pos)!=')') && (!Character.isWhitespace(query.charAt(pos))))
+                    pos++;
+                String literal = query.substring(start, pos);
+                try {
+                    value = Double.valueOf(literal);
+                } catch (NumberFormatException e) {
+                    // true or false are compared as text
+                    value = literal;
+                }
+            }
+            skipSpaces();
+            return new FilterStep(property, equals, value);
+        }
+
+        protected String readQuoted () {
+            char quote = query.charAt(pos++);
+            int end = query.indexOf(quote, pos);
+            if (end==-1)
+                throw error("Missing closing quote");
+            String ret = query.substring(pos, end);
+            pos = end+1;
+            return ret;
+        }
+
+        protected char peek () {
+            if (pos>=query.length())
+                throw error("Unexpected end");
+            return query.charAt(pos);
+        }
+
+        protected void expect (char c) {
+            if (peek()!=c)
+                throw error("Expected "+c);
+            pos++;
+        }
+
+        protected void skipSpaces () {
+            while ((pos<query.length()) && (Character.isWhitespace(query.charAt(pos))))
+                pos++;
+        }
+
+        protected RuntimeException error (String reason) {
+            return new RuntimeException("Cannot parse query "+query+" at "+pos+": "+reason);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package net.dontcode.core.query;
+
+/**
+ * An element found by a query
+ * @param pointer the position of the element, like "creation/entities/a", relative to the element the query is run on
+ * @param value the element itself, not a copy
+ */
+public record ModelQueryResult(String pointer, Object value) {
+}
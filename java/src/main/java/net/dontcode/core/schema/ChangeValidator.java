@@ -0,0 +1,230 @@
+package net.dontcode.core.schema;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.Message;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that changes follow the schema before they are applied:
+ *  - Their position (and oldPosition for a MOVE) must exist in the schema,
+ *  - Their value must only have properties defined in the schema, with values of the right type or in the enum.
+ * Values added to enums by DontCodeSchemaManager.registerChanges() are accepted, even after the validator is created.
+ *
+ * The schema is compiled once into a tree of checks, so validating a change only walks its position and its value, never the schema or the model.
+ */
+public class ChangeValidator {
+    protected final Check root;
+
+    public ChangeValidator() {
+        this(DontCodeSchemaManager.getDefault());
+    }
+
+    public ChangeValidator(DontCodeSchemaManager schemaManager) {
+        this.root = compile(schemaManager, schemaManager.getSchema(), "", 0);
+    }
+
+    /**
+     * @param message
+     * @return the message if it's valid, or an ERROR message with the change whose value is the reason of the rejection
+     */
+    public Message validate (Message message) {
+        if ((message.getType()!= Message.MessageType.CHANGE) || (message.getChange()==null))
+            return message;
+        String reason = check(message.getChange());
+        if (reason==null)
+            return message;
+        Change change = message.getChange();
+        return new Message(Message.MessageType.ERROR, message.getSessionId(),
+                new Change(change.getType(), change.getPosition(), reason, change.getPointer(), change.getOldPosition(), change.getBeforeKey()));
+    }
+
+    /**
+     * @param change
+     * @return null if the change is valid, otherwise the reason why it's not
+     */
+    public String check (Change change) {
+        if (change.getPosition()==null)
+            return "Missing position";
+        Check target = locate(change.getPosition());
+        if (target==null)
+            return "Position "+change.getPosition()+" doesn't exist in the schema";
+
+        switch (change.getType()) {
+            case DELETE:
+                return null;
+            case MOVE:
+                // Without value nor oldPosition, like sent by the TypeScript editor, nothing is moved
+                if (change.getOldPosition()!=null) {
+                    Check old = locate(change.getOldPosition());
+                    if (old==null)
+                        return "Position "+change.getOldPosition()+" doesn't exist in the schema";
+                    if (!old.positionInSchema.equals(target.positionInSchema))
+                        return "Cannot move "+old.positionInSchema+" to "+target.positionInSchema;
+                }
+                break;
+            case RESET:
+                // Without value, the element is cleared
+                break;
+            default:
+                if (change.getValue()==null)
+                    return "Missing a value";
+        }
+        String position = change.getPosition();
+        // The root can be written "/"
+        if (position.endsWith("/"))
+            position = position.substring(0, position.length()-1);
+        return (change.getValue()==null)?null:target.validate(change.getValue(), position);
+    }
+
+    /**
+     * @return the check of the element at the position, or null if it doesn't exist in the schema
+     */
+    protected Check locate (String position) {
+        Check cur = root;
+        int start = 0;
+        int length = position.length();
+        while ((start<length) && (cur!=null)) {
+            int end = position.indexOf('/', start);
+            if (end==-1)
+                end = length;
+            if (end>start)
+                cur = cur.child(position.substring(start, end));
+            start = end+1;
+        }
+        return cur;
+    }
+
+    protected static Check compile (DontCodeSchemaManager schemaManager, DontCodeSchemaItem item, String positionInSchema, int depth) {
+        if (depth>64)
+            throw new RuntimeException("Schema is too deep at "+positionInSchema);
+        DontCodeSchemaItem resolved = schemaManager.resolveReference(item);
+        Check ret = new Check(positionInSchema);
+        switch (resolved.getKind()) {
+            case ROOT, OBJECT -> {
+                ret.kind = CheckKind.OBJECT;
+                ret.additionalProperties = resolved.hasAdditionalProperties();
+                for (Map.Entry<String, DontCodeSchemaItem> child : resolved.getChildren().entrySet()) {
+                    if (resolved.getKind()== DontCodeSchemaItem.Kind.ROOT && child.getKey().equals("$defs"))
+                        continue;
+                    ret.children.put(child.getKey(), compile(schemaManager, child.getValue(),
+                            positionInSchema.isEmpty()?child.getKey():positionInSchema+'/'+child.getKey(), depth+1));
+                }
+            }
+            case ENUM -> {
+                ret.kind = CheckKind.ENUM;
+                ret.enumItem = resolved;
+            }
+            default -> {
+                ret.kind = CheckKind.VALUE;
+                ret.valueType = resolved.getValueType();
+            }
+        }
+        if (item.isArray()) {
+            Check array = new Check(positionInSchema);
+            array.kind = CheckKind.ARRAY;
+            array.items = ret;
+            return array;
+        }
+        return ret;
+    }
+
+    protected enum CheckKind {
+        OBJECT, ARRAY, VALUE, ENUM, ANY
+    }
+
+    /**
+     * What is allowed at a position in the schema
+     */
+    protected static class Check {
+        protected static final Check ANY = new Check("*");
+        static {
+            ANY.kind = CheckKind.ANY;
+        }
+
+        protected final String positionInSchema;
+        protected CheckKind kind;
+        protected final Map<String, Check> children = new HashMap<>();
+        protected boolean additionalProperties;
+        protected Check items;
+        protected String valueType;
+        protected DontCodeSchemaItem enumItem;
+
+        protected Check(String positionInSchema) {
+            this.positionInSchema = positionInSchema;
+        }
+
+        /**
+         * @return the check of a sub element, or null if it's not allowed
+         */
+        protected Check child (String element) {
+            return switch (kind) {
+                case ARRAY -> items;
+                case OBJECT -> {
+                    Check found = children.get(element);
+                    yield ((found==null) && additionalProperties)?ANY:found;
+                }
+                case ANY -> ANY;
+                default -> null;
+            };
+        }
+
+        /**
+         * @return null if the value is valid, otherwise the reason
+         */
+        protected String validate (Object value, String position) {
+            switch (kind) {
+                case ANY:
+                    return null;
+                case ARRAY:
+                case OBJECT: {
+                    if (!(value instanceof Map<?, ?> map))
+                        return "Expecting an object at "+position;
+                    for (Map.Entry<?, ?> entry : map.entrySet()) {
+                        String childPosition = position.isEmpty()?entry.getKey().toString():position+'/'+entry.getKey();
+                        Check childCheck = child(entry.getKey().toString());
+                        if (childCheck==null)
+                            return "Unknown property "+childPosition;
+                        if (entry.getValue()!=null) {
+                            String reason = childCheck.validate(entry.getValue(), childPosition);
+                            if (reason!=null)
+                                return reason;
+                        }
+                    }
+                    return null;
+                }
+                case ENUM:
+                    if ((value instanceof Map<?,?>) || (value instanceof List<?>) || (!enumItem.isEnumValue(value.toString())))
+                        return "Invalid value "+value+" at "+position;
+                    return null;
+                default:
+                    return validateValue(value, position);
+            }
+        }
+
+        protected String validateValue (Object value, String position) {
+            if ((value instanceof Map<?,?>) || (value instanceof List<?>))
+                return "Expecting a "+((valueType==null)?"value":valueType)+" at "+position;
+            if (valueType==null)
+                return null;
+            boolean valid = switch (valueType) {
+                case "string" -> value instanceof String;
+                case "number", "integer" -> (value instanceof Number) || isNumber(value.toString());
+                case "boolean" -> (value instanceof Boolean) || "true".equals(value) || "false".equals(value);
+                default -> true;
+            };
+            return valid?null:"Expecting a "+valueType+" at "+position;
+        }
+
+        protected static boolean isNumber (String value) {
+            try {
+                Double.parseDouble(value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package net.dontcode.core.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An element of the dont-code schema, compiled from its JSON schema definition
+ */
+public class DontCodeSchemaItem {
+    public enum Kind {
+        ROOT, OBJECT, VALUE, ENUM, REFERENCE
+    }
+
+    protected final Kind kind;
+    protected final String relativeId;
+    protected final DontCodeSchemaItem parent;
+    protected final Map<String, DontCodeSchemaItem> children = new LinkedHashMap<>();
+    protected boolean array;
+    protected boolean readOnly;
+    protected boolean hidden;
+    protected String reference;
+    protected String targetPath;
+    /**
+     * The JSON type of a value, like "string"
+     */
+    protected String valueType;
+    /**
+     * Replaced, never modified, when values are added: readers always see a complete set
+     */
+    protected volatile Set<String> enumValues;
+    protected boolean additionalProperties = true;
+    /**
+     * The item a reference points to, set once the whole schema is compiled
+     */
+    protected DontCodeSchemaItem resolved;
+
+    protected DontCodeSchemaItem(Kind kind, String relativeId, DontCodeSchemaItem parent) {
+        this.kind = kind;
+        this.relativeId = relativeId;
+        this.parent = parent;
+    }
+
+    /**
+     * Compiles the json definition of an item and all its children
+     * @return the item, or null if it's not a supported definition
+     */
+    protected static DontCodeSchemaItem generateItem (JsonNode json, String relativeId, DontCodeSchemaItem parent) {
+        DontCodeSchemaItem ret;
+        boolean isArray = false;
+        if (json.has("type")) {
+            switch (json.get("type").asText()) {
+                case "object" -> {
+                    ret = new DontCodeSchemaItem(Kind.OBJECT, relativeId, parent);
+                    ret.addChildren(json.get("properties"));
+                    ret.additionalProperties = json.path("additionalProperties").asBoolean(true);
+                }
+                case "array" -> {
+                    ret = generateItem(json.get("items"), relativeId, parent);
+                    isArray = true;
+                }
+                default -> {
+                    ret = new DontCodeSchemaItem(Kind.VALUE, relativeId, parent);
+                    ret.valueType = json.get("type").asText();
+                }
+            }
+        } else if (json.has("enum")) {
+            ret = new DontCodeSchemaItem(Kind.ENUM, relativeId, parent);
+            ret.enumValues = new LinkedHashSet<>();
+            addEnumValues(json.get("enum"), ret.enumValues);
+        } else if (json.has("$ref")) {
+            ret = new DontCodeSchemaItem(Kind.REFERENCE, relativeId, parent);
+            ret.reference = json.get("$ref").asText();
+        } else {
+            return null;
+        }
+        if (ret==null)
+            return null;
+        if (json.has("format"))
+            ret.targetPath = json.get("format").asText();
+        ret.readOnly = json.path("readOnly").asBoolean(false);
+        ret.hidden = json.path("writeOnly").asBoolean(false);
+        ret.array = isArray;
+        return ret;
+    }
+
+    /**
+     * Values can be grouped, like {"Time": {"enum": ["Date", "Time"]}}: both the groups and their values are accepted
+     */
+    protected static void addEnumValues (JsonNode values, Set<String> into) {
+        for (JsonNode value: values) {
+            if (value.isObject()) {
+                for (Map.Entry<String, JsonNode> group: value.properties()) {
+                    into.add(group.getKey());
+                    if (group.getValue().has("enum"))
+                        addEnumValues(group.getValue().get("enum"), into);
+                }
+            } else {
+                into.add(value.asText());
+            }
+        }
+    }
+
+    protected void addChildren (JsonNode properties) {
+        if (properties==null)
+            return;
+        for (Map.Entry<String, JsonNode> property: properties.properties()) {
+            DontCodeSchemaItem child = generateItem(property.getValue(), property.getKey(), this);
+            if (child!=null)
+                children.put(property.getKey(), child);
+        }
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getRelativeId() {
+        return relativeId;
+    }
+
+    public DontCodeSchemaItem getParent() {
+        return parent;
+    }
+
+    public DontCodeSchemaItem getChild (String id) {
+        return children.get(id);
+    }
+
+    public Map<String, DontCodeSchemaItem> getChildren() {
+        return Collections.unmodifiableMap(children);
+    }
+
+    public boolean isArray() {
+        return array;
+    }
+
+    public boolean isReference() {
+        return kind==Kind.REFERENCE;
+    }
+
+    public boolean isReadonly() {
+        return readOnly;
+    }
+
+    public boolean isHidden() {
+        return hidden;
+    }
+
+    /**
+     * @return false if only the properties defined in the schema are allowed
+     */
+    public boolean hasAdditionalProperties() {
+        return additionalProperties;
+    }
+
+    public String getValueType() {
+        return valueType;
+    }
+
+    /**
+     * @return the possible values of an enum, or null
+     */
+    public Set<String> getEnumValues() {
+        Set<String> values = enumValues;
+        return (values==null)?null:Collections.unmodifiableSet(values);
+    }
+
+    public boolean isEnumValue (String value) {
+        Set<String> values = enumValues;
+        return (values!=null) && values.contains(value);
+    }
+
+    /**
+     * Updates the item with a part of schema, like the TypeScript DontCodeSchemaItem.updateWith().
+     * Only enums can be updated, so that plugins can add their values, like {"enum": ["Rating"]}
+     * @param update
+     */
+    public synchronized void updateWith (JsonNode update) {
+        if ((kind!=Kind.ENUM) || (!update.has("enum")))
+            throw new RuntimeException("Can only add values to an enum, not to "+this);
+        Set<String> values = new LinkedHashSet<>(enumValues);
+        addEnumValues(update.get("enum"), values);
+        enumValues = values;
+    }
+
+    /**
+     * @return the reference, like "#/$defs/entity"
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * @return the JSONPath of the elements this value refers to, like "$.creation.sources.name"
+     */
+    public String getTargetPath() {
+        return targetPath;
+    }
+
+    @Override
+    public String toString() {
+        return kind+" "+relativeId;
+    }
+}
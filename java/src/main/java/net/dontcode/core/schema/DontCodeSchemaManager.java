@@ -0,0 +1,190 @@
+package net.dontcode.core.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.BoundedCache;
+import net.dontcode.core.DontCodeModelPointer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Function;
+
+/**
+ * Manages the schema describing an application in Dont-code, like the TypeScript DontCodeSchemaManager.
+ * The JSON schema is compiled once into a tree of DontCodeSchemaItem.
+ *
+ * Pointers generated from a position are cached, so generating again the pointer of a known position doesn't walk the schema.
+ */
+public class DontCodeSchemaManager {
+    public static final String DEFAULT_SCHEMA = "dont-code-schema.json";
+    protected static final int MAX_CACHED_POINTERS = 16384;
+
+    protected final DontCodeSchemaItem schema;
+    protected final BoundedCache<String, DontCodeModelPointer> pointers = new BoundedCache<>(MAX_CACHED_POINTERS);
+
+    private static DontCodeSchemaManager defaultManager;
+
+    /**
+     * Uses the default dont-code schema
+     */
+    public DontCodeSchemaManager() {
+        try (InputStream input = DontCodeSchemaManager.class.getResourceAsStream(DEFAULT_SCHEMA)) {
+            if (input==null)
+                throw new RuntimeException("Cannot find the default schema "+DEFAULT_SCHEMA);
+            this.schema = compile(new ObjectMapper().readTree(input));
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read the default schema", e);
+        }
+    }
+
+    public DontCodeSchemaManager(JsonNode jsonSchema) {
+        this.schema = compile(jsonSchema);
+    }
+
+    /**
+     * @return a manager of the default schema, shared by everyone
+     */
+    public static synchronized DontCodeSchemaManager getDefault () {
+        if (defaultManager==null)
+            defaultManager = new DontCodeSchemaManager();
+        return defaultManager;
+    }
+
+    protected static DontCodeSchemaItem compile (JsonNode jsonSchema) {
+        DontCodeSchemaItem root = new DontCodeSchemaItem(DontCodeSchemaItem.Kind.ROOT, null, null);
+        root.addChildren(jsonSchema.get("properties"));
+        // Definitions are reachable by references like #/$defs/entity
+        DontCodeSchemaItem defs = new DontCodeSchemaItem(DontCodeSchemaItem.Kind.OBJECT, "$defs", root);
+        defs.addChildren(jsonSchema.get("$defs"));
+        root.children.put("$defs", defs);
+        resolveReferences(root, root);
+        return root;
+    }
+
+    protected static void resolveReferences (DontCodeSchemaItem root, DontCodeSchemaItem item) {
+        if (item.isReference()) {
+            DontCodeSchemaItem cur = root;
+            for (String element: item.getReference().split("/")) {
+                if ((!element.isEmpty()) && (!element.equals("#")))
+                    cur = (cur==null)?null:cur.getChild(element);
+            }
+            if (cur==null)
+                throw new RuntimeException("Cannot find reference "+item.getReference()+" of "+item.getRelativeId());
+            item.resolved = cur;
+        }
+        for (DontCodeSchemaItem child: item.children.values()) {
+            resolveReferences(root, child);
+        }
+    }
+
+    public DontCodeSchemaItem getSchema() {
+        return schema;
+    }
+
+    /**
+     * Locates an item from its position in the schema
+     * @param schemaPosition like "creation/entities/fields"
+     * @param resolveReference true to resolve the last reference instead of returning it
+     */
+    public DontCodeSchemaItem locateItem (String schemaPosition, boolean resolveReference) {
+        DontCodeSchemaItem cur = schema;
+        for (String element: schemaPosition.split("/")) {
+            if ((!element.isEmpty()) && (!element.equals("#"))) {
+                cur = resolveReference(cur).getChild(element);
+                if (cur==null)
+                    throw new RuntimeException("Could not find subItem "+element+" of "+schemaPosition);
+            }
+        }
+        return resolveReference?resolveReference(cur):cur;
+    }
+
+    /**
+     * Updates the schema with the changes of a plugin, like the TypeScript DontCodeSchemaManager.registerChanges()
+     * @param schemaPosition of the item to update, like "creation/entities/fields/type"
+     * @param update like {"enum": ["Rating"]} to add values to an enum
+     */
+    public void registerChanges (String schemaPosition, JsonNode update) {
+        locateItem(schemaPosition, true).updateWith(update);
+    }
+
+    public DontCodeSchemaItem resolveReference (DontCodeSchemaItem item) {
+        return item.isReference()?item.resolved:item;
+    }
+
+    /**
+     * Generates a complete DontCodeModelPointer from the position of an element in a model
+     * @param position like "creation/entities/a/fields/b"
+     * @return a new pointer, that can be modified
+     * @throws RuntimeException if the position doesn't follow the schema
+     */
+    public DontCodeModelPointer generateSchemaPointer (String position) {
+        DontCodeModelPointer found = pointers.computeIfAbsent(position, this::calculateSchemaPointer);
+        // Cached pointers are shared, so a copy is returned
+        return new DontCodeModelPointer(found.getPosition(), found.getPositionInSchema(), found.getContainerPosition(),
+                found.getContainerPositionInSchema(), found.getLastElement(), found.getIsProperty());
+    }
+
+    /**
+     * @param position
+     * @return the position in schema of the element at this position, or null if it doesn't follow the schema
+     */
+    public String positionInSchemaOf (String position) {
+        DontCodeModelPointer found = pointers.get(position);
+        if (found!=null)
+            return found.getPositionInSchema();
+        try {
+            return generateSchemaPointer(position).getPositionInSchema();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a resolver for SchemaPositionIndex, ignoring the positions that don't follow the schema
+     */
+    public Function<String, DontCodeModelPointer> pointerResolver () {
+        return position -> {
+            try {
+                return generateSchemaPointer(position);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        };
+    }
+
+    protected DontCodeModelPointer calculateSchemaPointer (String position) {
+        if (position.isEmpty()) {
+            // Managing the special case of asking for root
+            return new DontCodeModelPointer(position, position, null, null, position, true);
+        }
+        String[] elements = position.split("/");
+        StringBuilder positionInSchema = new StringBuilder();
+        DontCodeSchemaItem parentItem = schema;
+        boolean isProperty = true;
+        boolean ignoreNext = false;
+        for (String element: elements) {
+            if (ignoreNext) {
+                // The key of an item in an array
+                isProperty = false;
+                ignoreNext = false;
+                continue;
+            }
+            DontCodeSchemaItem nextItem = parentItem.getChild(element);
+            if ((nextItem==null) || (element.equals("$defs") && (parentItem==schema)))
+                throw new RuntimeException("Cannot parse '"+position+"' from the schema as "+element+" is not a child of "+parentItem.getRelativeId());
+            isProperty = true;
+            if (!positionInSchema.isEmpty())
+                positionInSchema.append('/');
+            positionInSchema.append(element);
+            ignoreNext = nextItem.isArray();
+            parentItem = resolveReference(nextItem);
+        }
+
+        int slashPos = position.lastIndexOf('/');
+        int schemaSlashPos = positionInSchema.lastIndexOf("/");
+        return new DontCodeModelPointer(position, positionInSchema.toString(),
+                (slashPos==-1)?"":position.substring(0, slashPos),
+                (schemaSlashPos==-1)?"":positionInSchema.substring(0, schemaSlashPos),
+                elements[elements.length-1], isProperty);
+    }
+}
@@ -0,0 +1,222 @@
+package net.dontcode.core.session;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.jfr.SessionApplyEvent;
+import net.dontcode.core.persistent.PersistentModel;
+import net.dontcode.core.schema.ChangeValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the model of each session, and applies the changes sent to a session one after the other, without any lock:
+ *  - Messages are queued in a mailbox per session, drained by a single virtual thread at a time,
+ *  - Pending changes are applied together, and the resulting model is published as an immutable PersistentModel,
+ *  - Readers get the latest published model: a consistent snapshot they can keep as long as they want.
+ */
+public class SessionModelManager implements AutoCloseable {
+    private static Logger log = LoggerFactory.getLogger(SessionModelManager.class);
+
+    protected final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    protected final ExecutorService executor;
+    protected final ChangeValidator validator;
+
+    public SessionModelManager() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * @param executor runs the draining of mailboxes. A task never blocks, but can run for some time with big batches of changes.
+     */
+    public SessionModelManager(ExecutorService executor) {
+        this(executor, null);
+    }
+
+    /**
+     * @param executor
+     * @param validator checks each change before queueing it, or null to apply them without checking
+     */
+    public SessionModelManager(ExecutorService executor, ChangeValidator validator) {
+        this.executor = executor;
+        this.validator = validator;
+    }
+
+    /**
+     * Queues the message in the mailbox of its session, creating the session if needed.
+     * Only CHANGE messages modify the model, INIT just creates the session.
+     * @param message
+     * @return the model once the message has been processed (possibly with the following ones processed in the same batch), failed if its change couldn't be applied or was rejected by the validator
+     */
+    public CompletableFuture<PersistentModel> submit (Message message) {
+        if (message.getSessionId()==null)
+            throw new RuntimeException("Cannot manage a message without sessionId");
+        if (validator!=null) {
+            Message validated = validator.validate(message);
+            if (validated.getType()== Message.MessageType.ERROR && message.getType()!= Message.MessageType.ERROR)
+                return CompletableFuture.failedFuture(new RuntimeException(validated.getChange().getValue().toString()));
+        }
+        Session session = sessions.computeIfAbsent(message.getSessionId(), Session::new);
+        Pending pending = new Pending((message.getType()== Message.MessageType.CHANGE)?message.getChange():null);
+        session.mailbox.add(pending);
+        session.schedule();
+        return pending.result;
+    }
+
+    public CompletableFuture<PersistentModel> submit (String sessionId, Change change) {
+        return submit(new Message(Message.MessageType.CHANGE, sessionId, change));
+    }
+
+    /**
+     * @param sessionId
+     * @return the latest model of the session, or null if the session is unknown
+     */
+    public PersistentModel getModel (String sessionId) {
+        Session session = sessions.get(sessionId);
+        return (session==null)?null:session.model;
+    }
+
+    /**
+     * @param sessionId
+     * @return a read only view of the latest model of the session, or null if the session is unknown
+     */
+    public MapOrString read (String sessionId) {
+        PersistentModel model = getModel(sessionId);
+        return (model==null)?null:model.asMapOrString();
+    }
+
+    public Set<String> getSessionIds () {
+        return sessions.keySet();
+    }
+
+    /**
+     * Forgets the session. Messages still in its mailbox are processed but their result is lost.
+     * @param sessionId
+     * @return the last model of the session, or null if it was unknown
+     */
+    public PersistentModel remove (String sessionId) {
+        Session session = sessions.remove(sessionId);
+        return (session==null)?null:session.model;
+    }
+
+    /**
+     * Stops accepting new work and waits for the mailboxes being drained
+     */
+    @Override
+    public void close () {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+                log.warn("Some sessions are still processing changes after closing");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected record Pending(Change change, CompletableFuture<PersistentModel> result) {
+        Pending(Change change) {
+            this(change, new CompletableFuture<>());
+        }
+    }
+
+    protected class Session {
+        protected final String sessionId;
+        protected final ConcurrentLinkedQueue<Pending> mailbox = new ConcurrentLinkedQueue<>();
+        protected final AtomicBoolean scheduled = new AtomicBoolean();
+        protected volatile PersistentModel model = PersistentModel.EMPTY;
+
+        protected Session(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        /**
+         * Makes sure one, and only one, task drains the mailbox
+         */
+        protected void schedule () {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        protected void drain () {
+            do {
+                List<Pending> batch = new ArrayList<>();
+                Pending next;
+                while ((next = mailbox.poll())!=null) {
+                    batch.add(next);
+                }
+                try {
+                    if (!batch.isEmpty())
+                        apply(batch);
+                } catch (Throwable e) {
+                    // Even an Error must not leave the futures of the batch waiting forever
+                    log.error("Cannot apply {} messages to session {}", batch.size(), sessionId, e);
+                    for (Pending pending: batch) {
+                        pending.result().completeExceptionally(e);
+                    }
+                } finally {
+                    scheduled.set(false);
+                }
+                // A message may have been queued after the last poll but before scheduled was reset
+            } while ((!mailbox.isEmpty()) && (scheduled.compareAndSet(false, true)));
+        }
+
+        protected void apply (List<Pending> batch) {
+            List<Change> changes = new ArrayList<>(batch.size());
+            for (Pending pending: batch) {
+                if (pending.change()!=null)
+                    changes.add(pending.change());
+            }
+            SessionApplyEvent event = new SessionApplyEvent();
+            event.begin();
+            PersistentModel result;
+            try {
+                result = changes.isEmpty()?model:model.applyChanges(changes);
+            } catch (RuntimeException e) {
+                // Apply them one by one so that only the wrong ones fail
+                applyOneByOne(batch);
+                commit(event, changes.size(), true);
+                return;
+            }
+            model = result;
+            commit(event, changes.size(), false);
+            for (Pending pending: batch) {
+                pending.result().complete(result);
+            }
+        }
+
+        protected void commit (SessionApplyEvent event, int changes, boolean failed) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.sessionId = sessionId;
+                event.changes = changes;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+
+        protected void applyOneByOne (List<Pending> batch) {
+            for (Pending pending: batch) {
+                try {
+                    if (pending.change()!=null)
+                        model = model.applyChange(pending.change());
+                    pending.result().complete(model);
+                } catch (RuntimeException e) {
+                    log.warn("Cannot apply change at {} to session {}: {}", pending.change().getPosition(), sessionId, e.getMessage());
+                    pending.result().completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
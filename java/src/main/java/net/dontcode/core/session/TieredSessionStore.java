@@ -0,0 +1,334 @@
+package net.dontcode.core.session;
+
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.Models;
+import net.dontcode.core.binary.BinaryCodec;
+import net.dontcode.core.jfr.SessionApplyEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Keeps the model of each session, and moves the models of idle sessions out of the heap:
+ *  - Models not used for more than idleAfter are encoded with BinaryCodec by spillIdle(), and stored off-heap, or in memory mapped files if a directory is given,
+ *  - They are decoded back on the heap the next time their session is used.
+ *
+ * Spilled models are stored one after the other in segments. A segment is released once all its models are back on the heap.
+ * As a model can be spilled at any time, it never leaves the store: it's modified by apply() and read by read(), that lock it meanwhile.
+ * A model given to put() belongs to the store, and a model returned by remove() to the caller.
+ */
+public class TieredSessionStore implements Closeable {
+    private static Logger log = LoggerFactory.getLogger(TieredSessionStore.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4*1024*1024;
+    static final String SEGMENT_EXTENSION = ".spill";
+
+    protected final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+    protected final long idleAfterMillis;
+    protected final Path directory;
+    protected final int segmentSize;
+    protected final InstantSource clock;
+
+    protected Segment current;
+    protected int segmentCount;
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder spills = new LongAdder();
+    protected final LongAdder spilledBytes = new LongAdder();
+
+    /**
+     * Spills models off-heap
+     */
+    public TieredSessionStore(Duration idleAfter) {
+        this(idleAfter, null, DEFAULT_SEGMENT_SIZE, InstantSource.system());
+    }
+
+    /**
+     * Spills models in memory mapped files of the directory
+     */
+    public TieredSessionStore(Duration idleAfter, Path directory) {
+        this(idleAfter, directory, DEFAULT_SEGMENT_SIZE, InstantSource.system());
+    }
+
+    /**
+     * @param idleAfter models not used for this duration are spilled
+     * @param directory where memory mapped segments are created, or null to spill off-heap
+     * @param segmentSize size of each segment. A bigger model gets its own segment.
+     * @param clock
+     */
+    public TieredSessionStore(Duration idleAfter, Path directory, int segmentSize, InstantSource clock) {
+        this.idleAfterMillis = idleAfter.toMillis();
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Reads the model of the session, loaded back on the heap if it was spilled. It cannot be spilled nor modified until the reader returns.
+     * @param sessionId
+     * @param reader must not modify the model, nor keep it or any of its elements
+     * @return what the reader returns, or null if the session is unknown
+     */
+    public <T> T read (String sessionId, Function<MapOrString, T> reader) {
+        Entry entry = sessions.get(sessionId);
+        if (entry==null)
+            return null;
+        synchronized (entry) {
+            return reader.apply(entry.model());
+        }
+    }
+
+    public void put (String sessionId, MapOrString model) {
+        Entry previous = sessions.put(sessionId, new Entry(model, clock.millis()));
+        if (previous!=null)
+            previous.release();
+    }
+
+    /**
+     * Applies the change of the message to the model of its session, creating it if needed
+     * @param message
+     */
+    public void apply (Message message) {
+        if (message.getSessionId()==null)
+            throw new RuntimeException("Cannot manage a message without sessionId");
+        Entry entry = sessions.computeIfAbsent(message.getSessionId(), key -> new Entry(new MapOrString(), clock.millis()));
+        synchronized (entry) {
+            SessionApplyEvent event = new SessionApplyEvent();
+            event.begin();
+            MapOrString model = entry.model();
+            if ((message.getType()== Message.MessageType.CHANGE) && (message.getChange()!=null)) {
+                Models.applyChange(model, message.getChange());
+                event.end();
+                if (event.shouldCommit()) {
+                    event.sessionId = message.getSessionId();
+                    event.changes = 1;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the session
+     * @return its model, or null if the session is unknown
+     */
+    public MapOrString remove (String sessionId) {
+        Entry entry = sessions.remove(sessionId);
+        if (entry==null)
+            return null;
+        MapOrString ret = entry.model();
+        entry.release();
+        return ret;
+    }
+
+    public Set<String> getSessionIds () {
+        return sessions.keySet();
+    }
+
+    /**
+     * Spills the models that were not used for more than idleAfter
+     * @return the number of models spilled
+     */
+    public int spillIdle () {
+        long limit = clock.millis()-idleAfterMillis;
+        int ret = 0;
+        for (Entry entry: sessions.values()) {
+            if ((entry.model!=null) && (entry.lastAccess<limit) && entry.spill(limit))
+                ret++;
+        }
+        if (ret>0)
+            log.debug("Spilled {} idle models", ret);
+        return ret;
+    }
+
+    /**
+     * @return true if the model of the session is out of the heap
+     */
+    public boolean isSpilled (String sessionId) {
+        Entry entry = sessions.get(sessionId);
+        return (entry!=null) && (entry.model==null);
+    }
+
+    public Stats getStats () {
+        int spilled = 0;
+        for (Entry entry: sessions.values()) {
+            if (entry.model==null)
+                spilled++;
+        }
+        return new Stats(hits.sum(), misses.sum(), spills.sum(), sessions.size()-spilled, spilled, spilledBytes.sum());
+    }
+
+    @Override
+    public void close () throws IOException {
+        for (Entry entry: sessions.values()) {
+            entry.release();
+        }
+        sessions.clear();
+        // Entries lock themselves before the store, so the store is locked only once they are released
+        synchronized (this) {
+            if (current!=null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Stores the content in the current segment, or a new one if it's full
+     */
+    protected synchronized Spilled write (byte[] content) throws IOException {
+        if ((current==null) || (current.buffer.remaining()<content.length)) {
+            if ((current!=null) && (current.live==0))
+                current.close();
+            current = new Segment(Math.max(segmentSize, content.length));
+        }
+        int offset = current.buffer.position();
+        current.buffer.put(content);
+        current.live++;
+        spilledBytes.add(content.length);
+        return new Spilled(current, offset, content.length);
+    }
+
+    protected synchronized byte[] read (Spilled spilled) {
+        byte[] ret = new byte[spilled.length()];
+        spilled.segment().buffer.get(spilled.offset(), ret);
+        return ret;
+    }
+
+    protected synchronized void free (Spilled spilled) {
+        Segment segment = spilled.segment();
+        spilledBytes.add(-spilled.length());
+        if (--segment.live>0)
+            return;
+        try {
+            if (segment==current)
+                segment.buffer.clear();
+            else
+                segment.close();
+        } catch (IOException e) {
+            log.warn("Cannot release spill segment {}: {}", segment.file, e.getMessage());
+        }
+    }
+
+    /**
+     * @param hits number of times a model was on the heap
+     * @param misses number of times a model had to be loaded back
+     * @param spills number of times a model was spilled
+     * @param onHeap number of models on the heap
+     * @param spilled number of models out of the heap
+     * @param spilledBytes size of the spilled models
+     */
+    public record Stats(long hits, long misses, long spills, int onHeap, int spilled, long spilledBytes) {
+    }
+
+    protected record Spilled(Segment segment, int offset, int length) {
+    }
+
+    protected class Segment implements Closeable {
+        protected final ByteBuffer buffer;
+        protected final Path file;
+        protected final FileChannel channel;
+        protected int live;
+
+        protected Segment(int size) throws IOException {
+            if (directory==null) {
+                file = null;
+                channel = null;
+                buffer = ByteBuffer.allocateDirect(size);
+            } else {
+                Files.createDirectories(directory);
+                file = directory.resolve(String.format("%08d", segmentCount++)+SEGMENT_EXTENSION);
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        /**
+         * Direct and mapped buffers are released by the garbage collector, only the file is deleted now
+         */
+        @Override
+        public void close () throws IOException {
+            if (channel!=null) {
+                channel.close();
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    protected class Entry {
+        protected volatile MapOrString model;
+        protected volatile long lastAccess;
+        protected Spilled spilled;
+
+        protected Entry(MapOrString model, long lastAccess) {
+            this.model = model;
+            this.lastAccess = lastAccess;
+        }
+
+        /**
+         * @return the model, loaded back if it was spilled
+         */
+        protected MapOrString model () {
+            lastAccess = clock.millis();
+            MapOrString ret = model;
+            if (ret!=null) {
+                hits.increment();
+                return ret;
+            }
+            synchronized (this) {
+                if (model==null) {
+                    misses.increment();
+                    try {
+                        model = BinaryCodec.decodeModel(read(spilled));
+                    } catch (IOException e) {
+                        throw new RuntimeException("Cannot load back a spilled model", e);
+                    }
+                    free(spilled);
+                    spilled = null;
+                } else {
+                    hits.increment();
+                }
+                return model;
+            }
+        }
+
+        /**
+         * @return true if the model has been spilled
+         */
+        protected synchronized boolean spill (long limit) {
+            if ((model==null) || (lastAccess>=limit))
+                return false;
+            try {
+                spilled = write(BinaryCodec.encodeModel(model));
+            } catch (IOException e) {
+                log.warn("Cannot spill a model: {}", e.getMessage());
+                return false;
+            }
+            model = null;
+            spills.increment();
+            return true;
+        }
+
+        protected synchronized void release () {
+            if (spilled!=null) {
+                free(spilled);
+                spilled = null;
+            }
+        }
+    }
+}
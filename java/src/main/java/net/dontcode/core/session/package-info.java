@@ -0,0 +1 @@
+package net.dontcode.core.session;
\ No newline at end of file
@@ -0,0 +1,217 @@
+package net.dontcode.core.subscription;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Notifies listeners of the changes at the position they subscribed to, like DontCodeChangeManager.receiveCommands() in TypeScript:
+ *  - "creation/screens" receives any change in any screen and below,
+ *  - "creation/screens" with property "name" receives the changes of the name of all screens,
+ *  - "creation/screens/?" receives the changes of screen items only (move, delete...), not below,
+ *  - "*" matches any element, so "creation/entities/*&#47;fields" receives the changes of the fields of all entities.
+ *
+ * Subscriptions are stored in a tree of position elements, so a change only visits the elements of its position, whatever the number of listeners.
+ * Changes can be published by any thread while listeners subscribe or unsubscribe.
+ */
+public class ChangeSubscriptions implements Consumer<Change> {
+    private static Logger log = LoggerFactory.getLogger(ChangeSubscriptions.class);
+    public static final String WILDCARD = "*";
+    public static final String ONLY_LEVEL = "?";
+
+    protected final Node root = new Node(null, null);
+
+    /**
+     * @param position like "creation/entities", "creation/entities/?" or "" for all changes
+     * @param listener
+     * @return the subscription, to close when not interested anymore
+     */
+    public Subscription subscribe (String position, Consumer<Change> listener) {
+        return subscribe(position, null, listener);
+    }
+
+    /**
+     * @param position
+     * @param property if not null, only changes of this property of the element at position, or of its items, are received
+     * @param listener
+     */
+    public Subscription subscribe (String position, String property, Consumer<Change> listener) {
+        boolean onlyLevel = false;
+        List<String> elements = new ArrayList<>(elementsOf(position));
+        if ((!elements.isEmpty()) && elements.get(elements.size()-1).equals(ONLY_LEVEL)) {
+            elements.remove(elements.size()-1);
+            onlyLevel = true;
+        }
+        Subscription ret = new Subscription(listener, onlyLevel && (property==null));
+        if (property==null) {
+            ret.add(elements);
+        } else {
+            // Like in TypeScript, the property can be the one of the element or of any of its items
+            List<String> direct = new ArrayList<>(elements);
+            direct.add(property);
+            ret.add(direct);
+            List<String> ofItems = new ArrayList<>(elements);
+            ofItems.add(WILDCARD);
+            ofItems.add(property);
+            ret.add(ofItems);
+        }
+        return ret;
+    }
+
+    /**
+     * Notifies the listeners interested in the change, each one only once
+     * @param change
+     * @return the number of listeners notified
+     */
+    public int publish (Change change) {
+        List<Subscription> matching = matching(change.getPosition());
+        for (Subscription subscription: matching) {
+            try {
+                subscription.listener.accept(change);
+            } catch (RuntimeException e) {
+                log.warn("Listener of {} failed with change at {}: {}", subscription.positions, change.getPosition(), e.getMessage());
+            }
+        }
+        return matching.size();
+    }
+
+    /**
+     * Receives the atomic changes of Models.applyChange()
+     */
+    @Override
+    public void accept(Change change) {
+        publish(change);
+    }
+
+    /**
+     * Applies the change to the model, and notifies the listeners of each element it modified
+     */
+    public MapOrString applyChange (MapOrString model, Change change) {
+        return Models.applyChange(model, change, this);
+    }
+
+    /**
+     * @param position of a change
+     * @return the subscriptions interested in a change at this position
+     */
+    public List<Subscription> matching (String position) {
+        List<String> elements = elementsOf(position);
+        Set<Subscription> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Subscription> ret = new ArrayList<>();
+        collect(root, elements, 0, found, ret);
+        return ret;
+    }
+
+    protected void collect (Node node, List<String> elements, int depth, Set<Subscription> found, List<Subscription> into) {
+        int remaining = elements.size() - depth;
+        for (Subscription subscription: node.subscriptions) {
+            if (((!subscription.onlyLevel) || (remaining==1)) && found.add(subscription))
+                into.add(subscription);
+        }
+        if (remaining==0)
+            return;
+        Node child = node.children.get(elements.get(depth));
+        if (child!=null)
+            collect(child, elements, depth+1, found, into);
+        Node wildcard = node.children.get(WILDCARD);
+        if (wildcard!=null)
+            collect(wildcard, elements, depth+1, found, into);
+    }
+
+    /**
+     * @return true if nobody listens to anything
+     */
+    public boolean isEmpty () {
+        return root.subscriptions.isEmpty() && root.children.isEmpty();
+    }
+
+    protected static List<String> elementsOf (String position) {
+        if ((position==null) || position.isEmpty())
+            return List.of();
+        List<String> ret = new ArrayList<>();
+        for (String element: position.split("/")) {
+            if (!element.isEmpty())
+                ret.add(element);
+        }
+        return ret;
+    }
+
+    protected static class Node {
+        protected final String element;
+        protected final Node parent;
+        protected final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+        protected final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+        protected Node(String element, Node parent) {
+            this.element = element;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * A listener subscribed to changes at one or more positions
+     */
+    public class Subscription implements AutoCloseable {
+        protected final Consumer<Change> listener;
+        protected final boolean onlyLevel;
+        protected final List<Node> nodes = new ArrayList<>(2);
+        protected final List<String> positions = new ArrayList<>(2);
+
+        protected Subscription(Consumer<Change> listener, boolean onlyLevel) {
+            this.listener = listener;
+            this.onlyLevel = onlyLevel;
+        }
+
+        protected void add (List<String> elements) {
+            // Changes of the tree are rare, so they are done one at a time, whereas publishing never locks
+            synchronized (root) {
+                Node cur = root;
+                for (String element: elements) {
+                    Node parent = cur;
+                    cur = cur.children.computeIfAbsent(element, key -> new Node(key, parent));
+                }
+                cur.subscriptions.add(this);
+                nodes.add(cur);
+                positions.add(String.join("/", elements));
+            }
+        }
+
+        public Consumer<Change> getListener() {
+            return listener;
+        }
+
+        /**
+         * Stops receiving changes, and removes the elements of the tree nobody listens to anymore
+         */
+        @Override
+        public void close () {
+            synchronized (root) {
+                for (Node node: nodes) {
+                    node.subscriptions.remove(this);
+                    Node cur = node;
+                    while ((cur.parent!=null) && cur.subscriptions.isEmpty() && cur.children.isEmpty()) {
+                        cur.parent.children.remove(cur.element, cur);
+                        cur = cur.parent;
+                    }
+                }
+                nodes.clear();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Subscription to "+positions;
+        }
+    }
+}
@@ -0,0 +1 @@
+package net.dontcode.core.subscription;
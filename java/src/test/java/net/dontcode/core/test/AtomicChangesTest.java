@@ -0,0 +1,121 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class AtomicChangesTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldCollectOnlyWhatChanged () throws IOException {
+        MapOrString model = new MapOrString();
+        List<Change> atomic = new ArrayList<>();
+        // Missing parents are sent as a single ADD
+        Models.applyChange(model, Utils.createJsonTestChange(Change.ChangeType.ADD, "creation", null, "entities", "a", """
+                { "name": "A", "fields": { "a": { "name": "id", "type": "Number" } } }""", null), atomic::add);
+        Assertions.assertEquals(1, atomic.size());
+        checkAtomic(atomic.get(0), Change.ChangeType.ADD, "creation", "", "creation");
+        Assertions.assertSame(model.getMap().get("creation"), atomic.get(0).getValue());
+
+        atomic.clear();
+        Models.applyChange(model, Utils.createJsonTestChange(Change.ChangeType.ADD, "creation", null, "entities", "b", "{ \"name\": \"B\" }", null), atomic::add);
+        Assertions.assertEquals(1, atomic.size());
+        checkAtomic(atomic.get(0), Change.ChangeType.ADD, "creation/entities/b", "creation/entities", "b");
+        Assertions.assertEquals(Map.of("name", "B"), atomic.get(0).getValue());
+
+        // Only the type and the removed properties are sent
+        atomic.clear();
+        Models.applyChange(model, Utils.createJsonTestChange(Change.ChangeType.UPDATE, "creation", null, "entities", "a", """
+                { "name": "A", "fields": { "a": { "name": "id", "type": "Text" } } }""", null), atomic::add);
+        Assertions.assertEquals(1, atomic.size());
+        checkAtomic(atomic.get(0), Change.ChangeType.UPDATE, "creation/entities/a/fields/a/type", "creation/entities/a/fields/a", "type");
+        Assertions.assertEquals("Text", atomic.get(0).getValue());
+
+        atomic.clear();
+        Models.applyChange(model, Utils.createJsonTestChange(Change.ChangeType.UPDATE, "creation", null, "entities", "a", """
+                { "fields": { "a": { "name": "id", "type": "Text" } } }""", null), atomic::add);
+        Assertions.assertEquals(1, atomic.size());
+        checkAtomic(atomic.get(0), Change.ChangeType.DELETE, "creation/entities/a/name", "creation/entities/a", "name");
+
+        // Moving an element
+        atomic.clear();
+        Models.applyChange(model, new Change(Change.ChangeType.MOVE, "creation/entities/b", null, null, "creation/entities/b", "a"), atomic::add);
+        Assertions.assertEquals(1, atomic.size());
+        checkAtomic(atomic.get(0), Change.ChangeType.MOVE, "creation/entities/b", "creation/entities", "b");
+        Assertions.assertEquals("creation/entities/b", atomic.get(0).getOldPosition());
+        Assertions.assertEquals("a", atomic.get(0).getBeforeKey());
+        Assertions.assertArrayEquals(new String[]{"b", "a"}, model.find("creation/entities").getMap().keySet().toArray());
+
+        atomic.clear();
+        Models.applyChange(model, new Change(Change.ChangeType.MOVE, "creation/entities/c", null, null, "creation/entities/a", null), atomic::add);
+        Assertions.assertEquals(1, atomic.size());
+        checkAtomic(atomic.get(0), Change.ChangeType.MOVE, "creation/entities/c", "creation/entities", "c");
+        Assertions.assertEquals("creation/entities/a", atomic.get(0).getOldPosition());
+
+        // Nothing has changed
+        atomic.clear();
+        Models.applyChange(model, new Change(Change.ChangeType.UPDATE, "creation/entities/b/name", "B"), atomic::add);
+        Models.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/entities/z", null), atomic::add);
+        Models.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/unknown/z", null), atomic::add);
+        Assertions.assertEquals(List.of(), atomic);
+
+        Models.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/entities/b", null), atomic::add);
+        Assertions.assertEquals(1, atomic.size());
+        checkAtomic(atomic.get(0), Change.ChangeType.DELETE, "creation/entities/b", "creation/entities", "b");
+    }
+
+    @Test
+    public void itShouldCollectMovesAndFailures () throws IOException {
+        String content = """
+                { "creation": { "name": "Test", "entities": {
+                  "a": { "name": "A", "fields": { "a": { "name": "id" } } },
+                  "b": { "name": "B" } } } }""";
+        MapOrString model = new MapOrString(Utils.fromJsonToMap(content));
+        MapOrString replayed = new MapOrString(Utils.fromJsonToMap(content));
+        List<Change> atomic = new ArrayList<>();
+
+        // Moving into a missing parent sends the new parent and the removal of the old position
+        Models.applyChange(model, new Change(Change.ChangeType.MOVE, "creation/entities/b/fields/b", null, null, "creation/entities/a/fields/a", null), atomic::add);
+        Assertions.assertEquals(2, atomic.size());
+        checkAtomic(atomic.get(0), Change.ChangeType.ADD, "creation/entities/b/fields", "creation/entities/b", "fields");
+        Assertions.assertEquals(Map.of("b", Map.of("name", "id")), atomic.get(0).getValue());
+        checkAtomic(atomic.get(1), Change.ChangeType.DELETE, "creation/entities/a/fields/a", "creation/entities/a/fields", "a");
+
+        // A RESET only sends what it removes
+        Models.applyChange(model, new Change(Change.ChangeType.RESET, "creation/entities/b", Utils.fromJsonToMap("{ \"name\": \"B\" }")), atomic::add);
+        Assertions.assertEquals(3, atomic.size());
+        checkAtomic(atomic.get(2), Change.ChangeType.DELETE, "creation/entities/b/fields", "creation/entities/b", "fields");
+
+        // Failing changes send nothing
+        Assertions.assertThrows(RuntimeException.class, () -> Models.applyChange(model,
+                new Change(Change.ChangeType.ADD, "creation/name/sub", "Sub"), atomic::add));
+        Assertions.assertThrows(RuntimeException.class, () -> Models.applyChange(model,
+                new Change(Change.ChangeType.MOVE, "creation/entities/c", null, null, "creation/entities/z", null), atomic::add));
+        Assertions.assertEquals(3, atomic.size());
+
+        // The atomic changes are enough to get the same model
+        for (Change change : atomic) {
+            Models.applyChange(replayed, change);
+        }
+        Assertions.assertEquals(mapper.writeValueAsString(model.getMap()), mapper.writeValueAsString(replayed.getMap()));
+    }
+
+    protected void checkAtomic (Change atomic, Change.ChangeType type, String position, String containerPosition, String lastElement) {
+        Assertions.assertEquals(type, atomic.getType());
+        Assertions.assertEquals(position, atomic.getPosition());
+        DontCodeModelPointer pointer = atomic.getPointer();
+        Assertions.assertEquals(position, pointer.getPosition());
+        Assertions.assertEquals(containerPosition, pointer.getContainerPosition());
+        Assertions.assertEquals(lastElement, pointer.getLastElement());
+    }
+}
@@ -0,0 +1,159 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.binary.BinaryCodec;
+import net.dontcode.core.binary.BinaryReader;
+import net.dontcode.core.json.ChangeStreamReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BinaryCodecTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldEncodeAndDecodeMessages () throws IOException {
+        Change change = Utils.createJsonTestChange(Change.ChangeType.ADD, "creation", null, "entities", "a", """
+                { "name": "A", "fields": { "b": { "name": "id", "type": "Number" }, "a": { "name": "name", "type": "Text" } } }""", null);
+        change.setBeforeKey("b");
+        Message message = new Message(Message.MessageType.CHANGE, "session", change);
+
+        byte[] binary = BinaryCodec.encode(message);
+        Assertions.assertTrue(BinaryCodec.isBinary(binary));
+        Assertions.assertFalse(BinaryCodec.isBinary(mapper.writeValueAsBytes(message)));
+        Assertions.assertTrue(binary.length < mapper.writeValueAsBytes(message).length / 2);
+
+        Message decoded = BinaryCodec.decodeMessage(binary);
+        Assertions.assertEquals(Message.MessageType.CHANGE, decoded.getType());
+        Assertions.assertEquals("session", decoded.getSessionId());
+        Assertions.assertEquals(change, decoded.getChange());
+        Assertions.assertEquals(change.getPointer(), decoded.getChange().getPointer());
+        Assertions.assertInstanceOf(ModelMap.class, decoded.getChange().getValue());
+        Assertions.assertEquals(List.of("b", "a"), List.copyOf(((Map<String, Object>) ((Map<String, Object>) decoded.getChange().getValue()).get("fields")).keySet()));
+
+        Message init = BinaryCodec.decodeMessage(BinaryCodec.encode(new Message(Message.MessageType.INIT, "other")));
+        Assertions.assertEquals(Message.MessageType.INIT, init.getType());
+        Assertions.assertEquals("other", init.getSessionId());
+        Assertions.assertNull(init.getChange());
+
+        Change move = new Change(Change.ChangeType.MOVE, "creation/entities/b", null,
+                new DontCodeModelPointer("creation/entities/b", null, "creation", "creation", "b", null), "creation/entities/a", null);
+        Change decodedMove = BinaryCodec.decodeChange(BinaryCodec.encode(move));
+        Assertions.assertEquals(move, decodedMove);
+        Assertions.assertNull(decodedMove.getPointer().getIsProperty());
+
+        // The kind and the version are checked
+        Assertions.assertThrows(IOException.class, () -> BinaryCodec.decodeChange(binary));
+        byte[] otherVersion = Arrays.copyOf(binary, binary.length);
+        otherVersion[2] = 99;
+        Assertions.assertThrows(IOException.class, () -> BinaryCodec.decodeMessage(otherVersion));
+        Assertions.assertThrows(IOException.class, () -> BinaryCodec.decodeMessage(Arrays.copyOf(binary, binary.length - 3)));
+    }
+
+    @Test
+    public void itShouldEncodeAllKindsOfValues () throws IOException {
+        ModelMap model = new ModelMap();
+        model.put("string", "Ünïcödé value");
+        model.put("int", -12);
+        model.put("long", 1L << 40);
+        model.put("double", 3.25);
+        model.put("true", true);
+        model.put("false", false);
+        model.put("decimal", new BigDecimal("12345678901234567890.123"));
+        model.put("list", List.of("a", 1, List.of()));
+        model.put("null", null);
+        model.put("empty", new ModelMap());
+
+        MapOrString decoded = BinaryCodec.decodeModel(BinaryCodec.encodeModel(new MapOrString(model)));
+        Assertions.assertEquals(model, decoded.getMap());
+        Assertions.assertEquals(List.copyOf(model.keySet()), List.copyOf(decoded.getMap().keySet()));
+        Assertions.assertEquals("value", BinaryCodec.decodeModel(BinaryCodec.encodeModel(new MapOrString("value"))).getString());
+    }
+
+    @Test
+    public void itShouldEncodeSessionModels () throws URISyntaxException, IOException {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("sessions/very-complex-session.json");
+        MapOrString model;
+        try (ChangeStreamReader reader = ChangeStreamReader.of(Path.of(url.toURI()))) {
+            model = reader.applyTo(new MapOrString());
+        }
+        byte[] binary = BinaryCodec.encodeModel(model);
+        Assertions.assertTrue(binary.length < mapper.writeValueAsBytes(model.getMap()).length);
+        Assertions.assertEquals(mapper.writeValueAsString(model.getMap()), mapper.writeValueAsString(BinaryCodec.decodeModel(binary).getMap()));
+    }
+
+    @Test
+    public void itShouldRejectCorruptedContent () throws IOException {
+        byte[] binary = BinaryCodec.encode(new Message(Message.MessageType.CHANGE, "session",
+                new Change(Change.ChangeType.ADD, "creation/entities/a", List.of("a", "b"))));
+
+        // Message type out of range, just after the header
+        byte[] wrongType = Arrays.copyOf(binary, binary.length);
+        wrongType[4] = 42;
+        IOException error = Assertions.assertThrows(IOException.class, () -> BinaryCodec.decodeMessage(wrongType));
+        Assertions.assertTrue(error.getMessage().contains("offset 4"), error.getMessage());
+        wrongType[4] = -1;
+        Assertions.assertThrows(IOException.class, () -> BinaryCodec.decodeMessage(wrongType));
+
+        // A huge list count must not be allocated
+        byte[] hugeList = {BinaryCodec.MAGIC[0], BinaryCodec.MAGIC[1], BinaryCodec.VERSION, BinaryCodec.MODEL, 3, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        error = Assertions.assertThrows(IOException.class, () -> BinaryCodec.decodeModel(hugeList));
+        Assertions.assertTrue(error.getMessage().contains("offset 5"), error.getMessage());
+    }
+
+    @Test
+    public void itShouldRejectTooDeepContent () throws IOException {
+        ModelMap deep = new ModelMap();
+        ModelMap cur = deep;
+        for (int i = 0; i < BinaryReader.MAX_DEPTH + 10; i++) {
+            ModelMap child = new ModelMap();
+            cur.put("a", child);
+            cur = child;
+        }
+        byte[] binary = BinaryCodec.encodeModel(new MapOrString(deep));
+        IOException error = Assertions.assertThrows(IOException.class, () -> BinaryCodec.decodeModel(binary));
+        Assertions.assertTrue(error.getMessage().contains("nested"), error.getMessage());
+
+        ModelMap allowed = new ModelMap();
+        cur = allowed;
+        for (int i = 1; i < BinaryReader.MAX_DEPTH; i++) {
+            ModelMap child = new ModelMap();
+            cur.put("a", child);
+            cur = child;
+        }
+        Assertions.assertEquals(allowed, BinaryCodec.decodeModel(BinaryCodec.encodeModel(new MapOrString(allowed))).getMap());
+    }
+
+    @Test
+    public void itShouldEncodeFromVirtualThreads () throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Change>> decoded = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Change change = new Change(Change.ChangeType.ADD, "creation/entities/"+ModelMap.keyOf(i), Map.of("name", "Entity "+i));
+                decoded.add(executor.submit(() -> BinaryCodec.decodeChange(BinaryCodec.encode(change))));
+            }
+            for (int i = 0; i < decoded.size(); i++) {
+                Change change = decoded.get(i).get();
+                Assertions.assertEquals("creation/entities/"+ModelMap.keyOf(i), change.getPosition());
+                Assertions.assertEquals(Map.of("name", "Entity "+i), change.getValue());
+            }
+        }
+    }
+}
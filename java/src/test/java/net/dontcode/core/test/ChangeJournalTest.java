@@ -0,0 +1,157 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.Models;
+import net.dontcode.core.journal.ChangeJournal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ChangeJournalTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void itShouldRecoverFromSnapshotAndTail () throws URISyntaxException, IOException {
+        List<Change> changes = loadSession("sessions/very-complex-session.json");
+        MapOrString expected = new MapOrString();
+        try (ChangeJournal journal = ChangeJournal.open(tempDir, "session1", 4096, 7)) {
+            MapOrString model = new MapOrString();
+            for (Change change : changes) {
+                model = journal.apply(model, new Message(Message.MessageType.CHANGE, "session1", change));
+                Models.applyChange(expected, change);
+            }
+            Assertions.assertEquals(changes.size(), journal.getSequence());
+            Assertions.assertTrue(journal.getSnapshotSequence() > 0);
+            Assertions.assertEquals(mapper.writeValueAsString(expected.getMap()), mapper.writeValueAsString(journal.recover().getMap()));
+        }
+
+        // Only the latest snapshot and the segments after it are kept
+        try (Stream<Path> files = Files.list(tempDir.resolve("session1"))) {
+            Assertions.assertEquals(1, files.filter(file -> file.toString().endsWith(".snapshot")).count());
+        }
+
+        try (ChangeJournal reopened = ChangeJournal.open(tempDir, "session1", 4096, 7)) {
+            Assertions.assertEquals(changes.size(), reopened.getSequence());
+            Assertions.assertEquals(mapper.writeValueAsString(expected.getMap()), mapper.writeValueAsString(reopened.recover().getMap()));
+        }
+    }
+
+    @Test
+    public void itShouldHandleBigMessagesAndManySegments () throws IOException {
+        StringBuilder bigValue = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            bigValue.append("Big value ").append(i);
+        }
+        try (ChangeJournal journal = ChangeJournal.open(tempDir, "session2", 512, Integer.MAX_VALUE)) {
+            journal.append(new Message(Message.MessageType.INIT, "session2"));
+            for (int i = 0; i < 100; i++) {
+                journal.append(new Change(Change.ChangeType.ADD, "creation/entities/e" + i + "/name", "Entity " + i));
+            }
+            journal.append(new Change(Change.ChangeType.UPDATE, "creation/name", bigValue.toString()));
+            journal.append(new Change(Change.ChangeType.DELETE, "creation/entities/e50", null));
+            journal.flush();
+        }
+
+        try (ChangeJournal journal = ChangeJournal.open(tempDir, "session2", 512, Integer.MAX_VALUE)) {
+            Assertions.assertEquals(103, journal.getSequence());
+            MapOrString model = journal.recover();
+            Assertions.assertEquals(bigValue.toString(), Models.findAtPosition(model, "creation/name", false).getString());
+            Assertions.assertEquals(99, Models.findAtPosition(model, "creation/entities", false).getMap().size());
+            Assertions.assertEquals("Entity 99", Models.findAtPosition(model, "creation/entities/e99/name", false).getString());
+        }
+    }
+
+    @Test
+    public void itShouldIgnorePartiallyWrittenMessages () throws IOException {
+        Path segment;
+        try (ChangeJournal journal = ChangeJournal.open(tempDir, "session3")) {
+            journal.append(new Change(Change.ChangeType.ADD, "creation/name", "First"));
+            journal.append(new Change(Change.ChangeType.UPDATE, "creation/name", "Second"));
+            try (Stream<Path> files = Files.list(tempDir.resolve("session3"))) {
+                segment = files.filter(file -> file.toString().endsWith(".segment")).findFirst().orElseThrow();
+            }
+        }
+
+        // Corrupt the content of the second message
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            int firstLength = file.readInt();
+            file.seek(8 + firstLength + 8 + 2);
+            file.write('#');
+        }
+
+        try (ChangeJournal journal = ChangeJournal.open(tempDir, "session3")) {
+            Assertions.assertEquals(1, journal.getSequence());
+            Assertions.assertEquals("First", Models.findAtPosition(journal.recover(), "creation/name", false).getString());
+            // New messages replace the corrupted one
+            journal.append(new Change(Change.ChangeType.UPDATE, "creation/name", "Third"));
+            Assertions.assertEquals("Third", Models.findAtPosition(journal.recover(), "creation/name", false).getString());
+        }
+    }
+
+    @Test
+    public void itShouldNotJournalChangesThatFail () throws IOException {
+        // A MOVE from a missing position cannot be applied
+        Change failing = new Change(Change.ChangeType.MOVE, "creation/entities/b", null, null, "creation/entities/missing", null);
+        try (ChangeJournal journal = ChangeJournal.open(tempDir, "session4")) {
+            MapOrString model = journal.apply(new MapOrString(), new Message(Message.MessageType.CHANGE, "session4",
+                    new Change(Change.ChangeType.ADD, "creation/name", "First")));
+            MapOrString current = model;
+            Assertions.assertThrows(RuntimeException.class, () -> journal.apply(current, new Message(Message.MessageType.CHANGE, "session4", failing)));
+            Assertions.assertEquals(1, journal.getSequence());
+            journal.apply(model, new Message(Message.MessageType.CHANGE, "session4", new Change(Change.ChangeType.UPDATE, "creation/name", "Second")));
+        }
+
+        // Journals written before may still contain such changes: they are skipped
+        try (ChangeJournal journal = ChangeJournal.open(tempDir, "session4")) {
+            journal.append(failing);
+            journal.append(new Change(Change.ChangeType.UPDATE, "creation/name", "Third"));
+            Assertions.assertEquals("Third", Models.findAtPosition(journal.recover(), "creation/name", false).getString());
+        }
+    }
+
+    @Test
+    public void itShouldReplayChangesOneByOne () throws IOException {
+        try (ChangeJournal journal = ChangeJournal.open(tempDir, "session5")) {
+            MapOrString model = new MapOrString();
+            for (Change change: List.of(new Change(Change.ChangeType.ADD, "creation/entities/a", Map.of("name", "First")),
+                    new Change(Change.ChangeType.ADD, "creation/entities/b", "Second"),
+                    new Change(Change.ChangeType.DELETE, "creation/entities/b", null))) {
+                model = journal.apply(model, new Message(Message.MessageType.CHANGE, "session5", change));
+            }
+            MapOrString recovered = journal.recover();
+            Assertions.assertEquals(mapper.writeValueAsString(model.getMap()), mapper.writeValueAsString(recovered.getMap()));
+            // The key of the deleted element is not given again
+            Assertions.assertEquals(Models.generateNextKeyForPosition(model, "creation/entities", false),
+                    Models.generateNextKeyForPosition(recovered, "creation/entities", false));
+        }
+    }
+
+    protected List<Change> loadSession (String session) throws URISyntaxException, IOException {
+        URL url = Thread.currentThread().getContextClassLoader().getResource(session);
+        MapOrString jsonContent = new MapOrString(Utils.fromJsonToMap(Files.readString(Path.of(url.toURI()))));
+        List<Change> changes = new ArrayList<>();
+        for (var key : jsonContent.getMap().keySet()) {
+            var curContent = jsonContent.mapGetMap(key).get();
+            changes.add(new Change(Change.ChangeType.valueOf(curContent.get("type").toString()),
+                    (String) curContent.get("position"), curContent.get("value")));
+        }
+        return changes;
+    }
+}
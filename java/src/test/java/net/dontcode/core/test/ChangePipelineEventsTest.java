@@ -0,0 +1,91 @@
+package net.dontcode.core.test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.Models;
+import net.dontcode.core.binary.BinaryCodec;
+import net.dontcode.core.jfr.ChangePipelineRecording;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ChangePipelineEventsTest {
+    protected static final String[] EVENTS = {"net.dontcode.core.ApplyChange", "net.dontcode.core.FindAtPosition",
+            "net.dontcode.core.MapInsertRebuild", "net.dontcode.core.MessageDecode", "net.dontcode.core.SessionApply"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void itShouldShipTheSettings () {
+        Map<String, String> settings = ChangePipelineRecording.getSettings();
+        for (String event: EVENTS) {
+            Assertions.assertEquals("true", settings.get(event+"#enabled"), event);
+        }
+        Assertions.assertEquals("1 ms", settings.get("net.dontcode.core.ApplyChange#threshold"));
+        // The default settings of the JDK are kept
+        Assertions.assertEquals("true", settings.get("jdk.GarbageCollection#enabled"));
+    }
+
+    @Test
+    public void itShouldRecordChangePipelineEvents () throws IOException {
+        Path file = directory.resolve("events.jfr");
+        try (Recording recording = new Recording(ChangePipelineRecording.getConfiguration())) {
+            for (String event: EVENTS) {
+                recording.enable(event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            Message message = BinaryCodec.decodeMessage(BinaryCodec.encode(new Message(Message.MessageType.CHANGE, "session",
+                    new Change(Change.ChangeType.ADD, "creation/entities/a", Map.of("name", "Entity")))));
+            MapOrString model = Models.applyChange(new MapOrString(), message.getChange());
+            Assertions.assertNull(Models.findAtPosition(model, "creation/screens/b", false));
+
+            // A map that is not a ModelMap is rebuilt to insert before a key
+            Map<String, Object> fields = new LinkedHashMap<>(Map.of("a", "First"));
+            new MapOrString(fields).mapInsert("b", "Second", "a");
+            Assertions.assertEquals(List.of("b", "a"), List.copyOf(fields.keySet()));
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent decode = find(events, "net.dontcode.core.MessageDecode");
+        Assertions.assertEquals("binary", decode.getString("format"));
+        Assertions.assertEquals("session", decode.getString("sessionId"));
+        Assertions.assertEquals("creation/entities/a", decode.getString("position"));
+
+        RecordedEvent apply = find(events, "net.dontcode.core.ApplyChange");
+        Assertions.assertEquals("creation/entities/a", apply.getString("position"));
+        Assertions.assertEquals("ADD", apply.getString("changeType"));
+        Assertions.assertEquals(2, apply.getInt("touchedElements"));
+
+        List<RecordedEvent> finds = events.stream().filter(event -> event.getEventType().getName().equals("net.dontcode.core.FindAtPosition")).toList();
+        Assertions.assertEquals(2, finds.size());
+        Assertions.assertEquals("creation", finds.get(0).getString("missingElement"));
+        Assertions.assertEquals(2, finds.get(0).getInt("createdElements"));
+        Assertions.assertEquals("screens", finds.get(1).getString("missingElement"));
+        Assertions.assertEquals(0, finds.get(1).getInt("createdElements"));
+
+        RecordedEvent rebuild = find(events, "net.dontcode.core.MapInsertRebuild");
+        Assertions.assertEquals("b", rebuild.getString("key"));
+        Assertions.assertEquals(2, rebuild.getInt("mapSize"));
+    }
+
+    protected RecordedEvent find (List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).findFirst()
+                .orElseThrow(() -> new AssertionError("No event "+name));
+    }
+}
@@ -0,0 +1,83 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.Models;
+import net.dontcode.core.json.ChangeStreamReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ChangeStreamReaderTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldApplySessionsWhileReading () throws URISyntaxException, IOException {
+        for (String session: new String[] {"sessions/complex-session.json", "sessions/very-complex-session.json"}) {
+            URL url = Thread.currentThread().getContextClassLoader().getResource(session);
+            Path file = Path.of(url.toURI());
+
+            MapOrString expected = new MapOrString();
+            MapOrString jsonContent = new MapOrString(Utils.fromJsonToMap(Files.readString(file)));
+            for (var key : jsonContent.getMap().keySet()) {
+                var curContent = jsonContent.mapGetMap(key).get();
+                Models.applyChange(expected, new Change(Change.ChangeType.valueOf(curContent.get("type").toString()),
+                        (String) curContent.get("position"), curContent.get("value")));
+            }
+
+            MapOrString result;
+            try (ChangeStreamReader reader = ChangeStreamReader.of(file)) {
+                result = reader.applyTo(new MapOrString());
+            }
+            Assertions.assertEquals(mapper.writeValueAsString(expected.getMap()), mapper.writeValueAsString(result.getMap()));
+        }
+    }
+
+    @Test
+    public void itShouldReadAllChangeElements () throws IOException {
+        String json = """
+                [
+                  { "type": "ADD", "position": "creation/entities/a", "unknown": {"ignored": [1, 2]},
+                    "value": { "name": "A", "fields": { "b": { "name": "id" }, "a": { "name": "name" } } },
+                    "pointer": { "position": "creation/entities/a", "positionInSchema": "creation/entities",
+                      "containerPosition": "creation", "containerPositionInSchema": "creation", "lastElement": "a", "isProperty": false }
+                  },
+                  { "type": "MOVE", "position": "creation/entities/b", "oldPosition": "creation/entities/a", "beforeKey": null }
+                ]""";
+        try (ChangeStreamReader reader = ChangeStreamReader.of(new StringReader(json))) {
+            List<Change> changes = reader.stream().toList();
+            Assertions.assertEquals(2, changes.size());
+
+            Change add = changes.get(0);
+            Assertions.assertEquals(Change.ChangeType.ADD, add.getType());
+            Assertions.assertInstanceOf(ModelMap.class, add.getValue());
+            Assertions.assertArrayEquals(new String[]{"b", "a"}, ((ModelMap) ((ModelMap) add.getValue()).get("fields")).keySet().toArray());
+            Assertions.assertEquals("creation/entities", add.getPointer().getPositionInSchema());
+            Assertions.assertEquals("a", add.getPointer().getLastElement());
+            Assertions.assertEquals(Boolean.FALSE, add.getPointer().getIsProperty());
+
+            Change move = changes.get(1);
+            Assertions.assertEquals(Change.ChangeType.MOVE, move.getType());
+            Assertions.assertEquals("creation/entities/a", move.getOldPosition());
+            Assertions.assertNull(move.getBeforeKey());
+            Assertions.assertNull(move.getValue());
+            Assertions.assertFalse(reader.hasNext());
+        }
+
+        try (ChangeStreamReader reader = ChangeStreamReader.of(new StringReader("{}"))) {
+            Assertions.assertFalse(reader.hasNext());
+        }
+        try (ChangeStreamReader reader = ChangeStreamReader.of(new StringReader("\"wrong\""))) {
+            Assertions.assertThrows(RuntimeException.class, reader::hasNext);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.dontcode.core.test;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.subscription.ChangeSubscriptions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ChangeSubscriptionsTest {
+
+    @Test
+    public void itShouldNotifyLikeTheTypeScriptManager () {
+        ChangeSubscriptions subscriptions = new ChangeSubscriptions();
+        List<String> all = new ArrayList<>();
+        List<String> screens = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> items = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        subscriptions.subscribe("", change -> all.add(change.getPosition()));
+        subscriptions.subscribe("creation/screens", change -> screens.add(change.getPosition()));
+        subscriptions.subscribe("creation/screens", "name", change -> names.add(change.getPosition()));
+        subscriptions.subscribe("creation/screens/?", change -> items.add(change.getPosition()));
+        ChangeSubscriptions.Subscription fieldSubscription = subscriptions.subscribe("creation/entities/*/fields", change -> fields.add(change.getPosition()));
+
+        Assertions.assertEquals(3, subscriptions.publish(new Change(Change.ChangeType.ADD, "creation/screens/a/name", "Screen")));
+        subscriptions.publish(new Change(Change.ChangeType.DELETE, "creation/screens/b", null));
+        subscriptions.publish(new Change(Change.ChangeType.ADD, "creation/screens/b/layout/name", "Not the name"));
+        subscriptions.publish(new Change(Change.ChangeType.ADD, "creation/entities/a/fields/b/name", "Field"));
+        subscriptions.publish(new Change(Change.ChangeType.ADD, "creation/entities/a/name", "Entity"));
+
+        Assertions.assertEquals(5, all.size());
+        Assertions.assertEquals(List.of("creation/screens/a/name", "creation/screens/b", "creation/screens/b/layout/name"), screens);
+        Assertions.assertEquals(List.of("creation/screens/a/name"), names);
+        Assertions.assertEquals(List.of("creation/screens/b"), items);
+        Assertions.assertEquals(List.of("creation/entities/a/fields/b/name"), fields);
+
+        fieldSubscription.close();
+        Assertions.assertEquals(1, subscriptions.publish(new Change(Change.ChangeType.ADD, "creation/entities/a/fields/c/name", "Field")));
+        Assertions.assertEquals(1, fields.size());
+    }
+
+    @Test
+    public void itShouldReceiveAppliedChanges () throws IOException {
+        ChangeSubscriptions subscriptions = new ChangeSubscriptions();
+        List<Change> received = new ArrayList<>();
+        List<Change> entities = new ArrayList<>();
+        subscriptions.subscribe("creation/entities", "name", received::add);
+        subscriptions.subscribe("creation/entities", entities::add);
+        MapOrString model = new MapOrString(Utils.fromJsonToMap("{ \"creation\": { \"entities\": {} } }"));
+        subscriptions.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/a", Map.of("name", "A", "from", "Source")));
+        subscriptions.applyChange(model, new Change(Change.ChangeType.UPDATE, "creation/entities/a/name", "B"));
+        // Adding a new entity is a single change of the entity, not of its name
+        Assertions.assertEquals(List.of("creation/entities/a", "creation/entities/a/name"), entities.stream().map(Change::getPosition).toList());
+        Assertions.assertEquals(List.of("creation/entities/a/name"), received.stream().map(Change::getPosition).toList());
+        Assertions.assertEquals("B", received.get(0).getValue());
+    }
+
+    @Test
+    public void itShouldScaleWithConcurrentListeners () throws InterruptedException {
+        ChangeSubscriptions subscriptions = new ChangeSubscriptions();
+        AtomicInteger received = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    ChangeSubscriptions.Subscription subscription = subscriptions.subscribe("creation/entities/e"+thread+"_"+i, change -> received.incrementAndGet());
+                    subscriptions.publish(new Change(Change.ChangeType.ADD, "creation/entities/e"+thread+"_"+i+"/name", "Name"));
+                    if (i%2==0)
+                        subscription.close();
+                }
+            }));
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(8000, received.get());
+        // Only the matching listeners are visited
+        Assertions.assertEquals(1, subscriptions.matching("creation/entities/e3_1/fields").size());
+        Assertions.assertEquals(0, subscriptions.matching("creation/entities/e3_2/fields").size());
+        Assertions.assertEquals(0, subscriptions.matching("creation/screens").size());
+    }
+}
@@ -0,0 +1,100 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.Message;
+import net.dontcode.core.json.ChangeStreamReader;
+import net.dontcode.core.schema.ChangeValidator;
+import net.dontcode.core.schema.DontCodeSchemaManager;
+import net.dontcode.core.session.SessionModelManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+public class ChangeValidatorTest {
+
+    @Test
+    public void itShouldAcceptValidChanges () throws IOException {
+        ChangeValidator validator = new ChangeValidator();
+        Assertions.assertNull(validator.check(new Change(Change.ChangeType.ADD, "creation/name", "App")));
+        Assertions.assertNull(validator.check(new Change(Change.ChangeType.UPDATE, "creation/entities/a/fields/b/type", "Date & Time")));
+        Assertions.assertNull(validator.check(new Change(Change.ChangeType.ADD, "creation/entities/a", Utils.fromJsonToMap("""
+                { "name": "Entity", "from": "Source", "fields": { "b": { "name": "Id", "type": "Number" } } }"""))));
+        Assertions.assertNull(validator.check(new Change(Change.ChangeType.RESET, "", Utils.fromJsonToMap("""
+                { "creation": { "type": "Application", "sharing": { "with": "No-one" }, "sources": { "s": { "name": "Rest", "url": "https://test.com" } } } }"""))));
+        Assertions.assertNull(validator.check(new Change(Change.ChangeType.DELETE, "creation/entities/a/fields/b", null)));
+        Assertions.assertNull(validator.check(new Change(Change.ChangeType.MOVE, "creation/entities/a/fields/c", null, null, "creation/entities/b/fields/d", null)));
+        // Sources accept any property
+        Assertions.assertNull(validator.check(new Change(Change.ChangeType.ADD, "creation/sources/s/config/url", "https://test.com")));
+    }
+
+    @Test
+    public void itShouldRejectInvalidChanges () throws IOException {
+        ChangeValidator validator = new ChangeValidator();
+        Assertions.assertNotNull(validator.check(new Change(Change.ChangeType.ADD, "creation/pizzas/a", "Margherita")));
+        Assertions.assertNotNull(validator.check(new Change(Change.ChangeType.ADD, "creation/entities/a/unknown", "Value")));
+        Assertions.assertNotNull(validator.check(new Change(Change.ChangeType.UPDATE, "creation/entities/a/fields/b/type", "Pizza")));
+        Assertions.assertNotNull(validator.check(new Change(Change.ChangeType.UPDATE, "creation/name", null)));
+        Assertions.assertEquals("Unknown property creation/entities/a/fields/b/size",
+                validator.check(new Change(Change.ChangeType.ADD, "creation/entities/a", Utils.fromJsonToMap("""
+                { "name": "Entity", "fields": { "b": { "name": "Id", "size": 12 } } }"""))));
+        Assertions.assertNotNull(validator.check(new Change(Change.ChangeType.ADD, "creation/entities/a/name", Utils.fromJsonToMap("{ \"name\": \"Id\" }"))));
+        Assertions.assertNotNull(validator.check(new Change(Change.ChangeType.ADD, "creation/entities", "Entity")));
+        Assertions.assertEquals("Cannot move creation/reports to creation/entities",
+                validator.check(new Change(Change.ChangeType.MOVE, "creation/entities/a", null, null, "creation/reports/b", null)));
+    }
+
+    @Test
+    public void itShouldAcceptValuesAddedByPlugins () throws IOException, URISyntaxException {
+        DontCodeSchemaManager schemaManager = new DontCodeSchemaManager();
+        ChangeValidator validator = new ChangeValidator(schemaManager);
+        URL url = Thread.currentThread().getContextClassLoader().getResource("sessions/very-complex-session.json");
+        List<String> rejected;
+        try (ChangeStreamReader reader = ChangeStreamReader.of(Path.of(url.toURI()))) {
+            rejected = reader.stream().map(validator::check).filter(Objects::nonNull).distinct().toList();
+        }
+        Assertions.assertEquals(List.of("Invalid value Rating at creation/entities/a/fields/f/type", "Invalid value Dont-code users at creation/sharing/with"), rejected);
+
+        ObjectMapper mapper = new ObjectMapper();
+        schemaManager.registerChanges("creation/entities/fields/type", mapper.readTree("""
+                { "enum": [ { "Plugin": { "enum": ["Rating"] } } ] }"""));
+        schemaManager.registerChanges("creation/sharing/with", mapper.readTree("""
+                { "enum": ["Dont-code users"] }"""));
+        try (ChangeStreamReader reader = ChangeStreamReader.of(Path.of(url.toURI()))) {
+            rejected = reader.stream().map(validator::check).filter(Objects::nonNull).distinct().toList();
+        }
+        // Only remains the RESET that wrongly put sharing in entities
+        Assertions.assertEquals(List.of("Unknown property creation/entities/sharing/with"), rejected);
+        Assertions.assertTrue(schemaManager.locateItem("creation/entities/fields/type", true).getEnumValues().contains("Plugin"));
+        Assertions.assertThrows(RuntimeException.class, () -> schemaManager.registerChanges("creation/name", mapper.readTree("""
+                { "enum": ["Name"] }""")));
+    }
+
+    @Test
+    public void itShouldReturnErrorMessages () throws ExecutionException, InterruptedException {
+        ChangeValidator validator = new ChangeValidator();
+        Message valid = new Message(Message.MessageType.CHANGE, "session", new Change(Change.ChangeType.ADD, "creation/name", "App"));
+        Assertions.assertSame(valid, validator.validate(valid));
+        Message init = new Message(Message.MessageType.INIT, "session");
+        Assertions.assertSame(init, validator.validate(init));
+
+        Message error = validator.validate(new Message(Message.MessageType.CHANGE, "session", new Change(Change.ChangeType.ADD, "creation/pizza", "App")));
+        Assertions.assertEquals(Message.MessageType.ERROR, error.getType());
+        Assertions.assertEquals("session", error.getSessionId());
+        Assertions.assertEquals("creation/pizza", error.getChange().getPosition());
+        Assertions.assertEquals("Position creation/pizza doesn't exist in the schema", error.getChange().getValue());
+
+        try (SessionModelManager manager = new SessionModelManager(Executors.newVirtualThreadPerTaskExecutor(), validator)) {
+            Assertions.assertThrows(ExecutionException.class, () -> manager.submit("session", new Change(Change.ChangeType.ADD, "creation/pizza", "App")).get());
+            Assertions.assertEquals("App", manager.submit(valid).get().find("creation/name").getMapOrStringValue());
+        }
+    }
+}
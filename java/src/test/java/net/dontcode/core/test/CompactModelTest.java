@@ -0,0 +1,150 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.Models;
+import net.dontcode.core.compact.CompactModel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class CompactModelTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldWorkWithModels () throws IOException {
+        CompactModel compact = CompactModel.of(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test",
+                  "entities": {
+                    "a": { "name": "Entity1", "fields": { "a": { "name": "Name", "type": "Text" } } },
+                    "b": { "name": "Entity2" }
+                  } } }"""));
+        MapOrString model = compact.asMapOrString();
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/c", Map.of("name", "Entity3")));
+        Models.applyChange(model, new Change(Change.ChangeType.UPDATE, "creation/entities/a/fields/a/type", "Number"));
+        Models.applyChange(model, new Change(Change.ChangeType.MOVE, "creation/entities/c", null, null, "creation/entities/c", "a"));
+        Models.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/entities/b", null));
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/screens/a/name", "Screen"));
+
+        Assertions.assertEquals("Number", model.find("creation/entities/a/fields/a/type").getString());
+        Assertions.assertEquals("Screen", Models.findAtPosition(model, "creation/screens/a/name", false).getString());
+        Assertions.assertEquals("{\"creation\":{\"name\":\"Test\",\"entities\":{\"c\":{\"name\":\"Entity3\"},\"a\":{\"name\":\"Entity1\",\"fields\":{\"a\":{\"name\":\"Name\",\"type\":\"Number\"}}}},\"screens\":{\"a\":{\"name\":\"Screen\"}}}}",
+                mapper.writeValueAsString(compact.getRoot()));
+        Assertions.assertEquals(compact.getRoot(), compact.toModelMap());
+        Assertions.assertInstanceOf(ModelMap.class, compact.toModelMap().get("creation"));
+    }
+
+    @Test
+    public void itShouldCompact () throws IOException {
+        CompactModel compact = new CompactModel();
+        MapOrString model = compact.asMapOrString();
+        for (int i = 0; i < 100; i++) {
+            Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/"+ModelMap.keyOf(i), Map.of("name", "Entity "+i, "from", "Source")));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            Models.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/entities/"+ModelMap.keyOf(i), null));
+        }
+        String before = mapper.writeValueAsString(compact.getRoot());
+        Map<String, Object> entities = model.find("creation/entities").getMap();
+        Assertions.assertEquals(150, compact.getGarbage());
+
+        Assertions.assertEquals(150, compact.compact());
+        Assertions.assertEquals(0, compact.getGarbage());
+        Assertions.assertEquals(153, compact.getAllocated());
+        Assertions.assertEquals(before, mapper.writeValueAsString(compact.getRoot()));
+        // The root is still valid, but not the other elements
+        Assertions.assertEquals("Entity 1", model.find("creation/entities/b/name").getString());
+        Assertions.assertThrows(RuntimeException.class, entities::size);
+    }
+
+    @Test
+    public void itShouldIndexBigElements () {
+        CompactModel compact = new CompactModel();
+        Map<String, Object> entities = compact.getRoot();
+        for (int i = 0; i < 40; i++) {
+            entities.put(ModelMap.keyOf(i), "Entity "+i);
+        }
+        Assertions.assertEquals(40, entities.size());
+        Assertions.assertEquals("Entity 39", entities.get(ModelMap.keyOf(39)));
+
+        // Moved, replaced and removed children are still found
+        compact.getRoot().putBefore(ModelMap.keyOf(39), "Moved", "a");
+        Assertions.assertEquals("Moved", entities.get(ModelMap.keyOf(39)));
+        Assertions.assertEquals(ModelMap.keyOf(39), entities.keySet().iterator().next());
+        entities.put("b", Map.of("name", "Map"));
+        Assertions.assertEquals(Map.of("name", "Map"), entities.get("b"));
+        for (int i = 0; i < 30; i++) {
+            entities.remove(ModelMap.keyOf(i));
+        }
+        Assertions.assertEquals(10, entities.size());
+        Assertions.assertNull(entities.get("b"));
+        Assertions.assertEquals("Entity 30", entities.get(ModelMap.keyOf(30)));
+        for (int i = 0; i < 30; i++) {
+            entities.put(ModelMap.keyOf(i), "Again "+i);
+        }
+        Assertions.assertEquals(40, entities.size());
+
+        compact.compact();
+        Assertions.assertEquals(40, entities.size());
+        Assertions.assertEquals("Again 1", entities.get("b"));
+        Assertions.assertEquals("Moved", entities.get(ModelMap.keyOf(39)));
+        entities.clear();
+        Assertions.assertTrue(entities.isEmpty());
+        Assertions.assertNull(entities.get("a"));
+    }
+
+    @Test
+    public void itShouldApplyChangesAroundCompactions () throws IOException {
+        MapOrString expected = new MapOrString();
+        CompactModel compact = new CompactModel();
+        MapOrString model = compact.asMapOrString();
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            changes.add(new Change(Change.ChangeType.ADD, "creation/entities/"+ModelMap.keyOf(i), Map.of("name", "Entity "+i, "fields", Map.of("a", "Id"))));
+        }
+        // Moved and replaced in an indexed element
+        changes.add(new Change(Change.ChangeType.MOVE, "creation/entities/"+ModelMap.keyOf(19), null, null, "creation/entities/"+ModelMap.keyOf(19), "b"));
+        changes.add(new Change(Change.ChangeType.UPDATE, "creation/entities/c", "Replaced"));
+        changes.add(new Change(Change.ChangeType.MOVE, "creation/entities/z", null, null, "creation/entities/d", null));
+        apply(expected, model, changes);
+        // Moved elements are copied, so the two moved and the replaced ones are left in the arrays
+        Assertions.assertEquals(12, compact.getGarbage());
+
+        compact.compact();
+        Assertions.assertEquals(0, compact.getGarbage());
+        Assertions.assertEquals(mapper.writeValueAsString(expected.getMap()), mapper.writeValueAsString(compact.getRoot()));
+
+        // The index is rebuilt by the compaction, and dropped below INDEXED_CHILDREN
+        changes.clear();
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/"+ModelMap.keyOf(19)+"/fields/b", "Label"));
+        for (int i = 4; i < 16; i++) {
+            changes.add(new Change(Change.ChangeType.DELETE, "creation/entities/"+ModelMap.keyOf(i), null));
+        }
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/c", "Again", null, null, "a"));
+        apply(expected, model, changes);
+        Assertions.assertEquals("Entity 16", model.find("creation/entities/"+ModelMap.keyOf(16)+"/name").getString());
+        Assertions.assertNull(model.find("creation/entities/"+ModelMap.keyOf(10)));
+
+        // A RESET replaces the whole element
+        changes.clear();
+        changes.add(new Change(Change.ChangeType.RESET, "creation/entities", Map.of("a", Map.of("name", "Only"))));
+        apply(expected, model, changes);
+        Assertions.assertEquals(compact.getAllocated() - 5, compact.getGarbage());
+        Assertions.assertEquals(compact.getAllocated() - 5, compact.compact());
+        Assertions.assertEquals(mapper.writeValueAsString(expected.getMap()), mapper.writeValueAsString(compact.toModelMap()));
+    }
+
+    protected void apply (MapOrString expected, MapOrString model, List<Change> changes) throws IOException {
+        for (Change change : changes) {
+            Models.applyChange(expected, change);
+            Models.applyChange(model, change);
+            Assertions.assertEquals(mapper.writeValueAsString(expected.getMap()), mapper.writeValueAsString(model.getMap()), change.getPosition());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.json.DontCodeJsonModule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public class DontCodeJsonModuleTest {
+
+    @Test
+    public void itShouldWriteLikeDatabind () throws IOException {
+        ObjectMapper reflective = new ObjectMapper();
+        Change change = Utils.createJsonTestChange(Change.ChangeType.ADD, "creation", null, "entities", "a", """
+                { "name": "A", "fields": { "b": { "name": "id", "type": "Number" }, "a": { "name": "name" } } }""", null);
+        change.setBeforeKey("b");
+        Message message = new Message(Message.MessageType.CHANGE, "session", change);
+
+        String json = DontCodeJsonModule.messageWriter.writeValueAsString(message);
+        Assertions.assertEquals(reflective.readTree(reflective.writeValueAsString(message)), reflective.readTree(json));
+
+        Message empty = new Message(Message.MessageType.INIT, "session");
+        Assertions.assertEquals(reflective.readTree(reflective.writeValueAsString(empty)), reflective.readTree(DontCodeJsonModule.messageWriter.writeValueAsString(empty)));
+    }
+
+    @Test
+    public void itShouldReadMessagesWithModelMaps () throws IOException {
+        Change change = new Change(Change.ChangeType.MOVE, "creation/entities/b", null,
+                new DontCodeModelPointer("creation/entities/b", "creation/entities", "creation", "creation", "b", false),
+                "creation/entities/a", "c");
+        Message message = new Message(Message.MessageType.CHANGE, "session", change);
+        Message read = DontCodeJsonModule.messageReader.readValue(DontCodeJsonModule.messageWriter.writeValueAsBytes(message));
+        Assertions.assertEquals(Message.MessageType.CHANGE, read.getType());
+        Assertions.assertEquals("session", read.getSessionId());
+        Assertions.assertEquals(change, read.getChange());
+        Assertions.assertEquals(change.getPointer(), read.getChange().getPointer());
+
+        Change update = DontCodeJsonModule.changeReader.readValue("""
+                { "type": "UPDATE", "position": "creation", "extra": [1, {"a": 2}], "value": { "name": "Test", "entities": { "b": { "name": "B" }, "a": { "name": "A" } }, "count": 3 } }""");
+        Assertions.assertInstanceOf(ModelMap.class, update.getValue());
+        Map<String, Object> entities = (Map<String, Object>) ((Map<String, Object>) update.getValue()).get("entities");
+        Assertions.assertInstanceOf(ModelMap.class, entities);
+        Assertions.assertEquals(List.of("b", "a"), List.copyOf(entities.keySet()));
+        Assertions.assertEquals(3, ((Map<String, Object>) update.getValue()).get("count"));
+
+        // Types can be used inside other beans
+        List<Change> changes = DontCodeJsonModule.mapper.readerForListOf(Change.class).readValue("[{\"type\":\"DELETE\",\"position\":\"creation/name\"}]");
+        Assertions.assertEquals(new Change(Change.ChangeType.DELETE, "creation/name", null), changes.get(0));
+    }
+
+    @Test
+    public void itShouldReadAndWriteMapOrString () throws IOException {
+        MapOrString model = DontCodeJsonModule.modelReader.readValue("{ \"creation\": { \"name\": \"Test\", \"entities\": {} } }");
+        Assertions.assertInstanceOf(ModelMap.class, model.getMap());
+        Assertions.assertEquals("Test", model.mapGetMap("creation").get().get("name"));
+        Assertions.assertEquals("{\"creation\":{\"name\":\"Test\",\"entities\":{}}}", DontCodeJsonModule.modelWriter.writeValueAsString(model));
+
+        MapOrString string = DontCodeJsonModule.modelReader.readValue("\"value\"");
+        Assertions.assertEquals("value", string.getString());
+        Assertions.assertEquals("\"value\"", DontCodeJsonModule.modelWriter.writeValueAsString(string));
+        Assertions.assertEquals("12", DontCodeJsonModule.modelReader.<MapOrString>readValue("12").getString());
+    }
+}
@@ -0,0 +1,75 @@
+package net.dontcode.core.test;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.index.SchemaPositionIndex;
+import net.dontcode.core.schema.DontCodeSchemaItem;
+import net.dontcode.core.schema.DontCodeSchemaManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Set;
+
+public class DontCodeSchemaManagerTest {
+
+    @Test
+    public void itShouldGeneratePointers () {
+        DontCodeSchemaManager manager = DontCodeSchemaManager.getDefault();
+        Assertions.assertSame(manager, DontCodeSchemaManager.getDefault());
+
+        DontCodeModelPointer pointer = manager.generateSchemaPointer("creation/entities/a/fields/b/name");
+        Assertions.assertEquals(new DontCodeModelPointer("creation/entities/a/fields/b/name", "creation/entities/fields/name",
+                "creation/entities/a/fields/b", "creation/entities/fields", "name", true), pointer);
+        Assertions.assertEquals("creation/entities/a/fields/b", pointer.getContainerPosition());
+        Assertions.assertEquals("creation/entities/fields", pointer.getContainerPositionInSchema());
+        Assertions.assertEquals("name", pointer.getLastElement());
+        Assertions.assertTrue(pointer.getIsProperty());
+
+        DontCodeModelPointer item = manager.generateSchemaPointer("creation/entities/a");
+        Assertions.assertEquals("creation/entities", item.getPositionInSchema());
+        Assertions.assertEquals("creation", item.getContainerPositionInSchema());
+        Assertions.assertEquals("a", item.getLastElement());
+        Assertions.assertFalse(item.getIsProperty());
+
+        DontCodeModelPointer creation = manager.generateSchemaPointer("creation");
+        Assertions.assertEquals("", creation.getContainerPosition());
+        Assertions.assertEquals("", creation.getContainerPositionInSchema());
+        Assertions.assertEquals("", manager.generateSchemaPointer("").getPositionInSchema());
+
+        // Same result from the cache, but as a new pointer
+        Assertions.assertNotSame(pointer, manager.generateSchemaPointer("creation/entities/a/fields/b/name"));
+        pointer.setPositionInSchema("modified");
+        Assertions.assertEquals("creation/entities/fields/name", manager.positionInSchemaOf("creation/entities/a/fields/b/name"));
+
+        Assertions.assertThrows(RuntimeException.class, () -> manager.generateSchemaPointer("creation/pizzas/a"));
+        Assertions.assertNull(manager.positionInSchemaOf("creation/entities/a/unknown"));
+        Assertions.assertEquals("creation/reports/groupedBy/display/operation", manager.positionInSchemaOf("creation/reports/a/groupedBy/b/display/c/operation"));
+    }
+
+    @Test
+    public void itShouldLocateItems () {
+        DontCodeSchemaManager manager = DontCodeSchemaManager.getDefault();
+        DontCodeSchemaItem entities = manager.locateItem("creation/entities", false);
+        Assertions.assertTrue(entities.isArray());
+        Assertions.assertTrue(entities.isReference());
+        Assertions.assertEquals("#/$defs/entity", entities.getReference());
+        DontCodeSchemaItem entity = manager.locateItem("creation/entities", true);
+        Assertions.assertEquals(Set.of("from", "name", "fields"), entity.getChildren().keySet());
+        Assertions.assertEquals("$.creation.sources.name", manager.locateItem("creation/entities/from", true).getTargetPath());
+        Assertions.assertEquals(DontCodeSchemaItem.Kind.ENUM, manager.locateItem("creation/entities/fields/type", true).getKind());
+        Assertions.assertThrows(RuntimeException.class, () -> manager.locateItem("creation/unknown", true));
+    }
+
+    @Test
+    public void itShouldIndexWithTheSchema () throws IOException {
+        MapOrString model = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test", "entities": {
+                  "a": { "name": "A", "fields": { "a": { "name": "id" } } } }, "other": "ignored" } }"""));
+        SchemaPositionIndex index = new SchemaPositionIndex(DontCodeSchemaManager.getDefault().pointerResolver()).index(model);
+        index.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/a/fields/b", Utils.fromJsonToMap("{ \"name\": \"label\" }")));
+        Assertions.assertEquals(Set.of("creation/entities/a/fields/a", "creation/entities/a/fields/b"), index.getItems("creation/entities/fields"));
+        Assertions.assertNull(index.getPointer("creation/other"));
+    }
+}
@@ -0,0 +1,130 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that applying a batch of changes gives the same result as applying them one by one
+ */
+public class ModelBatchTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldCoalesceChangesToTheSamePosition () throws JsonProcessingException {
+        List<Change> changes = new ArrayList<>();
+        changes.add(new Change(Change.ChangeType.ADD, "creation/name", "N"));
+        changes.add(new Change(Change.ChangeType.UPDATE, "creation/name", "Na"));
+        changes.add(new Change(Change.ChangeType.UPDATE, "creation/name", "Name"));
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/a", Utils.fromJsonToMap("""
+                {"name": "Entity A"}""")));
+        changes.add(new Change(Change.ChangeType.UPDATE, "creation/entities/a/name", "Entity"));
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/b/name", "Entity B"));
+        changes.add(new Change(Change.ChangeType.DELETE, "creation/entities/b/name", null));
+        changes.add(new Change(Change.ChangeType.DELETE, "creation/screens/a", null));
+
+        checkSameResult(changes);
+        MapOrString batch = Models.applyChanges(new MapOrString(), changes);
+        Assertions.assertEquals("Name", batch.find("creation/name").getString());
+        // The parent of a deleted element is still created
+        Assertions.assertTrue(batch.find("creation/entities/b").isNull());
+        Assertions.assertNull(batch.find("creation/screens"));
+    }
+
+    @Test
+    public void itShouldReplaySessions () throws URISyntaxException, IOException {
+        for (String session: new String[] {"sessions/complex-session.json", "sessions/very-complex-session.json"}) {
+            URL url = Thread.currentThread().getContextClassLoader().getResource(session);
+            MapOrString jsonContent = new MapOrString(Utils.fromJsonToMap(Files.readString(Path.of(url.toURI()))));
+            List<Change> changes = new ArrayList<>();
+            for (var key : jsonContent.getMap().keySet()) {
+                var curContent = jsonContent.mapGetMap(key).get();
+                changes.add(new Change(Change.ChangeType.valueOf(curContent.get("type").toString()),
+                        (String) curContent.get("position"), curContent.get("value")));
+            }
+            checkSameResult(changes);
+            Assertions.assertEquals(mapper.writeValueAsString(Models.applyChanges(new MapOrString(), changes).getMap()),
+                    mapper.writeValueAsString(Models.applyChanges(new MapOrString(), changes.stream()).getMap()));
+        }
+    }
+
+    @Test
+    public void itShouldOnlyCoalesceReplacingChanges () throws JsonProcessingException {
+        List<Change> changes = new ArrayList<>();
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/a", Utils.fromJsonToMap("""
+                {"name": "Entity A"}""")));
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/b", "B"));
+        // A map is merged, so it doesn't replace the previous value
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/a", Utils.fromJsonToMap("""
+                {"from": "Source"}""")));
+        // A String inserted before a key moves the element, so it can't replace the previous change
+        changes.add(new Change(Change.ChangeType.UPDATE, "creation/entities/b", "B2", null, null, "a"));
+        changes.add(new Change(Change.ChangeType.UPDATE, "creation/entities/b", "B3"));
+        // A MOVE changes another position, so it is never coalesced
+        changes.add(new Change(Change.ChangeType.MOVE, "creation/entities/c", null, null, "creation/entities/a", null));
+        changes.add(new Change(Change.ChangeType.DELETE, "creation/entities/c", null));
+        changes.add(new Change(Change.ChangeType.DELETE, "creation/entities/d", null));
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/d", "D"));
+
+        checkSameResult(changes);
+        Assertions.assertEquals("{\"creation\":{\"entities\":{\"b\":\"B3\",\"d\":\"D\"}}}",
+                mapper.writeValueAsString(Models.applyChanges(new MapOrString(), changes).getMap()));
+    }
+
+    @Test
+    public void itShouldNotReuseTheParentOfAMove () throws JsonProcessingException {
+        List<Change> changes = new ArrayList<>();
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/a/fields/a", "Id"));
+        changes.add(new Change(Change.ChangeType.MOVE, "creation/entities/b", null, null, "creation/entities/a", null));
+        // The parent of this change has been moved, so a new one is created
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/a/fields/b", "Label"));
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/a/fields/c", "Code"));
+        checkSameResult(changes);
+        MapOrString batch = Models.applyChanges(new MapOrString(), changes);
+        Assertions.assertEquals(Map.of("a", "Id"), batch.find("creation/entities/b/fields").getMap());
+        Assertions.assertEquals(Map.of("b", "Label", "c", "Code"), batch.find("creation/entities/a/fields").getMap());
+    }
+
+    @Test
+    public void itShouldStopAtTheFailingChange () throws JsonProcessingException {
+        List<Change> changes = new ArrayList<>();
+        changes.add(new Change(Change.ChangeType.ADD, "creation/name", "Name"));
+        changes.add(new Change(Change.ChangeType.ADD, "creation/entities/a/name", "Entity A"));
+        // Adding under a String fails
+        changes.add(new Change(Change.ChangeType.ADD, "creation/name/sub", "Sub"));
+        changes.add(new Change(Change.ChangeType.UPDATE, "creation/entities/a/name", "Entity"));
+        checkSameResult(changes);
+        Assertions.assertThrows(RuntimeException.class, () -> Models.applyChanges(new MapOrString(), changes));
+    }
+
+    protected void checkSameResult (List<Change> changes) throws JsonProcessingException {
+        MapOrString oneByOne = new MapOrString();
+        String expected;
+        try {
+            for (Change change : changes) {
+                Models.applyChange(oneByOne, change);
+            }
+            expected = mapper.writeValueAsString(oneByOne.getMap());
+        } catch (RuntimeException error) {
+            // Invalid sequence of changes must fail as well in batch, after applying the same changes
+            MapOrString batch = new MapOrString();
+            Assertions.assertThrows(RuntimeException.class, () -> Models.applyChanges(batch, changes));
+            Assertions.assertEquals(mapper.writeValueAsString(oneByOne.getMap()), mapper.writeValueAsString(batch.getMap()));
+            return;
+        }
+        Assertions.assertEquals(expected, mapper.writeValueAsString(Models.applyChanges(new MapOrString(), changes).getMap()));
+    }
+}
@@ -0,0 +1,153 @@
+package net.dontcode.core.test;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import net.dontcode.core.cache.FrequencySketch;
+import net.dontcode.core.cache.ModelCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ModelCacheTest {
+
+    protected static MapOrString modelOf (String sessionId) {
+        return Models.applyChange(new MapOrString(), new Change(Change.ChangeType.ADD, "creation", Map.of("name", sessionId)));
+    }
+
+    @Test
+    public void itShouldCacheAndWeighModels () {
+        ModelCache cache = new ModelCache(1000);
+        MapOrString model = modelOf("session");
+        Assertions.assertEquals(3, ModelCache.elementCount(model));
+        Assertions.assertNull(cache.getIfPresent("session"));
+        MapOrString loaded = cache.get("session", ModelCacheTest::modelOf);
+        Assertions.assertEquals("session", loaded.find("creation/name").getString());
+        Assertions.assertSame(loaded, cache.getIfPresent("session"));
+
+        cache.put("session", model);
+        Assertions.assertSame(model, cache.get("session", sessionId -> Assertions.fail("Already cached")));
+        Assertions.assertEquals(3, cache.getStats().weight());
+        Assertions.assertSame(model, cache.invalidate("session"));
+        Assertions.assertNull(cache.getIfPresent("session"));
+        Assertions.assertEquals(0, cache.getStats().weight());
+
+        ModelCache.Stats stats = cache.getStats();
+        Assertions.assertEquals(1, stats.loads());
+        Assertions.assertEquals(2, stats.hits());
+        Assertions.assertEquals(3, stats.misses());
+        Assertions.assertEquals(0.4, stats.hitRatio(), 0.001);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> cache.get("failing", sessionId -> {
+            throw new IllegalStateException("Cannot load");
+        }));
+        Assertions.assertEquals(1, cache.getStats().loadFailures());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void itShouldLoadOnlyOnce () throws InterruptedException {
+        ModelCache cache = new ModelCache(1000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<MapOrString> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                MapOrString result = cache.get("session", sessionId -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return modelOf(sessionId);
+                });
+                synchronized (results) {
+                    results.add(result);
+                }
+            }));
+        }
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        release.countDown();
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(16, results.size());
+        for (MapOrString result: results) {
+            Assertions.assertSame(results.get(0), result);
+        }
+    }
+
+    @Test
+    public void itShouldNotCacheModelsInvalidatedWhileLoading () {
+        ModelCache cache = new ModelCache(1000);
+        MapOrString stale = cache.get("session", sessionId -> {
+            MapOrString ret = modelOf(sessionId);
+            cache.invalidate(sessionId);
+            return ret;
+        });
+        Assertions.assertNotNull(stale);
+        Assertions.assertNull(cache.getIfPresent("session"));
+
+        MapOrString fresh = modelOf("fresh");
+        cache.get("session", sessionId -> {
+            cache.put(sessionId, fresh);
+            return modelOf(sessionId);
+        });
+        Assertions.assertSame(fresh, cache.getIfPresent("session"));
+    }
+
+    @Test
+    public void itShouldCountFrequenciesInHalfBytes () {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(1);
+        }
+        for (int i = 0; i < 3; i++) {
+            sketch.increment(2);
+        }
+        Assertions.assertEquals(15, sketch.frequency(1));
+        Assertions.assertEquals(3, sketch.frequency(2));
+        Assertions.assertEquals(0, sketch.frequency(3));
+
+        // Counters are halved after enough additions
+        for (int i = 0; i < 20000; i++) {
+            sketch.increment(1000+i);
+        }
+        Assertions.assertTrue(sketch.frequency(1) < 15, "Not halved");
+        Assertions.assertTrue(sketch.frequency(1) >= 3, "Halved too much");
+    }
+
+    @Test
+    public void itShouldKeepFrequentModels () {
+        ModelCache cache = new ModelCache(100, model -> 1);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get("hot"+i, ModelCacheTest::modelOf);
+            }
+        }
+        // Sessions used only once don't push the frequent ones out
+        for (int i = 0; i < 1000; i++) {
+            cache.get("scan"+i, ModelCacheTest::modelOf);
+        }
+        int kept = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.getIfPresent("hot"+i)!=null)
+                kept++;
+        }
+        Assertions.assertTrue(kept>=45, "Only "+kept+" frequent models kept");
+        Assertions.assertTrue(cache.getStats().weight()<=100);
+        Assertions.assertTrue(cache.getStats().evictions()>=950);
+    }
+}
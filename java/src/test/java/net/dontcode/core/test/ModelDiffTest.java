@@ -0,0 +1,142 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.Models;
+import net.dontcode.core.persistent.PersistentModel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class ModelDiffTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldCalculateMinimalChanges () throws IOException {
+        MapOrString from = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test", "entities": {
+                    "a": { "name": "A", "fields": { "a": { "name": "id" } } },
+                    "b": { "name": "B" }, "c": { "name": "C" }, "d": { "name": "D" } } } }"""));
+        Assertions.assertEquals(List.of(), Models.diff(from, from));
+
+        MapOrString to = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test", "entities": {
+                    "b": { "name": "B" }, "c": { "name": "C" }, "d": { "name": "D" },
+                    "a": { "name": "A", "fields": { "a": { "name": "id" } } } } } }"""));
+        // Moving a only is enough
+        Assertions.assertEquals(List.of(new Change(Change.ChangeType.MOVE, "creation/entities/a", null, null, "creation/entities/a", null)),
+                Models.diff(from, to));
+        checkDiff(from, to);
+
+        to = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "New", "entities": {
+                    "a": { "name": "A", "fields": { "a": { "name": "id" }, "b": { "name": "other" } } },
+                    "c": "C", "d": { "name": "D" } } } }"""));
+        List<Change> changes = Models.diff(from, to);
+        Assertions.assertEquals(List.of(
+                new Change(Change.ChangeType.DELETE, "creation/entities/b", null),
+                new Change(Change.ChangeType.UPDATE, "creation/entities/c", "C", null, null, "d"),
+                new Change(Change.ChangeType.ADD, "creation/entities/a/fields/b", Map.of("name", "other"), null, null, null),
+                new Change(Change.ChangeType.UPDATE, "creation/name", "New", null, null, "entities")), changes);
+        Assertions.assertInstanceOf(ModelMap.class, changes.get(2).getValue());
+        checkDiff(from, to);
+
+        // Unchanged elements are skipped without being compared
+        Map<String, Object> shared = (Map<String, Object>) from.getMap().get("creation");
+        Map<String, Object> toMap = new LinkedHashMap<>();
+        toMap.put("creation", shared);
+        toMap.put("other", "value");
+        Assertions.assertEquals(List.of(new Change(Change.ChangeType.ADD, "other", "value")), Models.diff(from, new MapOrString(toMap)));
+        Assertions.assertEquals(List.of(new Change(Change.ChangeType.DELETE, "creation", null)), Models.diff(from, new MapOrString()));
+    }
+
+    @Test
+    public void itShouldTransformRandomModels () throws IOException {
+        Random random = new Random(42);
+        for (int run = 0; run < 500; run++) {
+            Map<String, Object> from = randomModel(random, 3);
+            Map<String, Object> to = mutate(random, from, 3);
+            checkDiff(new MapOrString(from), new MapOrString(to));
+        }
+    }
+
+    /**
+     * Applies the diff, in all possible ways, and checks the result is the target, including the order of elements
+     */
+    protected void checkDiff (MapOrString from, MapOrString to) throws IOException {
+        String expected = mapper.writeValueAsString(to.getMap());
+        String fromJson = mapper.writeValueAsString(from.getMap());
+        List<Change> changes = Models.diff(from, to);
+
+        MapOrString modelMap = new MapOrString((Map<String, Object>) ModelMap.toModelValue(Utils.fromJsonToMap(fromJson)));
+        for (Change change : changes) {
+            Models.applyChange(modelMap, change);
+        }
+        Assertions.assertEquals(expected, mapper.writeValueAsString(modelMap.getMap()), () -> "From " + fromJson + " with " + changes);
+
+        MapOrString plainMap = new MapOrString(Utils.fromJsonToMap(fromJson));
+        for (Change change : changes) {
+            Models.applyChange(plainMap, change);
+        }
+        Assertions.assertEquals(expected, mapper.writeValueAsString(plainMap.getMap()), () -> "From " + fromJson + " with " + changes);
+
+        MapOrString batch = Models.applyChanges(new MapOrString((Map<String, Object>) ModelMap.toModelValue(Utils.fromJsonToMap(fromJson))), changes);
+        Assertions.assertEquals(expected, mapper.writeValueAsString(batch.getMap()));
+        Assertions.assertEquals(expected, mapper.writeValueAsString(PersistentModel.of(Utils.fromJsonToMap(fromJson)).applyChanges(changes).getRoot()));
+        // The models are not modified by the diff
+        Assertions.assertEquals(fromJson, mapper.writeValueAsString(from.getMap()));
+    }
+
+    protected Map<String, Object> randomModel (Random random, int depth) {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        int size = random.nextInt(6);
+        for (int i = 0; i < size; i++) {
+            ret.put(randomKey(random), randomValue(random, depth));
+        }
+        return ret;
+    }
+
+    protected Object randomValue (Random random, int depth) {
+        if ((depth == 0) || (random.nextInt(3) == 0))
+            return "v" + random.nextInt(3);
+        return randomModel(random, depth - 1);
+    }
+
+    protected String randomKey (Random random) {
+        return String.valueOf((char) ('a' + random.nextInt(8)));
+    }
+
+    /**
+     * @return a copy of the model with some elements added, removed, changed or moved
+     */
+    protected Map<String, Object> mutate (Random random, Map<String, Object> model, int depth) {
+        List<String> keys = new ArrayList<>(model.keySet());
+        if (random.nextInt(3) == 0)
+            Collections.shuffle(keys, random);
+        Map<String, Object> ret = new LinkedHashMap<>();
+        for (String key : keys) {
+            Object value = model.get(key);
+            switch (random.nextInt(6)) {
+                case 0 -> { }   // Removed
+                case 1 -> ret.put(key, randomValue(random, depth));
+                case 2, 3 -> ret.put(key, (value instanceof Map<?, ?>) ? mutate(random, (Map<String, Object>) value, depth - 1) : value);
+                default -> ret.put(key, value);     // Shared
+            }
+        }
+        if (random.nextBoolean()) {
+            String key = randomKey(random);
+            if (!ret.containsKey(key))
+                ret.put(key, randomValue(random, depth));
+        }
+        return ret;
+    }
+}
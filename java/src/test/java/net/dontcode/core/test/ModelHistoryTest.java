@@ -0,0 +1,142 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelHistory;
+import net.dontcode.core.Models;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ModelHistoryTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldUndoAndRedoChanges () throws IOException {
+        MapOrString model = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test", "entities": {
+                  "a": { "name": "A", "fields": { "a": { "name": "id" }, "b": { "name": "label" } } },
+                  "b": { "name": "B" },
+                  "c": { "name": "C" } } } }"""));
+        ModelHistory history = new ModelHistory(model);
+        List<Change> changes = List.of(
+                new Change(Change.ChangeType.UPDATE, "creation/name", "NewTest"),
+                new Change(Change.ChangeType.DELETE, "creation/entities/b", null),
+                new Change(Change.ChangeType.ADD, "creation/entities/a", Utils.fromJsonToMap("{ \"fields\": { \"a\": { \"type\": \"Number\" } }, \"name\": \"NewA\" }")),
+                new Change(Change.ChangeType.MOVE, "creation/entities/c", null, null, "creation/entities/c", "a"),
+                new Change(Change.ChangeType.MOVE, "creation/entities/d", null, null, "creation/entities/a", null),
+                new Change(Change.ChangeType.RESET, "creation/entities/c", Utils.fromJsonToMap("{ \"other\": \"O\" }")),
+                new Change(Change.ChangeType.ADD, "creation/sources/a/name", "Source"),
+                new Change(Change.ChangeType.UPDATE, "", Utils.fromJsonToMap("{ \"creation\": { \"name\": \"Root\" } }"))
+        );
+
+        List<String> states = new ArrayList<>();
+        states.add(mapper.writeValueAsString(model.getMap()));
+        for (Change change : changes) {
+            history.applyChange(change);
+            states.add(mapper.writeValueAsString(model.getMap()));
+        }
+        Assertions.assertEquals(changes.size(), history.getUndoCount());
+        Assertions.assertEquals("{\"creation\":{\"name\":\"Root\"}}", states.get(states.size() - 1));
+
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            Assertions.assertTrue(history.undo());
+            Assertions.assertEquals(states.get(i), mapper.writeValueAsString(model.getMap()));
+        }
+        Assertions.assertFalse(history.undo());
+        Assertions.assertEquals(changes.size(), history.getRedoCount());
+
+        for (int i = 1; i < states.size(); i++) {
+            Assertions.assertTrue(history.redo());
+            Assertions.assertEquals(states.get(i), mapper.writeValueAsString(model.getMap()));
+        }
+        Assertions.assertFalse(history.redo());
+
+        // A new change forgets what can be redone
+        history.undo();
+        history.applyChange(new Change(Change.ChangeType.ADD, "creation/type", "Application"));
+        Assertions.assertFalse(history.canRedo());
+        history.undo();
+        Assertions.assertEquals(states.get(states.size() - 2), mapper.writeValueAsString(model.getMap()));
+    }
+
+    @Test
+    public void itShouldForgetOldestSteps () {
+        ModelHistory history = new ModelHistory(new MapOrString(), 2);
+        for (int i = 0; i < 5; i++) {
+            history.applyChange(new Change(Change.ChangeType.ADD, "creation/name", "Name" + i));
+        }
+        Assertions.assertEquals(2, history.getUndoCount());
+        history.undo();
+        history.undo();
+        Assertions.assertFalse(history.canUndo());
+        Assertions.assertEquals("Name2", history.getModel().find("creation/name").getString());
+    }
+
+    @Test
+    public void itShouldKeepTheStepWhenRedoFails () {
+        MapOrString model = new MapOrString();
+        ModelHistory history = new ModelHistory(model);
+        history.applyChange(new Change(Change.ChangeType.ADD, "creation/entities/a", "A"));
+        history.applyChange(new Change(Change.ChangeType.ADD, "creation/entities/b", "B"));
+        Assertions.assertTrue(history.undo());
+
+        // Changed outside the history, so the change can't be redone
+        Models.applyChange(model, new Change(Change.ChangeType.UPDATE, "creation/entities", "Text"));
+        Assertions.assertThrows(RuntimeException.class, history::redo);
+        Assertions.assertEquals("Text", Models.findAtPosition(model, "creation/entities", false).getString());
+        Assertions.assertEquals(1, history.getRedoCount());
+        Assertions.assertEquals(1, history.getUndoCount());
+
+        Models.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/entities", null));
+        Assertions.assertTrue(history.redo());
+        Assertions.assertEquals("B", Models.findAtPosition(model, "creation/entities/b", false).getString());
+    }
+
+    @Test
+    public void itShouldCaptureTheInverseAtApplyTime () throws IOException {
+        MapOrString model = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test", "entities": {
+                  "a": { "name": "A", "fields": { "a": { "name": "id" }, "b": { "name": "label" } } },
+                  "b": { "name": "B" },
+                  "c": { "name": "C" } } } }"""));
+        ModelHistory history = new ModelHistory(model);
+        List<String> states = new ArrayList<>();
+        states.add(mapper.writeValueAsString(model.getMap()));
+
+        // Merged in a sub element: only the type and the new property are restored
+        Map<String, Object> merged = Utils.fromJsonToMap("{ \"fields\": { \"b\": { \"type\": \"Text\" } }, \"from\": \"Source\" }");
+        history.applyChange(new Change(Change.ChangeType.ADD, "creation/entities/a", merged));
+        states.add(mapper.writeValueAsString(model.getMap()));
+        // The value given is copied, so changing it later doesn't change what is redone
+        merged.put("from", "Other");
+        // Moved before the element it is taken from, so both must be restored in the right order
+        history.applyChange(new Change(Change.ChangeType.MOVE, "creation/entities/d", null, null, "creation/entities/c", "b"));
+        states.add(mapper.writeValueAsString(model.getMap()));
+        // Created parents are simply deleted
+        history.applyChange(new Change(Change.ChangeType.ADD, "creation/screens/a/name", "Screen"));
+        states.add(mapper.writeValueAsString(model.getMap()));
+        // Failing changes are not recorded
+        Assertions.assertThrows(RuntimeException.class, () -> history.applyChange(new Change(Change.ChangeType.ADD, "creation/name/sub", "Sub")));
+        Assertions.assertEquals(states.get(3), mapper.writeValueAsString(model.getMap()));
+        Assertions.assertEquals(3, history.getUndoCount());
+
+        // Only what each change modified is restored: a property changed outside the history is kept until its ADD is undone
+        model.find("creation/entities/a/fields/b").getMap().put("type", "Number");
+        Assertions.assertTrue(history.undo());
+        Assertions.assertTrue(history.undo());
+        Assertions.assertEquals(states.get(1).replace("Text", "Number"), mapper.writeValueAsString(model.getMap()));
+        Assertions.assertTrue(history.undo());
+        Assertions.assertEquals(states.get(0), mapper.writeValueAsString(model.getMap()));
+
+        for (int i = 1; i < states.size(); i++) {
+            Assertions.assertTrue(history.redo());
+            Assertions.assertEquals(states.get(i), mapper.writeValueAsString(model.getMap()));
+        }
+    }
+}
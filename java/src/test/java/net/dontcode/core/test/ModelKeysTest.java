@@ -0,0 +1,91 @@
+package net.dontcode.core.test;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelKeys;
+import net.dontcode.core.Models;
+import net.dontcode.core.binary.BinaryCodec;
+import net.dontcode.core.json.ChangeStreamReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+public class ModelKeysTest {
+    protected static final String CHANGES = """
+            [{ "type": "ADD", "position": "creation", "value": { "name": "Test", "entities": { "a": { "name": "Entity", "fields": { "b": { "name": "Id" } } } } } }]""";
+
+    @Test
+    public void itShouldShareKeysBetweenModels () throws IOException {
+        ModelKeys.clear();
+        ModelKeys.setStatsEnabled(true);
+        try {
+            checkSharedKeys();
+        } finally {
+            ModelKeys.setStatsEnabled(false);
+        }
+        ModelKeys.clear();
+        Models.applyChange(new MapOrString(), new Change(Change.ChangeType.ADD, "creation", "Test"));
+        Assertions.assertEquals(0, ModelKeys.getStats().lookups());
+    }
+
+    protected void checkSharedKeys () throws IOException {
+        MapOrString first;
+        MapOrString second;
+        try (ChangeStreamReader reader = ChangeStreamReader.of(new StringReader(CHANGES))) {
+            first = reader.applyTo(new MapOrString());
+        }
+        try (ChangeStreamReader reader = ChangeStreamReader.of(new StringReader(CHANGES))) {
+            second = reader.applyTo(new MapOrString());
+        }
+        MapOrString decoded = BinaryCodec.decodeModel(BinaryCodec.encodeModel(first));
+        MapOrString created = new MapOrString();
+        Models.findAtPosition(created, new String("creation/entities/a/fields"), true);
+        created.find("creation").mapPut(new String("name"), "Test");
+
+        String key = keyOf(first.find("creation/entities/a").getMap(), "fields");
+        Assertions.assertSame(key, keyOf(second.find("creation/entities/a").getMap(), "fields"));
+        Assertions.assertSame(key, keyOf(decoded.find("creation/entities/a").getMap(), "fields"));
+        Assertions.assertSame(key, keyOf(created.find("creation/entities/a").getMap(), "fields"));
+        Assertions.assertSame(keyOf(first.find("creation").getMap(), "name"), keyOf(created.find("creation").getMap(), "name"));
+
+        ModelKeys.Stats stats = ModelKeys.getStats();
+        Assertions.assertTrue(stats.duplicates()>0);
+        Assertions.assertTrue(stats.savedBytes()>=stats.duplicates()*40);
+        Assertions.assertTrue(stats.lookups()>=stats.duplicates()+stats.size());
+    }
+
+    @Test
+    public void itShouldEvictKeysNotUsedAgain () {
+        ModelKeys.setMaxKeys(10);
+        ModelKeys.setStatsEnabled(true);
+        try {
+            String name = ModelKeys.canonical(new String("name"));
+            for (int i = 0; i < 20; i++) {
+                Models.applyChange(new MapOrString(), new Change(Change.ChangeType.ADD, "key"+i, Map.of("name", "Value")));
+            }
+            Assertions.assertEquals(10, ModelKeys.getStats().size());
+            Assertions.assertEquals(11, ModelKeys.getStats().evicted());
+            // A key used again and again stays shared
+            Assertions.assertSame(name, ModelKeys.canonical(new String("name")));
+            // New keys are still shared once the table is full
+            String added = ModelKeys.canonical(new String("key20"));
+            Assertions.assertSame(added, ModelKeys.canonical(new String("key20")));
+            Assertions.assertEquals(10, ModelKeys.getStats().size());
+        } finally {
+            ModelKeys.setStatsEnabled(false);
+            ModelKeys.setMaxKeys(ModelKeys.DEFAULT_MAX_KEYS);
+            ModelKeys.clear();
+        }
+    }
+
+    protected static String keyOf (Map<String, Object> map, String key) {
+        for (String found: map.keySet()) {
+            if (found.equals(key))
+                return found;
+        }
+        return null;
+    }
+}
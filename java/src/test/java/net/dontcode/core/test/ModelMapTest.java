@@ -0,0 +1,238 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.Models;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ModelMapTest {
+
+    @Test
+    public void itShouldKeepOrderLikeALinkedHashMap () {
+        ModelMap map = new ModelMap();
+        map.put("a", "A");
+        map.put("b", "B");
+        map.put("c", "C");
+        map.put("a", "A2");
+        Assertions.assertArrayEquals(new String[]{"a", "b", "c"}, map.keySet().toArray());
+        Assertions.assertEquals("A2", map.get("a"));
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("a", "A2");
+        expected.put("b", "B");
+        expected.put("c", "C");
+        Assertions.assertEquals(expected, map);
+        Assertions.assertEquals(map, expected);
+        Assertions.assertEquals(expected.hashCode(), map.hashCode());
+
+        Iterator<Map.Entry<String, Object>> it = map.entrySet().iterator();
+        it.next();
+        it.remove();
+        Assertions.assertArrayEquals(new String[]{"b", "c"}, map.keySet().toArray());
+        Assertions.assertEquals("b", map.firstKey());
+        Assertions.assertEquals("c", map.lastKey());
+    }
+
+    @Test
+    public void itShouldInsertAndMoveBefore () {
+        ModelMap map = new ModelMap();
+        map.put("a", "A");
+        map.put("b", "B");
+        map.putBefore("c", "C", "a");
+        Assertions.assertArrayEquals(new String[]{"c", "a", "b"}, map.keySet().toArray());
+        map.putBefore("b", "B2", "c");
+        Assertions.assertArrayEquals(new String[]{"b", "c", "a"}, map.keySet().toArray());
+        Assertions.assertEquals("B2", map.get("b"));
+        map.putBefore("b", "B3", "b");
+        Assertions.assertArrayEquals(new String[]{"b", "c", "a"}, map.keySet().toArray());
+        Assertions.assertTrue(map.moveBefore("a", "c"));
+        Assertions.assertArrayEquals(new String[]{"b", "a", "c"}, map.keySet().toArray());
+        Assertions.assertTrue(map.moveBefore("b", null));
+        Assertions.assertArrayEquals(new String[]{"a", "c", "b"}, map.keySet().toArray());
+        Assertions.assertFalse(map.moveBefore("d", "a"));
+        Assertions.assertEquals("c", map.nextKey("a"));
+        Assertions.assertNull(map.nextKey("b"));
+        map.remove("c");
+        Assertions.assertArrayEquals(new String[]{"a", "b"}, map.keySet().toArray());
+        map.putBefore("c", "C", "c");
+        Assertions.assertArrayEquals(new String[]{"a", "b", "c"}, map.keySet().toArray());
+    }
+
+    @Test
+    public void itShouldInsertAtTheEndIfBeforeKeyIsMissing () {
+        for (Map<String, Object> map: List.<Map<String, Object>>of(new ModelMap(), new LinkedHashMap<>())) {
+            MapOrString container = new MapOrString(map);
+            container.mapPut("a", "A");
+            container.mapPut("b", "B");
+            container.mapInsert("c", "C", "missing");
+            container.mapInsert("a", "A2", "missing");
+            Assertions.assertEquals(List.of("b", "c", "a"), List.copyOf(map.keySet()), map.getClass().getSimpleName());
+            Assertions.assertEquals("A2", map.get("a"));
+        }
+
+        // Through a change as well
+        MapOrString model = new MapOrString(new LinkedHashMap<>());
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/a", Map.of("name", "First")));
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/b", Map.of("name", "Second"), null, null, "missing"));
+        Assertions.assertEquals("Second", model.find("creation/entities/b/name").getString());
+    }
+
+    @Test
+    public void itShouldBeUsedByModels () throws JsonProcessingException {
+        MapOrString model = new MapOrString();
+        Models.applyChange(model, Utils.createJsonTestChange(Change.ChangeType.ADD, "creation", null, null, null, """
+                {
+                  "name": "Test",
+                  "entities": {
+                    "a": { "name": "A" },
+                    "b": { "name": "B" }
+                  }
+                }""", null));
+        Assertions.assertInstanceOf(ModelMap.class, model.find("creation").getMap());
+        Assertions.assertInstanceOf(ModelMap.class, model.find("creation/entities/a").getMap());
+
+        Change move = new Change(Change.ChangeType.MOVE, "creation/entities/b", null, null, "creation/entities/b", "a");
+        Models.applyChange(model, move);
+        Assertions.assertArrayEquals(new String[]{"b", "a"}, model.find("creation/entities").getMap().keySet().toArray());
+
+        Assertions.assertEquals("{\"creation\":{\"name\":\"Test\",\"entities\":{\"b\":{\"name\":\"B\"},\"a\":{\"name\":\"A\"}}}}",
+                new ObjectMapper().writeValueAsString(model.getMap()));
+    }
+
+    @Test
+    public void itShouldOnlyCopyMapsInsertedInTheModel () {
+        MapOrString model = new MapOrString();
+        ModelMap entity = new ModelMap(Map.of("name", "A"));
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/a", entity));
+        // ModelMaps are inserted as they are, other maps are copied into ModelMaps
+        Assertions.assertSame(entity, model.find("creation/entities/a").getMap());
+        Map<String, Object> other = new LinkedHashMap<>(Map.of("name", "B"));
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/b", other));
+        Assertions.assertInstanceOf(ModelMap.class, model.find("creation/entities/b").getMap());
+        Assertions.assertEquals(other, model.find("creation/entities/b").getMap());
+
+        // A merged value is not inserted, only its new elements
+        Map<String, Object> merged = new LinkedHashMap<>();
+        merged.put("a", entity);
+        merged.put("c", new LinkedHashMap<>(Map.of("name", "C")));
+        Models.applyChange(model, new Change(Change.ChangeType.UPDATE, "creation/entities", merged));
+        Assertions.assertSame(entity, model.find("creation/entities/a").getMap());
+        Assertions.assertInstanceOf(ModelMap.class, model.find("creation/entities/c").getMap());
+        Assertions.assertInstanceOf(ModelMap.class, model.find("creation/entities").getMap());
+    }
+
+    @Test
+    public void itShouldFindCollidingKeys () {
+        // All these keys have the same hashCode
+        List<String> keys = List.of("Aa", "BB", "AaAa", "AaBB", "BBAa", "BBBB");
+        ModelMap map = new ModelMap();
+        for (String key : keys) {
+            map.put(key, key.toLowerCase());
+        }
+        map.remove("BB");
+        map.remove("AaBB");
+        Assertions.assertArrayEquals(new String[]{"Aa", "AaAa", "BBAa", "BBBB"}, map.keySet().toArray());
+        for (String key : List.of("Aa", "AaAa", "BBAa", "BBBB")) {
+            Assertions.assertEquals(key.toLowerCase(), map.get(key), key);
+        }
+        Assertions.assertNull(map.get("BB"));
+        map.put("BB", "again");
+        Assertions.assertEquals("again", map.get("BB"));
+
+        // Growing and shrinking
+        for (int i = 0; i < 1000; i++) {
+            map.put(ModelMap.keyOf(i), i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            map.remove(ModelMap.keyOf(i));
+        }
+        Assertions.assertEquals(505, map.size());
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals((i % 2 == 0) ? null : i, map.get(ModelMap.keyOf(i)));
+        }
+        Assertions.assertEquals("again", map.get("BB"));
+        map.clear();
+        Assertions.assertNull(map.get("Aa"));
+        Assertions.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void itShouldGenerateNextKeysLikeTheEditor () {
+        Assertions.assertEquals("a", ModelMap.keyOf(0));
+        Assertions.assertEquals("z", ModelMap.keyOf(24));
+        Assertions.assertEquals("aa", ModelMap.keyOf(25));
+        Assertions.assertEquals("ab", ModelMap.keyOf(26));
+        Assertions.assertEquals("aaa", ModelMap.keyOf(25+25*25));
+        for (long i = 0; i < 20000; i++) {
+            Assertions.assertEquals(i, ModelMap.ordinalOf(ModelMap.keyOf(i)));
+        }
+        Assertions.assertEquals(-1, ModelMap.ordinalOf("week"));
+        Assertions.assertEquals(-1, ModelMap.ordinalOf("A"));
+
+        ModelMap map = new ModelMap();
+        Assertions.assertEquals("a", map.generateNextKey());
+        map.put("a", "A");
+        map.put("c", "C");
+        map.put("name", "Not generated");
+        Assertions.assertEquals("d", map.generateNextKey());
+        map.put("d", "D");
+        map.remove("d");
+        // Removed keys are never generated again
+        Assertions.assertEquals("e", map.generateNextKey());
+        // But only by this instance
+        Assertions.assertEquals("d", new ModelMap(map).generateNextKey());
+        Assertions.assertEquals("d", Models.generateNextKey(new LinkedHashMap<>(Map.of("a", "A", "c", "C", "W", "W"))));
+    }
+
+    @Test
+    public void itShouldIgnoreKeysNotGenerated () {
+        // Properties are made of the same characters as generated keys
+        ModelMap map = new ModelMap();
+        map.put("a", "A");
+        map.put("fields", "Not generated");
+        Assertions.assertEquals("b", map.generateNextKey());
+        Assertions.assertEquals("b", Models.generateNextKey(new HashMap<>(map)));
+        map = new ModelMap(Map.of("name", "Not generated"));
+        Assertions.assertEquals("a", map.generateNextKey());
+        Assertions.assertEquals("a", Models.generateNextKey(new HashMap<>(map)));
+
+        // A key put before the ones preceding it is skipped once reached
+        map = new ModelMap();
+        map.put("c", "C");
+        Assertions.assertEquals("a", map.generateNextKey());
+        map.put("b", "B");
+        Assertions.assertEquals("d", map.generateNextKey());
+        Assertions.assertEquals("d", Models.generateNextKey(new HashMap<>(map)));
+        for (int i = 0; i < 100; i++) {
+            map.put(map.generateNextKey(), "Generated");
+        }
+        Assertions.assertEquals(102, map.size());
+        Assertions.assertEquals(ModelMap.keyOf(103), map.generateNextKey());
+        Assertions.assertEquals(ModelMap.keyOf(103), Models.generateNextKey(new HashMap<>(map)));
+    }
+
+    @Test
+    public void itShouldGenerateKeysOfBulkImports () {
+        MapOrString model = new MapOrString();
+        for (int i = 0; i < 5000; i++) {
+            String key = Models.generateNextKeyForPosition(model, "creation/entities", true);
+            Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/"+key, Map.of("name", "Entity "+i)));
+        }
+        Map<String, Object> entities = model.find("creation/entities").getMap();
+        Assertions.assertEquals(5000, entities.size());
+        Assertions.assertEquals(ModelMap.keyOf(4999), ((ModelMap) entities).lastKey());
+        Models.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/entities/"+ModelMap.keyOf(4999), null));
+        Assertions.assertEquals(ModelMap.keyOf(5000), Models.generateNextKeyForPosition(model, "creation/entities", false));
+        Assertions.assertThrows(RuntimeException.class, () -> Models.generateNextKeyForPosition(model, "creation/screens", false));
+    }
+}
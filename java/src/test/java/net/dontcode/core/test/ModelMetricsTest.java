@@ -0,0 +1,83 @@
+package net.dontcode.core.test;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Models;
+import net.dontcode.core.metrics.Histogram;
+import net.dontcode.core.metrics.HistogramModelMetrics;
+import net.dontcode.core.metrics.ModelMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class ModelMetricsTest {
+
+    @AfterEach
+    public void removeMetrics () {
+        Models.setMetrics(null);
+    }
+
+    @Test
+    public void itShouldMeasureModelOperations () {
+        HistogramModelMetrics metrics = new HistogramModelMetrics();
+        Models.setMetrics(metrics);
+        MapOrString model = new MapOrString();
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/a", Map.of("name", "Entity")));
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/b", Map.of("name", "Other")));
+        Models.applyChange(model, new Change(Change.ChangeType.UPDATE, "creation/entities/a/name", "Renamed"));
+        Models.applyChange(model, new Change(Change.ChangeType.MOVE, "creation/entities/b", null));
+        Models.applyChange(model, new Change(Change.ChangeType.UPDATE, "creation/entities/b/name", null));
+        Models.applyChanges(model, List.of(
+                new Change(Change.ChangeType.DELETE, "creation/entities/a", null),
+                new Change(Change.ChangeType.ADD, "creation/entities/c", Map.of("name", "Third"))));
+
+        Assertions.assertEquals(3, metrics.getLatency(ModelMetrics.Operation.APPLY_CHANGE, Change.ChangeType.ADD).getCount());
+        Assertions.assertEquals(1, metrics.getLatency(ModelMetrics.Operation.APPLY_CHANGE, Change.ChangeType.DELETE).getCount());
+        Assertions.assertEquals(2, metrics.getLatency(ModelMetrics.Operation.APPLY_CHANGE, Change.ChangeType.UPDATE).getCount());
+        Assertions.assertEquals(1, metrics.getLatency(ModelMetrics.Operation.APPLY_CHANGE, Change.ChangeType.MOVE).getCount());
+        Assertions.assertEquals(7, metrics.getLatency(ModelMetrics.Operation.APPLY_CHANGE).getCount());
+        // The ADD of the batch reuses the parent found for the DELETE
+        Assertions.assertTrue(metrics.getLatency(ModelMetrics.Operation.FIND_AT_POSITION, null).getCount()>=6);
+        Assertions.assertTrue(metrics.getLatency(ModelMetrics.Operation.MAP_INSERT, null).getCount()>=3);
+        Assertions.assertEquals(7, metrics.getContainerSize(ModelMetrics.Operation.APPLY_CHANGE).getCount());
+        Assertions.assertEquals(2, metrics.getContainerSize(ModelMetrics.Operation.APPLY_CHANGE).getMax());
+
+        // creation and entities are created by the first ADD
+        Assertions.assertEquals(2, metrics.getCreatedOnFind());
+        Assertions.assertEquals(1, metrics.getWarnings(ModelMetrics.Warning.MOVE_WITHOUT_VALUE));
+        Assertions.assertEquals(1, metrics.getWarnings(ModelMetrics.Warning.MISSING_VALUE));
+
+        metrics.reset();
+        Models.setMetrics(null);
+        Assertions.assertSame(ModelMetrics.NONE, Models.getMetrics());
+        Models.applyChange(model, new Change(Change.ChangeType.ADD, "creation/screens/a", Map.of("name", "Screen")));
+        Assertions.assertEquals(0, metrics.getLatency(ModelMetrics.Operation.APPLY_CHANGE).getCount());
+        Assertions.assertEquals(0, metrics.getCreatedOnFind());
+    }
+
+    @Test
+    public void itShouldCalculatePercentiles () {
+        Histogram histogram = new Histogram();
+        Assertions.assertEquals(0, histogram.getPercentile(99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assertions.assertEquals(1000, histogram.getCount());
+        Assertions.assertEquals(500.5, histogram.getMean(), 0.001);
+        Assertions.assertEquals(1000, histogram.getMax());
+        // Precise to a factor of 2
+        long median = histogram.getPercentile(50);
+        Assertions.assertTrue((median>=500) && (median<1000), "Median is "+median);
+        Assertions.assertEquals(1000, histogram.getPercentile(100));
+        Assertions.assertEquals(1, histogram.getPercentile(0.1));
+
+        Histogram other = new Histogram();
+        other.record(5000);
+        other.add(histogram);
+        Assertions.assertEquals(1001, other.getCount());
+        Assertions.assertEquals(5000, other.getMax());
+    }
+}
@@ -0,0 +1,74 @@
+package net.dontcode.core.test;
+
+import net.dontcode.core.BoundedCache;
+import net.dontcode.core.DontCodeModelPointer;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelPath;
+import net.dontcode.core.Models;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ModelPathTest {
+
+    @Test
+    public void itShouldParsePositions () {
+        ModelPath path = ModelPath.of("creation/entities/a/name");
+        Assertions.assertEquals(4, path.size());
+        Assertions.assertEquals("entities", path.element(1));
+        Assertions.assertEquals("name", path.getLastElement());
+        Assertions.assertEquals("creation/entities/a", path.getParent().getPosition());
+        Assertions.assertSame(path, ModelPath.of("creation/entities/a/name"));
+        Assertions.assertSame(path, path.getParent().subPath("name"));
+
+        Assertions.assertSame(ModelPath.ROOT, ModelPath.of(""));
+        Assertions.assertSame(ModelPath.ROOT, ModelPath.of("creation").getParent());
+        Assertions.assertNull(ModelPath.ROOT.getParent());
+        Assertions.assertNull(ModelPath.of(null));
+    }
+
+    @Test
+    public void itShouldBehaveLikeStringPositions () {
+        for (String position: new String[] {"", "creation", "creation/entities/a", "creation/entities/"}) {
+            ModelPath path = ModelPath.of(position);
+            Assertions.assertEquals(DontCodeModelPointer.lastElementOf(position), path.getLastElement());
+            Assertions.assertEquals(DontCodeModelPointer.parentPositionOf(position), (path.getParent()==null)?null:path.getParent().getPosition());
+        }
+    }
+
+    @Test
+    public void itShouldFindWithPaths () {
+        MapOrString model = new MapOrString();
+        Models.findAtPosition(model, ModelPath.of("creation/entities/a"), true).mapPut("name", "Entity");
+        Assertions.assertEquals("Entity", model.find(ModelPath.of("creation/entities/a/name")).getString());
+        Assertions.assertEquals("Entity", Models.findAtPosition(model.getMap(), ModelPath.of("creation/entities/a/name"), false));
+        Assertions.assertNull(Models.findAtPosition(model, ModelPath.of("creation/screens/a"), false));
+        Assertions.assertSame(model.getMap(), model.find(ModelPath.ROOT).getMap());
+    }
+
+    @Test
+    public void itShouldEvictValuesUsedOnce () {
+        BoundedCache<String, String> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 50; i++) {
+            cache.computeIfAbsent("used"+i, String::toUpperCase);
+            cache.get("used"+i);
+        }
+        // Positions used only once, like the ones of a diff, don't push out the ones used again
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals("ONCE"+i, cache.computeIfAbsent("once"+i, String::toUpperCase));
+            if (i%100==99) {
+                for (int j = 0; j < 50; j++) {
+                    Assertions.assertEquals("USED"+j, cache.get("used"+j), "used"+j+" evicted");
+                }
+            }
+        }
+        Assertions.assertEquals(100, cache.size());
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertEquals("USED"+i, cache.get("used"+i), "used"+i+" evicted");
+        }
+        Assertions.assertNull(cache.computeIfAbsent("null", key -> null));
+        Assertions.assertThrows(IllegalStateException.class, () -> cache.computeIfAbsent("failing", key -> {
+            throw new IllegalStateException("Cannot calculate");
+        }));
+        Assertions.assertNull(cache.get("failing"));
+    }
+}
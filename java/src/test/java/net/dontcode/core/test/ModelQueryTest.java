@@ -0,0 +1,98 @@
+package net.dontcode.core.test;
+
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.query.ModelQuery;
+import net.dontcode.core.query.ModelQueryResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class ModelQueryTest {
+
+    protected MapOrString createModel () throws IOException {
+        return new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test",
+                  "entities": {
+                    "aaaa": { "name": "Entity1", "from": "Source1", "fields": { "aaab": { "name": "Name", "type": "string" } } },
+                    "aaac": { "name": "Entity2", "from": "Source2", "fields": { "aaad": { "name": "Id", "type": "number", "size": 12 } } },
+                    "aaba": { "name": "Entity3", "from": "WrongSource", "fields": { "aabb": { "name": "Name", "type": "string" } } }
+                  },
+                  "sources": {
+                    "aaae": { "name": "Source1", "type": "Rest", "url": "https://test-url.com" },
+                    "aaag": { "name": "Source2", "type": "File" }
+                  } } }"""));
+    }
+
+    @Test
+    public void itShouldQueryLikeTheTypeScriptManager () throws IOException {
+        MapOrString model = createModel();
+        Assertions.assertEquals(3, ModelQuery.queryModelToArray(model, "$.creation.entities.*").size());
+
+        ModelQueryResult entity2 = ModelQuery.queryModelToSingle(model, "$.creation.entities[?(@.name===\"Entity2\")]");
+        Assertions.assertEquals("creation/entities/aaac", entity2.pointer());
+        Assertions.assertTrue(((Map<String, Object>) entity2.value()).containsKey("fields"));
+        Assertions.assertNull(ModelQuery.queryModelToSingle(model, "$.creation.pizzas[?(@.name===\"Entity2\")]"));
+
+        ModelQueryResult source = ModelQuery.queryModelToSingle(model, "$.creation.sources[?(@['name']==='Source1')]");
+        Assertions.assertEquals("Rest", ((Map<String, Object>) source.value()).get("type"));
+        Assertions.assertThrows(RuntimeException.class, () -> ModelQuery.queryModelToSingle(model, "$.creation.sources.*"));
+    }
+
+    @Test
+    public void itShouldSupportAllSteps () throws IOException {
+        MapOrString model = createModel();
+        Assertions.assertEquals(List.of("Entity1", "Entity2", "Entity3"), ModelQuery.queryModelToArray(model, "$.creation.entities[*].name"));
+        Assertions.assertEquals(List.of("Source2"), ModelQuery.queryModelToArray(model, "$['creation']['sources'].aaag.name"));
+        Assertions.assertEquals(List.of("creation/entities/aaaa/fields/aaab", "creation/entities/aaba/fields/aabb"),
+                ModelQuery.compile("$..fields[?(@.type=='string')]").stream(model).map(ModelQueryResult::pointer).collect(Collectors.toList()));
+        Assertions.assertEquals(List.of("Entity1", "Entity3"), ModelQuery.queryModelToArray(model, "$.creation.entities[?(@.from!=='Source2')].name"));
+        Assertions.assertEquals(List.of("Id"), ModelQuery.queryModelToArray(model, "$.creation.entities.*.fields[?(@.size==12)].name"));
+        Assertions.assertEquals(List.of("https://test-url.com"), ModelQuery.queryModelToArray(model, "$.creation.sources[?(@.url)].url"));
+        Assertions.assertEquals(6, ModelQuery.queryModelToArray(model, "$.creation.entities..name").size());
+        Assertions.assertEquals(List.of("string", "number", "string", "Rest", "File"), ModelQuery.queryModelToArray(model, "$..type"));
+
+        // Relative to a position
+        Assertions.assertEquals(List.of("Name"), ModelQuery.queryModelToArray(model, "fields.*.name", "creation/entities/aaaa"));
+        // Pointers are relative to the position, like in TypeScript
+        Assertions.assertEquals("fields/aaad", ModelQuery.queryModelToSingle(model, "$.fields.*", "creation/entities/aaac").pointer());
+        Assertions.assertEquals(List.of(), ModelQuery.queryModelToArray(model, "$.*", "creation/unknown"));
+
+        // Lists found are flattened, like in TypeScript
+        MapOrString withLists = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "entities": { "a": { "tags": ["x", "y"] }, "b": { "tags": ["z"] } } } }"""));
+        Assertions.assertEquals(List.of("x", "y", "z"), ModelQuery.queryModelToArray(withLists, "$.creation.entities.*.tags"));
+        Assertions.assertEquals(List.of("x", "y"), ModelQuery.queryModelToSingle(withLists, "$.tags", "creation/entities/a").value());
+
+        Assertions.assertThrows(RuntimeException.class, () -> ModelQuery.compile("$.creation[?(@.name=~'a')]"));
+        Assertions.assertThrows(RuntimeException.class, () -> ModelQuery.compile("$.creation['name"));
+    }
+
+    @Test
+    public void itShouldReusePlansAndEvaluateLazily () throws IOException {
+        ModelQuery query = ModelQuery.compile("$.creation.entities.*.name");
+        Assertions.assertSame(query, ModelQuery.compile("$.creation.entities.*.name"));
+
+        // The same plan works with any model
+        Assertions.assertEquals(3, query.toArray(createModel(), null).size());
+        MapOrString other = new MapOrString(Utils.fromJsonToMap("{ \"creation\": { \"entities\": { \"a\": { \"name\": \"A\" } } } }"));
+        Assertions.assertEquals(List.of("A"), query.toArray(other, null));
+
+        // Elements after the first result are never looked at
+        Map<String, Object> entities = new LinkedHashMap<>();
+        entities.put("a", Map.of("name", "A"));
+        entities.put("b", new LinkedHashMap<String, Object>() {
+            @Override
+            public Object get(Object key) {
+                throw new IllegalStateException("Should not be read");
+            }
+        });
+        MapOrString lazy = new MapOrString(Map.of("creation", Map.of("entities", entities)));
+        Assertions.assertEquals("A", query.stream(lazy).findFirst().orElseThrow().value());
+        Assertions.assertThrows(IllegalStateException.class, () -> query.toArray(lazy, null));
+    }
+}
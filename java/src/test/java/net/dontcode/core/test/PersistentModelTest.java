@@ -0,0 +1,167 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.Models;
+import net.dontcode.core.persistent.PersistentModel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PersistentModelTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldKeepSnapshotsUnchanged () throws IOException {
+        PersistentModel first = PersistentModel.EMPTY.applyChange(Utils.createJsonTestChange(Change.ChangeType.ADD, "creation", null, null, null, """
+                {
+                  "name": "Test",
+                  "entities": {
+                    "a": { "name": "A", "fields": { "a": { "name": "id" } } },
+                    "b": { "name": "B" }
+                  }
+                }""", null));
+        PersistentModel second = first.applyChange(new Change(Change.ChangeType.UPDATE, "creation/entities/b/name", "NewB"));
+
+        Assertions.assertEquals("B", first.find("creation/entities/b/name").getString());
+        Assertions.assertEquals("NewB", second.find("creation/entities/b/name").getString());
+        // Untouched elements are shared
+        Assertions.assertSame(first.find("creation/entities/a").getMap(), second.find("creation/entities/a").getMap());
+        Assertions.assertNotSame(first.find("creation/entities").getMap(), second.find("creation/entities").getMap());
+
+        PersistentModel third = second.applyChange(new Change(Change.ChangeType.MOVE, "creation/entities/b", null, null, "creation/entities/b", "a"));
+        Assertions.assertArrayEquals(new String[]{"b", "a"}, third.find("creation/entities").getMap().keySet().toArray());
+        Assertions.assertArrayEquals(new String[]{"a", "b"}, second.find("creation/entities").getMap().keySet().toArray());
+        Assertions.assertSame(second.find("creation/entities/b").getMap(), third.find("creation/entities/b").getMap());
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> third.asMapOrString().mapPut("other", "value"));
+    }
+
+    @Test
+    public void itShouldApplyChangesLikeMutableModels () throws URISyntaxException, IOException {
+        for (String session: new String[] {"sessions/complex-session.json", "sessions/very-complex-session.json"}) {
+            URL url = Thread.currentThread().getContextClassLoader().getResource(session);
+            MapOrString jsonContent = new MapOrString(Utils.fromJsonToMap(Files.readString(Path.of(url.toURI()))));
+            List<Change> changes = new ArrayList<>();
+            for (var key : jsonContent.getMap().keySet()) {
+                var curContent = jsonContent.mapGetMap(key).get();
+                changes.add(new Change(Change.ChangeType.valueOf(curContent.get("type").toString()),
+                        (String) curContent.get("position"), curContent.get("value")));
+            }
+
+            MapOrString mutable = new MapOrString();
+            PersistentModel persistent = PersistentModel.EMPTY;
+            List<PersistentModel> history = new ArrayList<>();
+            List<String> expectedHistory = new ArrayList<>();
+            for (Change change : changes) {
+                Models.applyChange(mutable, change);
+                persistent = persistent.applyChange(change);
+                history.add(persistent);
+                expectedHistory.add(mapper.writeValueAsString(mutable.getMap()));
+                Assertions.assertEquals(expectedHistory.get(expectedHistory.size()-1), mapper.writeValueAsString(persistent.getRoot()));
+            }
+            for (int i = 0; i < history.size(); i++) {
+                Assertions.assertEquals(expectedHistory.get(i), mapper.writeValueAsString(history.get(i).getRoot()));
+            }
+            Assertions.assertEquals(mutable.getMap(), PersistentModel.EMPTY.applyChanges(changes).toMutable().getMap());
+        }
+    }
+
+    @Test
+    public void itShouldShareUntouchedElements () {
+        Map<String, Object> entities = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            entities.put(ModelMap.keyOf(i), Map.of("name", "Entity "+i, "fields", Map.of("a", Map.of("name", "id"))));
+        }
+        PersistentModel first = PersistentModel.of(Map.of("creation", Map.of("entities", entities)));
+        PersistentModel second = first.applyChanges(List.of(
+                new Change(Change.ChangeType.UPDATE, "creation/entities/c/name", "NewC"),
+                new Change(Change.ChangeType.ADD, "creation/entities/c/fields/b", Map.of("name", "label")),
+                new Change(Change.ChangeType.DELETE, "creation/entities/d", null)));
+
+        Map<String, Object> before = first.find("creation/entities").getMap();
+        Map<String, Object> after = second.find("creation/entities").getMap();
+        Assertions.assertEquals(19, after.size());
+        for (String key : after.keySet()) {
+            if (!key.equals("c"))
+                Assertions.assertSame(before.get(key), after.get(key), key);
+        }
+        // Only the path to the changes is copied
+        Assertions.assertNotSame(before.get("c"), after.get("c"));
+        Assertions.assertSame(first.find("creation/entities/c/fields/a").getMap(), second.find("creation/entities/c/fields/a").getMap());
+
+        // A moved element is shared with its old position
+        PersistentModel third = second.applyChange(new Change(Change.ChangeType.MOVE, "creation/entities/z", null, null, "creation/entities/c", "a"));
+        Assertions.assertSame(second.find("creation/entities/c").getMap(), third.find("creation/entities/z").getMap());
+        Assertions.assertSame(second.find("creation/entities/b").getMap(), third.find("creation/entities/b").getMap());
+        Assertions.assertEquals("z", third.find("creation/entities").getMap().keySet().iterator().next());
+
+        // A failing change doesn't modify the version it is applied to
+        Assertions.assertThrows(RuntimeException.class, () -> third.applyChanges(List.of(
+                new Change(Change.ChangeType.UPDATE, "creation/entities/b/name", "NewB"),
+                new Change(Change.ChangeType.ADD, "creation/entities/b/name/sub", "Sub"))));
+        Assertions.assertEquals("Entity 1", third.find("creation/entities/b/name").getString());
+        Assertions.assertSame(second.find("creation/entities/b").getMap(), third.find("creation/entities/b").getMap());
+    }
+
+    @Test
+    public void itShouldEditWideElements () throws IOException {
+        Map<String, Object> entities = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            entities.put(ModelMap.keyOf(i), Map.of("name", "Entity "+i));
+        }
+        MapOrString mutable = new MapOrString(Utils.fromJsonToMap(mapper.writeValueAsString(Map.of("creation", Map.of("entities", entities)))));
+        PersistentModel persistent = PersistentModel.of(mutable.getMap());
+        List<PersistentModel> history = new ArrayList<>();
+        List<String> expectedHistory = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String key = ModelMap.keyOf((i * 37) % 1000);
+            String added = ModelMap.keyOf(1000 + i);
+            List<Change> changes = switch (i % 5) {
+                // Replaces values, in different chunks
+                case 0 -> List.of(new Change(Change.ChangeType.UPDATE, "creation/entities/"+key+"/name", "Updated "+i),
+                        new Change(Change.ChangeType.ADD, "creation/entities/"+ModelMap.keyOf(i)+"/fields", Map.of("a", Map.of("name", "id"))));
+                // Adds at the end, then modifies what's added
+                case 1 -> List.of(new Change(Change.ChangeType.ADD, "creation/entities/"+added, Map.of("name", "Added "+i)),
+                        new Change(Change.ChangeType.UPDATE, "creation/entities/"+added+"/name", "Renamed "+i),
+                        new Change(Change.ChangeType.ADD, "creation/entities/"+added+"tmp", Map.of("name", "Temporary")),
+                        new Change(Change.ChangeType.DELETE, "creation/entities/"+added+"tmp", null));
+                case 2 -> List.of(new Change(Change.ChangeType.DELETE, "creation/entities/"+key, null));
+                case 3 -> List.of(new Change(Change.ChangeType.MOVE, "creation/entities/"+key, null, null, "creation/entities/"+key, ModelMap.keyOf(i)));
+                default -> List.of(new Change(Change.ChangeType.ADD, "creation/entities/"+added, Map.of("name", "Inserted "+i), null, null, key));
+            };
+            for (Change change : changes) {
+                Models.applyChange(mutable, change);
+            }
+            PersistentModel previous = persistent;
+            persistent = (changes.size() == 1) ? persistent.applyChange(changes.get(0)) : persistent.applyChanges(changes);
+            history.add(persistent);
+            expectedHistory.add(mapper.writeValueAsString(mutable.getMap()));
+            Assertions.assertEquals(expectedHistory.get(i), mapper.writeValueAsString(persistent.getRoot()));
+            Assertions.assertEquals(mutable.find("creation/entities").getMap().size(), persistent.find("creation/entities").getMap().size());
+            if (i % 5 < 2) {
+                // Only the modified entities are new
+                Map<String, Object> before = previous.find("creation/entities").getMap();
+                for (Map.Entry<String, Object> entity : persistent.find("creation/entities").getMap().entrySet()) {
+                    if ((!entity.getKey().equals(key)) && (!entity.getKey().equals(ModelMap.keyOf(i))) && (before.containsKey(entity.getKey())))
+                        Assertions.assertSame(before.get(entity.getKey()), entity.getValue(), entity.getKey());
+                }
+            }
+        }
+        for (int i = 0; i < history.size(); i++) {
+            Assertions.assertEquals(expectedHistory.get(i), mapper.writeValueAsString(history.get(i).getRoot()));
+        }
+        Assertions.assertEquals(mutable.getMap(), persistent.toMutable().getMap());
+    }
+}
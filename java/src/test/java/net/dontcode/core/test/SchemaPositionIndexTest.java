@@ -0,0 +1,110 @@
+package net.dontcode.core.test;
+
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.ModelMap;
+import net.dontcode.core.index.SchemaPositionIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SchemaPositionIndexTest {
+
+    @Test
+    public void itShouldFindElementsBySchemaPosition () throws IOException {
+        MapOrString model = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test", "entities": {
+                  "a": { "name": "A", "fields": { "a": { "name": "id" }, "b": { "name": "label" } } },
+                  "b": { "name": "B", "fields": { "a": { "name": "code" } } } } } }"""));
+        SchemaPositionIndex index = new SchemaPositionIndex().index(model);
+
+        Assertions.assertEquals(Set.of("creation/entities/a", "creation/entities/b"), index.getItems("creation/entities"));
+        Assertions.assertEquals(Set.of("creation/entities"), index.getProperties("creation/entities"));
+        Assertions.assertEquals(Set.of("creation/entities/a/fields/a", "creation/entities/a/fields/b", "creation/entities/b/fields/a"), index.getItems("creation/entities/fields"));
+        Assertions.assertEquals(Set.of("creation/entities/a/name", "creation/entities/b/name"), index.getProperties("creation/entities/name"));
+        Assertions.assertEquals("creation/entities/fields/name", index.getPointer("creation/entities/b/fields/a/name").getPositionInSchema());
+        Assertions.assertEquals(Boolean.FALSE, index.getPointer("creation/entities/b/fields/a").getIsProperty());
+
+        index.applyChange(model, new Change(Change.ChangeType.ADD, "creation/entities/c", Utils.fromJsonToMap("{ \"name\": \"C\", \"fields\": { \"a\": { \"name\": \"other\" } } }")));
+        index.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/entities/a/fields/b", null));
+        index.applyChange(model, new Change(Change.ChangeType.MOVE, "creation/entities/b/fields/b", null, null, "creation/entities/a/fields/a", null));
+        Assertions.assertEquals(Set.of("creation/entities/b/fields/a", "creation/entities/b/fields/b", "creation/entities/c/fields/a"), index.getItems("creation/entities/fields"));
+        Assertions.assertEquals(Set.of("creation/entities/b/fields/a/name", "creation/entities/b/fields/b/name", "creation/entities/c/fields/a/name"), index.getProperties("creation/entities/fields/name"));
+
+        index.applyChange(model, new Change(Change.ChangeType.RESET, "creation/entities", Utils.fromJsonToMap("{ \"d\": { \"name\": \"D\" } }")));
+        Assertions.assertEquals(Set.of("creation/entities/d"), index.getItems("creation/entities"));
+        Assertions.assertEquals(Set.of(), index.getItems("creation/entities/fields"));
+        Assertions.assertEquals(5, index.size());
+        checkIndex(model, index);
+    }
+
+    @Test
+    public void itShouldFollowSessions () throws IOException, URISyntaxException {
+        URL url = Thread.currentThread().getContextClassLoader().getResource("sessions/very-complex-session.json");
+        MapOrString session = new MapOrString(Utils.fromJsonToMap(Files.readString(Path.of(url.toURI()))));
+        MapOrString model = new MapOrString(new ModelMap());
+        SchemaPositionIndex index = new SchemaPositionIndex();
+        for (String key : session.getMap().keySet()) {
+            Map<String, Object> change = session.mapGetMap(key).get();
+            index.applyChange(model, new Change(Change.ChangeType.valueOf(change.get("type").toString()), change.get("position").toString(), change.get("value")));
+            checkIndex(model, index);
+        }
+        Assertions.assertFalse(index.getItems("creation/entities/fields").isEmpty());
+    }
+
+    @Test
+    public void itShouldFollowMovedSubtrees () throws IOException {
+        MapOrString model = new MapOrString(Utils.fromJsonToMap("""
+                { "creation": { "name": "Test", "entities": {
+                  "a": { "name": "A", "fields": { "a": { "name": "id" }, "b": { "name": "label" } } },
+                  "b": { "name": "B" } } } }"""));
+        SchemaPositionIndex index = new SchemaPositionIndex().index(model);
+
+        // Moved into a missing parent: the new parent is indexed and the old position forgotten
+        index.applyChange(model, new Change(Change.ChangeType.MOVE, "creation/entities/b/fields/c", null, null, "creation/entities/a/fields/a", null));
+        Assertions.assertEquals(Set.of("creation/entities/a/fields/b", "creation/entities/b/fields/c"), index.getItems("creation/entities/fields"));
+        Assertions.assertEquals(Set.of("creation/entities/a/fields/b/name", "creation/entities/b/fields/c/name"), index.getProperties("creation/entities/fields/name"));
+        checkIndex(model, index);
+
+        // A whole entity moves with all its fields
+        index.applyChange(model, new Change(Change.ChangeType.MOVE, "creation/entities/c", null, null, "creation/entities/a", null));
+        Assertions.assertEquals(Set.of("creation/entities/c/fields/b", "creation/entities/b/fields/c"), index.getItems("creation/entities/fields"));
+        Assertions.assertNull(index.getPointer("creation/entities/a/name"));
+        checkIndex(model, index);
+
+        // Failing changes leave the index untouched
+        Assertions.assertThrows(RuntimeException.class, () -> index.applyChange(model,
+                new Change(Change.ChangeType.MOVE, "creation/entities/d", null, null, "creation/entities/a", null)));
+        Assertions.assertThrows(RuntimeException.class, () -> index.applyChange(model,
+                new Change(Change.ChangeType.ADD, "creation/name/sub", "Sub")));
+        checkIndex(model, index);
+
+        // Deleting a parent forgets everything below
+        index.applyChange(model, new Change(Change.ChangeType.DELETE, "creation/entities", null));
+        Assertions.assertEquals(Set.of(), index.getItems("creation/entities/fields"));
+        Assertions.assertEquals(Set.of(), index.getProperties("creation/entities/fields/name"));
+        Assertions.assertEquals(2, index.size());
+        checkIndex(model, index);
+    }
+
+    /**
+     * Compares the index with one calculated from scratch
+     */
+    protected void checkIndex (MapOrString model, SchemaPositionIndex index) {
+        SchemaPositionIndex expected = new SchemaPositionIndex().index(model);
+        Assertions.assertEquals(expected.size(), index.size());
+        for (String schemaPosition : List.of("creation", "creation/name", "creation/entities", "creation/entities/name", "creation/entities/fields",
+                "creation/entities/fields/name", "creation/entities/fields/type", "creation/entities/a", "creation/entities/fields/a")) {
+            Assertions.assertEquals(expected.getItems(schemaPosition), index.getItems(schemaPosition), schemaPosition);
+            Assertions.assertEquals(expected.getProperties(schemaPosition), index.getProperties(schemaPosition), schemaPosition);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.Models;
+import net.dontcode.core.persistent.PersistentModel;
+import net.dontcode.core.session.SessionModelManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SessionModelManagerTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void itShouldApplyChangesOfEachSessionInOrder () throws Exception {
+        int sessionCount = 50;
+        int changeCount = 200;
+        try (SessionModelManager manager = new SessionModelManager()) {
+            List<Thread> writers = new ArrayList<>();
+            List<CompletableFuture<PersistentModel>> lastResults = new ArrayList<>();
+            for (int s = 0; s < sessionCount; s++) {
+                String sessionId = "session" + s;
+                CompletableFuture<PersistentModel>[] last = new CompletableFuture[1];
+                Thread writer = Thread.ofVirtual().unstarted(() -> {
+                    manager.submit(new Message(Message.MessageType.INIT, sessionId));
+                    for (int i = 0; i < changeCount; i++) {
+                        last[0] = manager.submit(sessionId, new Change(Change.ChangeType.ADD, "creation/entities/e" + (i % 20) + "/name", "Name " + i));
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+                lastResults.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        writer.join();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return last[0].join();
+                }));
+            }
+
+            MapOrString expected = new MapOrString();
+            for (int i = 0; i < changeCount; i++) {
+                Models.applyChange(expected, new Change(Change.ChangeType.ADD, "creation/entities/e" + (i % 20) + "/name", "Name " + i));
+            }
+            String expectedJson = mapper.writeValueAsString(expected.getMap());
+            for (int s = 0; s < sessionCount; s++) {
+                PersistentModel result = lastResults.get(s).get();
+                Assertions.assertEquals(expectedJson, mapper.writeValueAsString(result.getRoot()));
+                Assertions.assertSame(result, manager.getModel("session" + s));
+            }
+            Assertions.assertEquals(sessionCount, manager.getSessionIds().size());
+        }
+    }
+
+    @Test
+    public void itShouldGiveConsistentSnapshotsToReaders () throws Exception {
+        try (SessionModelManager manager = new SessionModelManager()) {
+            manager.submit(new Message(Message.MessageType.INIT, "session")).get();
+            Assertions.assertSame(PersistentModel.EMPTY, manager.getModel("session"));
+            Assertions.assertNull(manager.getModel("unknown"));
+
+            AtomicBoolean finished = new AtomicBoolean();
+            List<String> errors = new ArrayList<>();
+            Thread reader = Thread.ofPlatform().start(() -> {
+                while (!finished.get()) {
+                    // Both counters are always updated together by a single change
+                    MapOrString counters = manager.read("session").find("creation/counters");
+                    if ((counters != null) && (!counters.getMap().get("first").equals(counters.getMap().get("second"))))
+                        errors.add(counters.getMap().toString());
+                }
+            });
+            CompletableFuture<PersistentModel> last = null;
+            for (int i = 0; i < 2000; i++) {
+                last = manager.submit("session", new Change(Change.ChangeType.UPDATE, "creation/counters", Utils.fromJsonToMap("{\"first\": \"" + i + "\", \"second\": \"" + i + "\"}")));
+            }
+            last.get();
+            finished.set(true);
+            reader.join();
+            Assertions.assertEquals(List.of(), errors);
+            Assertions.assertEquals("1999", manager.read("session").find("creation/counters/first").getString());
+        }
+    }
+
+    @Test
+    public void itShouldOnlyFailWrongChanges () throws Exception {
+        try (SessionModelManager manager = new SessionModelManager()) {
+            CompletableFuture<PersistentModel> first = manager.submit("session", new Change(Change.ChangeType.ADD, "creation/name", "Test"));
+            // An Object is not a valid value for a model
+            CompletableFuture<PersistentModel> wrong = manager.submit("session", new Change(Change.ChangeType.UPDATE, "creation/name/sub", new Object()));
+            CompletableFuture<PersistentModel> last = manager.submit("session", new Change(Change.ChangeType.ADD, "creation/type", "Application"));
+
+            first.get();
+            Assertions.assertThrows(ExecutionException.class, wrong::get);
+            Assertions.assertEquals("Application", last.get().find("creation/type").getString());
+            Assertions.assertEquals("Test", manager.read("session").find("creation/name").getString());
+        }
+        Assertions.assertThrows(RuntimeException.class, () -> new SessionModelManager().submit(new Message(Message.MessageType.INIT, (String) null)));
+    }
+
+    @Test
+    public void itShouldFailTheBatchOnErrors () throws Exception {
+        try (SessionModelManager manager = new SessionModelManager()) {
+            Change broken = new Change(Change.ChangeType.ADD, "creation/name", "Test") {
+                @Override
+                public Object getValue() {
+                    throw new AssertionError("Broken change");
+                }
+            };
+            CompletableFuture<PersistentModel> failed = manager.submit("session", broken);
+            ExecutionException error = Assertions.assertThrows(ExecutionException.class, failed::get);
+            Assertions.assertInstanceOf(AssertionError.class, error.getCause());
+
+            // The session is still drained
+            Assertions.assertEquals("Application", manager.submit("session", new Change(Change.ChangeType.ADD, "creation/type", "Application")).get()
+                    .find("creation/type").getString());
+        }
+    }
+}
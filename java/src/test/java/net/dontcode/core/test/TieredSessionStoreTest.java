@@ -0,0 +1,105 @@
+package net.dontcode.core.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.dontcode.core.Change;
+import net.dontcode.core.MapOrString;
+import net.dontcode.core.Message;
+import net.dontcode.core.session.TieredSessionStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class TieredSessionStoreTest {
+    protected final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void itShouldSpillIdleModelsOffHeap () throws IOException {
+        AtomicLong now = new AtomicLong();
+        try (TieredSessionStore store = new TieredSessionStore(Duration.ofMinutes(5), null, 1024, () -> Instant.ofEpochMilli(now.get()))) {
+            checkSpilling(store, now);
+        }
+    }
+
+    @Test
+    public void itShouldSpillIdleModelsInMappedFiles () throws IOException {
+        AtomicLong now = new AtomicLong();
+        try (TieredSessionStore store = new TieredSessionStore(Duration.ofMinutes(5), directory, 1024, () -> Instant.ofEpochMilli(now.get()))) {
+            checkSpilling(store, now);
+            // Only the current segment is kept once all models are back
+            Assertions.assertEquals(1, countSegments());
+        }
+        Assertions.assertEquals(0, countSegments());
+    }
+
+    protected void checkSpilling (TieredSessionStore store, AtomicLong now) throws IOException {
+        for (int i = 0; i < 20; i++) {
+            store.apply(new Message(Message.MessageType.CHANGE, "session"+i,
+                    new Change(Change.ChangeType.ADD, "creation/entities/a", entity("Entity "+i))));
+        }
+        String expected = store.read("session3", this::toJson);
+
+        now.addAndGet(Duration.ofMinutes(4).toMillis());
+        Assertions.assertEquals(0, store.spillIdle());
+        store.read("session1", model -> null);
+        now.addAndGet(Duration.ofMinutes(2).toMillis());
+        Assertions.assertEquals(19, store.spillIdle());
+        Assertions.assertFalse(store.isSpilled("session1"));
+        Assertions.assertTrue(store.isSpilled("session3"));
+        TieredSessionStore.Stats stats = store.getStats();
+        Assertions.assertEquals(1, stats.onHeap());
+        Assertions.assertEquals(19, stats.spilled());
+        Assertions.assertTrue(stats.spilledBytes() > 19*20);
+
+        // The next message loads it back
+        store.apply(new Message(Message.MessageType.CHANGE, "session3", new Change(Change.ChangeType.UPDATE, "creation/entities/a/from", "Other")));
+        Assertions.assertFalse(store.isSpilled("session3"));
+        Assertions.assertEquals(1, store.getStats().misses());
+        Assertions.assertEquals(expected.replace("Source", "Other"), store.read("session3", this::toJson));
+        Assertions.assertEquals(2, store.getStats().misses()+store.getStats().hits()-stats.hits()-stats.misses());
+
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals("Entity "+i, store.read("session"+i, model -> model.find("creation/entities/a/name").getString()));
+        }
+        Assertions.assertEquals(0, store.getStats().spilled());
+        Assertions.assertEquals(0, store.getStats().spilledBytes());
+        Assertions.assertEquals(19, store.getStats().misses());
+        Assertions.assertNull(store.read("unknown", model -> "Found"));
+    }
+
+    protected String toJson (MapOrString model) {
+        try {
+            return mapper.writeValueAsString(model.getMap());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * An UPDATE of a value moves it to the end, so "from" is put last to keep the same order
+     */
+    protected Map<String, Object> entity (String name) {
+        Map<String, Object> ret = new LinkedHashMap<>();
+        ret.put("name", name);
+        ret.put("from", "Source");
+        return ret;
+    }
+
+    protected long countSegments () throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}